@@ -0,0 +1,117 @@
+package com.platinum.dpv.bench;
+
+import com.skjegstad.utils.BinaryFuseFilter;
+import com.skjegstad.utils.BlockedBloomFilter;
+import com.skjegstad.utils.BloomFilter;
+import com.skjegstad.utils.MurmurHash3;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a single probe of a standard and of a cache-line-blocked Bloom
+ * filter, both at 17 bits per word, and of a binary fuse filter with 16-bit
+ * fingerprints, holding either the bundled dictionary (which fits in the
+ * CPU caches) or ten million words (which doesn't).
+ * Hashes are precomputed, as the validator does, so only the probe is
+ * measured; half of them are hits.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+public class BlockedBloomFilterBenchmark {
+
+    private static final int LARGE_SIZE = 10000000;
+    private static final int PROBES = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class Filters {
+
+        @Param({"dictionary", "large"})
+        public String size;
+
+        BloomFilter<String> standard;
+        BlockedBloomFilter blocked;
+        BinaryFuseFilter fuse;
+        long[] h1 = new long[PROBES];
+        long[] h2 = new long[PROBES];
+
+        @Setup
+        public void setUp() throws Exception {
+
+            List<String> words = Passwords.readWords(4);
+            int count = "large".equals(size) ? LARGE_SIZE : words.size();
+            standard = new BloomFilter<String>((int) (17f * count), count);
+            blocked = new BlockedBloomFilter((long) (17f * count), count);
+            BinaryFuseFilter.Builder fuseBuilder = new BinaryFuseFilter.Builder(count, 16);
+            for (int i = 0; i < count; i++) {
+                String word = word(words, i);
+                standard.add(word);
+                blocked.add(word);
+                fuseBuilder.add(word);
+            }
+            fuse = fuseBuilder.build();
+
+            MurmurHash3 hasher = new MurmurHash3();
+            for (int i = 0; i < PROBES; i++) {
+                String word = (i & 1) == 0 ? word(words, (int) ((i * 2654435761L) % count)) : "miss" + i;
+                hasher.reset();
+                for (int c = 0; c < word.length(); c++) {
+                    hasher.put(word.charAt(c));
+                }
+                hasher.finish();
+                h1[i] = hasher.h1();
+                h2[i] = hasher.h2();
+            }
+        }
+
+        private static String word(List<String> words, int i) {
+            return i < words.size() ? words.get(i).toLowerCase() : "word" + i;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        int next() {
+            next = (next + 1) & (PROBES - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public boolean standard(Filters filters, Cursor cursor) {
+        int i = cursor.next();
+        return filters.standard.containsHash(filters.h1[i], filters.h2[i]);
+    }
+
+    @Benchmark
+    public boolean blocked(Filters filters, Cursor cursor) {
+        int i = cursor.next();
+        return filters.blocked.containsHash(filters.h1[i], filters.h2[i]);
+    }
+
+    @Benchmark
+    public boolean fuse(Filters filters, Cursor cursor) {
+        int i = cursor.next();
+        return filters.fuse.containsHash(filters.h1[i], filters.h2[i]);
+    }
+}
@@ -0,0 +1,86 @@
+package com.platinum.dpv.bench;
+
+import com.skjegstad.utils.BloomFilter;
+import com.skjegstad.utils.HashStrategies;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a single BloomFilter probe, for words that are in the
+ * dictionary and for random strings that (almost always) are not.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BloomFilterBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Filter {
+
+        @Param({"MD5", "MURMUR3_128"})
+        public String hashStrategy;
+
+        BloomFilter<String> filter;
+        String[] hits;
+        String[] misses;
+
+        @Setup
+        public void setUp() throws Exception {
+            List<String> words = Passwords.readWords(4);
+            filter = new BloomFilter<String>((int) (17f * words.size()), words.size(), HashStrategies.valueOf(hashStrategy));
+            for (String word : words) {
+                filter.add(word.toLowerCase());
+            }
+            hits = new String[Passwords.POOL_SIZE];
+            for (int i = 0; i < hits.length; i++) {
+                hits[i] = words.get((i * 31) % words.size()).toLowerCase();
+            }
+            misses = Passwords.generate("short");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        int next() {
+            next = (next + 1) & (Passwords.POOL_SIZE - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public boolean containsHit(Filter filter, Cursor cursor) {
+        return filter.filter.contains(filter.hits[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean containsMiss(Filter filter, Cursor cursor) {
+        return filter.filter.contains(filter.misses[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean containsHitContended(Filter filter, Cursor cursor) {
+        return filter.filter.contains(filter.hits[cursor.next()]);
+    }
+}
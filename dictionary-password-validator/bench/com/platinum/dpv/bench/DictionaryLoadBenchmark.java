@@ -0,0 +1,44 @@
+package com.platinum.dpv.bench;
+
+import com.platinum.dpv.DictionaryPasswordValidator;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Startup cost: loading the default dictionary. Each measurement builds a
+ * new validator, so the dictionary is really read every time.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(3)
+@State(Scope.Benchmark)
+public class DictionaryLoadBenchmark {
+
+    @Setup
+    public void setUp() throws Exception {
+        // printStats would otherwise log every iteration
+        Logger.getLogger(DictionaryPasswordValidator.class.getName()).setLevel(Level.WARNING);
+    }
+
+    @Benchmark
+    public DictionaryPasswordValidator initalizeDictionary() throws Exception {
+        return DictionaryPasswordValidator.builder().build();
+    }
+}
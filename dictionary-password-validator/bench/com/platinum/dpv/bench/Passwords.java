@@ -0,0 +1,104 @@
+package com.platinum.dpv.bench;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the password sets used by the benchmarks. Every set is built
+ * from a fixed seed so that runs on different releases probe exactly the
+ * same inputs.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class Passwords {
+
+    static final String DICTIONARY_FILE = "conf/dictionaries/en_US.dic";
+    static final int POOL_SIZE = 1024;
+    private static final long SEED = 0x5eedL;
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String ALL_CHARS = LETTERS + "0123456789!@#$%^&*()-_=+";
+
+    private Passwords() {
+    }
+
+    /**
+     * Builds a pool of passwords of the given kind.
+     *
+     * @param kind one of short, long, random or dictionary
+     * @return POOL_SIZE passwords
+     * @throws IOException if the dictionary can't be read
+     */
+    static String[] generate(String kind) throws IOException {
+
+        Random random = new Random(SEED);
+        String[] pool = new String[POOL_SIZE];
+
+        if ("short".equals(kind)) {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                pool[i] = randomString(random, ALL_CHARS, 8);
+            }
+        } else if ("long".equals(kind)) {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                pool[i] = randomString(random, ALL_CHARS, 64);
+            }
+        } else if ("random".equals(kind)) {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                pool[i] = randomString(random, ALL_CHARS, 8 + random.nextInt(25));
+            }
+        } else if ("dictionary".equals(kind)) {
+            List<String> words = readWords(4);
+            for (int i = 0; i < POOL_SIZE; i++) {
+                StringBuilder sBuilder = new StringBuilder();
+                int count = 2 + random.nextInt(3);
+                for (int w = 0; w < count; w++) {
+                    sBuilder.append(words.get(random.nextInt(words.size())));
+                    sBuilder.append(ALL_CHARS.charAt(LETTERS.length() + random.nextInt(ALL_CHARS.length() - LETTERS.length())));
+                }
+                pool[i] = sBuilder.toString();
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown password kind: " + kind);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Reads the words of the bundled dictionary.
+     *
+     * @param minLength shortest word to return
+     * @return the words, in file order
+     * @throws IOException if the dictionary can't be read
+     */
+    static List<String> readWords(int minLength) throws IOException {
+
+        List<String> words = new ArrayList<String>();
+        BufferedReader bReader = new BufferedReader(new InputStreamReader(new FileInputStream(DICTIONARY_FILE)));
+        try {
+            String strLine;
+            while ((strLine = bReader.readLine()) != null) {
+                if (strLine.length() >= minLength) {
+                    words.add(strLine);
+                }
+            }
+        } finally {
+            bReader.close();
+        }
+        return words;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+}
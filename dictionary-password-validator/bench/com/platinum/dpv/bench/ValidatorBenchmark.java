@@ -0,0 +1,107 @@
+package com.platinum.dpv.bench;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the validator's lookup methods, for a single thread and for
+ * as many threads as there are cores. Each parameter combination builds
+ * its own validator. The batch benchmarks check the whole pool per
+ * invocation and are reported per password.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ValidatorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Dictionary {
+
+        @Param({"short", "long", "random", "dictionary"})
+        public String passwords;
+
+        @Param({"BLOOM_FILTER", "BLOCKED_BLOOM_FILTER", "BINARY_FUSE_FILTER", "AHO_CORASICK"})
+        public String backend;
+
+        DictionaryPasswordValidator validator;
+        String[] pool;
+        String[] words;
+        List<String> batch;
+
+        @Setup
+        public void setUp() throws Exception {
+            validator = DictionaryPasswordValidator.builder().backend(DictionaryBackend.valueOf(backend)).build();
+            pool = Passwords.generate(passwords);
+            batch = Arrays.asList(pool);
+            words = Passwords.readWords(4).subList(0, Passwords.POOL_SIZE).toArray(new String[Passwords.POOL_SIZE]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        int next() {
+            next = (next + 1) & (Passwords.POOL_SIZE - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public boolean isPasswordDictionaryBased(Dictionary dictionary, Cursor cursor) {
+        return dictionary.validator.isPasswordDictionaryBased(dictionary.pool[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean isPasswordDictionaryBasedContended(Dictionary dictionary, Cursor cursor) {
+        return dictionary.validator.isPasswordDictionaryBased(dictionary.pool[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean isDictionaryWord(Dictionary dictionary, Cursor cursor) {
+        return dictionary.validator.isDictionaryWord(dictionary.words[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean isDictionaryWordContended(Dictionary dictionary, Cursor cursor) {
+        return dictionary.validator.isDictionaryWord(dictionary.words[cursor.next()]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Passwords.POOL_SIZE)
+    public BitSet arePasswordsDictionaryBased(Dictionary dictionary) {
+        return dictionary.validator.arePasswordsDictionaryBased(dictionary.batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Passwords.POOL_SIZE)
+    public BitSet arePasswordsDictionaryBasedParallel(Dictionary dictionary) {
+        return dictionary.validator.arePasswordsDictionaryBased(dictionary.batch, true);
+    }
+}
@@ -0,0 +1,388 @@
+package com.platinum.dpv;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A DictionaryMatcher backed by an Aho-Corasick automaton, as described here:
+ * http://en.wikipedia.org/wiki/Aho-Corasick_string_matching_algorithm
+ *
+ * Unlike the Bloom filter it has no false positives, and it finds every
+ * dictionary word inside a password in a single pass over its letters,
+ * instead of looking up each window separately.
+ *
+ * Words are first added to a plain trie (first-child / next-sibling lists).
+ * finish() then renumbers the states in breadth-first order and packs them
+ * into flat arrays: the children of each state are stored sorted by label,
+ * and each state gets its failure link plus the length of the longest
+ * dictionary word that ends there, so a lookup costs O(1) per letter.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+class AhoCorasickMatcher implements DictionaryMatcher {
+
+    private static final int ROOT = 0;
+
+    // The trie while words are added, discarded by finish()
+    private int[] firstChild = new int[1024];
+    private int[] nextSibling = new int[1024];
+    private char[] label = new char[1024];
+    private boolean[] terminal = new boolean[1024];
+    private int stateCount = 1;
+    private int wordCount = 0;
+
+    // The compiled automaton, states in breadth-first order.
+    // The children of state s are childLabel/childState[childStart[s] .. childStart[s + 1]).
+    private int[] childStart = null;
+    private char[] childLabel = null;
+    private int[] childState = null;
+    private int[] fail = null;
+    private short[] longestWord = null;   // 0 if no word ends in this state
+
+    AhoCorasickMatcher() {
+        this.firstChild[ROOT] = -1;
+        this.nextSibling[ROOT] = -1;
+    }
+
+    public void add(String word) {
+
+        if (this.childStart != null) {
+            throw new IllegalStateException("Words can't be added after finish()");
+        }
+        if (word.length() == 0 || word.length() > Short.MAX_VALUE) {
+            return;
+        }
+
+        int state = ROOT;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            int child = this.firstChild[state];
+            while (child >= 0 && this.label[child] != c) {
+                child = this.nextSibling[child];
+            }
+            if (child < 0) {
+                child = newState(state, c);
+            }
+            state = child;
+        }
+
+        if (!this.terminal[state]) {
+            this.terminal[state] = true;
+            this.wordCount++;
+        }
+    }
+
+    private int newState(int parent, char c) {
+
+        if (this.stateCount == this.label.length) {
+            int capacity = 2 * this.stateCount;
+            int[] newFirstChild = new int[capacity];
+            int[] newNextSibling = new int[capacity];
+            char[] newLabel = new char[capacity];
+            boolean[] newTerminal = new boolean[capacity];
+            System.arraycopy(this.firstChild, 0, newFirstChild, 0, this.stateCount);
+            System.arraycopy(this.nextSibling, 0, newNextSibling, 0, this.stateCount);
+            System.arraycopy(this.label, 0, newLabel, 0, this.stateCount);
+            System.arraycopy(this.terminal, 0, newTerminal, 0, this.stateCount);
+            this.firstChild = newFirstChild;
+            this.nextSibling = newNextSibling;
+            this.label = newLabel;
+            this.terminal = newTerminal;
+        }
+
+        int state = this.stateCount++;
+        this.label[state] = c;
+        this.firstChild[state] = -1;
+        this.nextSibling[state] = this.firstChild[parent];
+        this.firstChild[parent] = state;
+        return state;
+    }
+
+    public void addAll(List<String[]> batches, ForkJoinPool pool) {
+        // The trie is built on a single thread
+        for (String[] batch : batches) {
+            for (String word : batch) {
+                add(word);
+            }
+        }
+    }
+
+    public void finish() {
+
+        if (this.childStart != null) {
+            return;
+        }
+
+        int states = this.stateCount;
+
+        // Breadth-first order of the trie states; order[newId] = oldId
+        int[] order = new int[states];
+        int[] newId = new int[states];
+        int[] depth = new int[states];
+        int head = 0;
+        int tail = 0;
+        order[tail++] = ROOT;
+        while (head < tail) {
+            int old = order[head];
+            newId[old] = head++;
+            for (int child = this.firstChild[old]; child >= 0; child = this.nextSibling[child]) {
+                depth[child] = depth[old] + 1;
+                order[tail++] = child;
+            }
+        }
+
+        // Pack the children of every state, sorted by label
+        this.childStart = new int[states + 1];
+        this.childLabel = new char[states - 1];
+        this.childState = new int[states - 1];
+        int next = 0;
+        for (int s = 0; s < states; s++) {
+            this.childStart[s] = next;
+            for (int child = this.firstChild[order[s]]; child >= 0; child = this.nextSibling[child]) {
+                // Insertion sort, a state has at most a few dozen children
+                char c = this.label[child];
+                int i = next++;
+                while (i > this.childStart[s] && this.childLabel[i - 1] > c) {
+                    this.childLabel[i] = this.childLabel[i - 1];
+                    this.childState[i] = this.childState[i - 1];
+                    i--;
+                }
+                this.childLabel[i] = c;
+                this.childState[i] = newId[child];
+            }
+        }
+        this.childStart[states] = next;
+
+        // Failure links and longest words, parents before children
+        this.fail = new int[states];
+        this.longestWord = new short[states];
+        for (int s = 0; s < states; s++) {
+            for (int i = this.childStart[s]; i < this.childStart[s + 1]; i++) {
+                int t = this.childState[i];
+                if (s == ROOT) {
+                    this.fail[t] = ROOT;
+                } else {
+                    int f = this.fail[s];
+                    int g = transition(f, this.childLabel[i]);
+                    while (g < 0 && f != ROOT) {
+                        f = this.fail[f];
+                        g = transition(f, this.childLabel[i]);
+                    }
+                    this.fail[t] = g < 0 ? ROOT : g;
+                }
+                this.longestWord[t] = this.terminal[order[t]] ? (short) depth[order[t]] : this.longestWord[this.fail[t]];
+            }
+        }
+
+        this.firstChild = null;
+        this.nextSibling = null;
+        this.label = null;
+        this.terminal = null;
+    }
+
+    /**
+     * @return the child of state labelled c, or -1
+     */
+    private int transition(int state, char c) {
+
+        int low = this.childStart[state];
+        int high = this.childStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midLabel = this.childLabel[mid];
+            if (midLabel < c) {
+                low = mid + 1;
+            } else if (midLabel > c) {
+                high = mid - 1;
+            } else {
+                return this.childState[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the state reached from state on c, following failure links
+     */
+    private int step(int state, char c) {
+
+        while (true) {
+            int next = transition(state, c);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = this.fail[state];
+        }
+    }
+
+    public void addConcurrently(String word) {
+        throw new UnsupportedOperationException("The automaton is read-only once finished");
+    }
+
+    public boolean isWord(PasswordScanner scanner, int start, int end) {
+
+        checkFinished();
+
+        char[] letters = scanner.letters();
+        int state = ROOT;
+        for (int i = start; i < end && state >= 0; i++) {
+            state = transition(state, letters[i]);
+        }
+
+        // Only a state reached by a whole word has a word of its own depth
+        return state >= 0 && end > start && this.longestWord[state] == end - start;
+    }
+
+    public boolean containsWord(PasswordScanner scanner, ScanPlan plan) {
+
+        checkFinished();
+
+        int minWordCharLength = plan.minLength();
+        char[] letters = scanner.letters();
+        int length = scanner.length();
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            state = step(state, letters[i]);
+            int wordLength = this.longestWord[state];
+            if (wordLength >= minWordCharLength && wordLength > 0) {
+                if (plan.limitsRank()) {
+                    wordLength = longestAccepted(state, scanner, i + 1, plan);
+                }
+                if (wordLength > 0) {
+                    scanner.addProbes(i + 1);
+                    scanner.setMatch(i + 1 - wordLength, i + 1);
+                    return true;
+                }
+            }
+        }
+        scanner.addProbes(length);
+        return false;
+    }
+
+    public boolean findLongestWord(PasswordScanner scanner, ScanPlan plan) {
+
+        checkFinished();
+
+        int minWordCharLength = plan.minLength();
+        char[] letters = scanner.letters();
+        int length = scanner.length();
+        int state = ROOT;
+        int longest = 0;
+        for (int i = 0; i < length; i++) {
+            state = step(state, letters[i]);
+            int wordLength = this.longestWord[state];
+            if (wordLength > longest && wordLength >= minWordCharLength && plan.limitsRank()) {
+                wordLength = longestAccepted(state, scanner, i + 1, plan);
+            }
+            if (wordLength > longest && wordLength >= minWordCharLength) {
+                longest = wordLength;
+                scanner.setMatch(i + 1 - wordLength, i + 1);
+            }
+        }
+        scanner.addProbes(length);
+        return longest > 0;
+    }
+
+    public boolean findAllWords(PasswordScanner scanner, ScanPlan plan) {
+
+        checkFinished();
+
+        int minWordCharLength = Math.max(1, plan.minLength());
+        char[] letters = scanner.letters();
+        int length = scanner.length();
+        boolean limited = plan.limitsRank();
+        int state = ROOT;
+        boolean found = false;
+        for (int i = 0; i < length; i++) {
+            state = step(state, letters[i]);
+
+            // The words ending here are the distinct longest words along the
+            // failure links, each a suffix of the one before
+            int last = 0;
+            for (int s = state; s != ROOT; s = this.fail[s]) {
+                int wordLength = this.longestWord[s];
+                if (wordLength < minWordCharLength) {
+                    break;
+                }
+                if (wordLength != last && (!limited || plan.accepts(scanner.lettersView(), i + 1 - wordLength, i + 1))) {
+                    scanner.addMatch(i + 1 - wordLength, i + 1);
+                    found = true;
+                }
+                last = wordLength;
+            }
+        }
+        scanner.addProbes(length);
+        return found;
+    }
+
+    /**
+     * Finds the longest word ending in this state which the plan accepts,
+     * along the failure links, when the plan limits words by rank
+     * @param state
+     * @param scanner
+     * @param end index past the last letter of the words
+     * @param plan
+     * @return its length, or 0 if there is none
+     */
+    private int longestAccepted(int state, PasswordScanner scanner, int end, ScanPlan plan) {
+
+        int last = 0;
+        for (int s = state; s != ROOT; s = this.fail[s]) {
+            int wordLength = this.longestWord[s];
+            if (wordLength < plan.minLength() || wordLength == 0) {
+                break;
+            }
+            if (wordLength != last && plan.accepts(scanner.lettersView(), end - wordLength, end)) {
+                return wordLength;
+            }
+            last = wordLength;
+        }
+        return 0;
+    }
+
+    private void checkFinished() {
+        if (this.childStart == null) {
+            throw new IllegalStateException("finish() has not been called");
+        }
+    }
+
+    /**
+     * @return number of automaton states
+     */
+    int stateCount() {
+        return this.stateCount;
+    }
+
+    public long memoryUsage() {
+        return 4L * this.childStart.length
+                + 2L * this.childLabel.length
+                + 4L * this.childState.length
+                + 4L * this.fail.length
+                + 2L * this.longestWord.length;
+    }
+
+    public double fillRatio() {
+        return Double.NaN;
+    }
+
+    public double falsePositiveProbability() {
+        return 0;
+    }
+
+    public void appendStats(StringBuilder sBuilder) {
+
+        sBuilder.append("- The automaton holds ");
+        sBuilder.append(this.wordCount);
+        sBuilder.append(" distinct words in ");
+        sBuilder.append(this.stateCount);
+        sBuilder.append(" states (");
+        sBuilder.append(memoryUsage() / 1024);
+        sBuilder.append("kb).\n");
+        sBuilder.append("- The automaton has no false positives.\n");
+    }
+}
@@ -0,0 +1,85 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.BinaryFuseFilter;
+import java.text.DecimalFormat;
+
+/**
+ * A DictionaryMatcher backed by a static binary fuse filter. Every lookup is
+ * exactly three memory reads, and the false-positive rate per bit is lower
+ * than that of a Bloom filter, but the filter can only be built once all
+ * words are known: words are collected by add() and the filter is built by
+ * finish().
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+class BinaryFuseFilterMatcher extends FilterMatcher {
+
+    private BinaryFuseFilter.Builder builder;
+    private BinaryFuseFilter filter = null;
+
+    BinaryFuseFilterMatcher(int expectedWords, int fingerprintBits) {
+        this.builder = new BinaryFuseFilter.Builder(expectedWords, fingerprintBits);
+    }
+
+    public void add(String word) {
+        if (this.builder == null) {
+            throw new IllegalStateException("Words can't be added after finish()");
+        }
+        this.builder.add(word);
+    }
+
+    @Override
+    public void finish() {
+        if (this.filter == null) {
+            this.filter = this.builder.build();
+            this.builder = null;
+        }
+    }
+
+    private BinaryFuseFilter filter() {
+        if (this.filter == null) {
+            throw new IllegalStateException("finish() has not been called");
+        }
+        return this.filter;
+    }
+
+    boolean contains(CharSequence letters, int start, int end) {
+        return filter().contains(letters, start, end);
+    }
+
+    boolean containsHash(long h1, long h2) {
+        return filter().containsHash(h1, h2);
+    }
+
+    boolean supportsPrecomputedHash() {
+        return true;
+    }
+
+    public long memoryUsage() {
+        return filter().bitSize() / 8;
+    }
+
+    public double fillRatio() {
+        return Double.NaN; // every slot holds a fingerprint
+    }
+
+    public double falsePositiveProbability() {
+        return filter().getFalsePositiveProbability();
+    }
+
+    public void appendStats(StringBuilder sBuilder) {
+
+        DecimalFormat dFormat = new DecimalFormat("#.####");
+
+        sBuilder.append("- The fingerprint array is ");
+        sBuilder.append(filter().bitSize());
+        sBuilder.append(" bits (");
+        sBuilder.append(filter().getFingerprintBits());
+        sBuilder.append(" per fingerprint) in size.\n");
+        sBuilder.append("- The false-positive rate for the binary fuse filter is: ");
+        sBuilder.append(dFormat.format(100 * filter().getFalsePositiveProbability()));
+        sBuilder.append("%\n");
+    }
+}
@@ -0,0 +1,77 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.BloomFilter;
+import java.text.DecimalFormat;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A DictionaryMatcher backed by a Bloom filter. Small and fast to build, but
+ * with a (configurable) false-positive rate.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+class BloomFilterMatcher extends FilterMatcher {
+
+    private final BloomFilter<String> bloomFilter;
+
+    BloomFilterMatcher(BloomFilter<String> bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * @return the underlying filter
+     */
+    BloomFilter<String> getBloomFilter() {
+        return this.bloomFilter;
+    }
+
+    public void add(String word) {
+        this.bloomFilter.add(word);
+    }
+
+    @Override
+    public void addAll(List<String[]> batches, ForkJoinPool pool) {
+        this.bloomFilter.addAllParallel(batches, pool);
+    }
+
+    boolean contains(CharSequence letters, int start, int end) {
+        return this.bloomFilter.contains(letters, start, end);
+    }
+
+    boolean containsHash(long h1, long h2) {
+        return this.bloomFilter.containsHash(h1, h2);
+    }
+
+    boolean supportsPrecomputedHash() {
+        return this.bloomFilter.supportsPrecomputedHash();
+    }
+
+    public long memoryUsage() {
+        return (this.bloomFilter.bitSize() + 7) / 8;
+    }
+
+    public double fillRatio() {
+        return (double) this.bloomFilter.cardinality() / this.bloomFilter.bitSize();
+    }
+
+    public double falsePositiveProbability() {
+        return this.bloomFilter.getFalsePositiveProbability();
+    }
+
+    public void appendStats(StringBuilder sBuilder) {
+
+        DecimalFormat dFormat = new DecimalFormat("#.##");
+
+        sBuilder.append("- The bit set is ");
+        sBuilder.append(this.bloomFilter.bitSize());
+        sBuilder.append(" (");
+        sBuilder.append(((this.bloomFilter.bitSize() / 1024)));
+        sBuilder.append("kb) in size.\n");
+        sBuilder.append("- The current false-positive rate for the bloom filter is: ");
+        sBuilder.append(dFormat.format(100 * this.bloomFilter.getFalsePositiveProbability()));
+        sBuilder.append("%\n");
+    }
+}
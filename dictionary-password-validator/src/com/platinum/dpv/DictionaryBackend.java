@@ -0,0 +1,102 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.BlockedBloomFilter;
+import com.skjegstad.utils.BloomFilter;
+import com.skjegstad.utils.ScalableBloomFilter;
+
+/**
+ * The data structures the validator can keep its dictionary in.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public enum DictionaryBackend {
+
+    /**
+     * A Bloom filter: compact, but with a false-positive rate set by the
+     * configured accuracy (bits per word). Every window of the password is
+     * looked up separately. The only backend supporting concurrent adds, see
+     * DictionaryPasswordValidator.Builder.concurrentAdds().
+     */
+    BLOOM_FILTER {
+        DictionaryMatcher newMatcher(int expectedWords, float accuracy) {
+            int bitSetSize = (int) (accuracy * expectedWords);
+            return new BloomFilterMatcher(new BloomFilter<String>(bitSetSize, expectedWords));
+        }
+
+        @Override
+        DictionaryMatcher newConcurrentMatcher(int expectedWords, float accuracy) {
+            return new ScalableBloomFilterMatcher(new ScalableBloomFilter<String>(expectedWords, falsePositiveProbability(accuracy), true));
+        }
+    },
+
+    /**
+     * A cache-line-blocked Bloom filter: all bits of a word lie in a single
+     * 64-byte block, so each window costs one cache miss at most instead of
+     * one per hash function. Lookups are faster, notably for large
+     * dictionaries, but at the same accuracy the false-positive rate is
+     * about twice as high (0.06% instead of 0.03% at 17 bits per word);
+     * about 2 more bits per word make up for it. Not available as a snapshot.
+     */
+    BLOCKED_BLOOM_FILTER {
+        DictionaryMatcher newMatcher(int expectedWords, float accuracy) {
+            return new BlockedBloomFilterMatcher(new BlockedBloomFilter((long) (accuracy * expectedWords), expectedWords));
+        }
+    },
+
+    /**
+     * A static binary fuse filter: each window costs exactly three memory
+     * reads, and the false-positive rate per bit is lower than a Bloom
+     * filter's. The accuracy picks the fingerprint size: below 12 bits per
+     * word, 8-bit fingerprints (about 9 bits per word, 0.39% false
+     * positives), otherwise 16-bit ones (about 18 bits per word, 0.0015%).
+     * The filter is built once all words are read, which takes about 25
+     * bytes per word while it lasts. Not available as a snapshot.
+     */
+    BINARY_FUSE_FILTER {
+        DictionaryMatcher newMatcher(int expectedWords, float accuracy) {
+            return new BinaryFuseFilterMatcher(expectedWords, accuracy < 12 ? 8 : 16);
+        }
+    },
+
+    /**
+     * An Aho-Corasick automaton: exact (no false positives) and finds all
+     * words in a single pass over the password, at the cost of more memory.
+     * The accuracy setting is ignored.
+     */
+    AHO_CORASICK {
+        DictionaryMatcher newMatcher(int expectedWords, float accuracy) {
+            return new AhoCorasickMatcher();
+        }
+    };
+
+    /**
+     * Creates an empty matcher for this backend
+     * @param expectedWords number of words that will be added
+     * @param accuracy bits per word, for backends that use it
+     * @return DictionaryMatcher
+     */
+    abstract DictionaryMatcher newMatcher(int expectedWords, float accuracy);
+
+    /**
+     * Creates an empty matcher which words can also be added to with
+     * addConcurrently() while it is in use
+     * @param expectedWords number of words that will be added
+     * @param accuracy bits per word, for backends that use it
+     * @return DictionaryMatcher, or null if the backend doesn't support concurrent adds
+     */
+    DictionaryMatcher newConcurrentMatcher(int expectedWords, float accuracy) {
+        return null;
+    }
+
+    /**
+     * @param accuracy bits per word
+     * @return the false-positive rate of a Bloom filter with that many bits per word
+     */
+    private static double falsePositiveProbability(float accuracy) {
+        // (1 - e^(-k / c)) ^ k, with k = c * ln(2) as BloomFilter picks it
+        int k = Math.max(1, (int) Math.round(accuracy * Math.log(2.0)));
+        return Math.pow(1 - Math.exp(-k / (double) accuracy), k);
+    }
+}
@@ -0,0 +1,57 @@
+package com.platinum.dpv;
+
+import java.io.File;
+
+/**
+ * Command-line tool which reads the dictionary the validator would load and
+ * writes it as a precompiled snapshot. The build runs it after compiling,
+ * and a snapshot copied next to the word list (conf/dictionaries/en_US.bloom)
+ * is memory-mapped at startup instead of reading the text file.
+ *
+ * Usage: DictionaryCompiler output-file [accuracy [minWordCharLength [dictionary-file ...]]]
+ *
+ * Without dictionary files, the validator's default dictionary is compiled.
+ * The ranks of ranked word lists are compiled along with the words.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class DictionaryCompiler {
+
+    private DictionaryCompiler() {
+    }
+
+    public static void main(String[] args) {
+
+        if (args.length < 1) {
+            System.err.println("Usage: " + DictionaryCompiler.class.getName()
+                    + " output-file [accuracy [minWordCharLength [dictionary-file ...]]]");
+            System.exit(2);
+        }
+
+        try {
+            DictionaryPasswordValidator.Builder builder = DictionaryPasswordValidator.builder();
+            if (args.length > 1) {
+                builder.accuracy(Float.parseFloat(args[1]));
+            }
+            if (args.length > 2) {
+                builder.minWordCharLength(Integer.parseInt(args[2]));
+            }
+            for (int i = 3; i < args.length; i++) {
+                builder.dictionary(new File(args[i]));
+            }
+
+            File snapshotFile = new File(args[0]);
+            DictionaryPasswordValidator.compileSnapshot(builder, snapshotFile);
+            System.out.println("Wrote dictionary snapshot " + snapshotFile);
+
+        } catch (NumberFormatException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            System.exit(2);
+        } catch (Exception ex) {
+            System.err.println("Error: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
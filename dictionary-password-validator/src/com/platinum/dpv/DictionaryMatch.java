@@ -0,0 +1,91 @@
+package com.platinum.dpv;
+
+/**
+ * A dictionary word found in a password, see
+ * DictionaryPasswordValidator.findDictionaryWords(). The word is given as
+ * lowercase letters, with any substitutions undone, and its position as
+ * the characters of the password it was read from: "Pass-Word1" holds
+ * "password" at offset 0, length 9. If the dictionary ranks its words by
+ * how common they are, the match carries the word's rank.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class DictionaryMatch {
+
+    private final String word;
+    private final int offset;
+    private final int length;
+    private final String source;
+    private final int rank;
+
+    DictionaryMatch(String word, int offset, int length, String source, int rank) {
+        this.word = word;
+        this.offset = offset;
+        this.length = length;
+        this.source = source;
+        this.rank = rank;
+    }
+
+    /**
+     * @return the word, as lowercase letters
+     */
+    public String getWord() {
+        return this.word;
+    }
+
+    /**
+     * @return index in the password of the word's first letter
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * @return number of characters of the password from the word's first
+     * letter to its last, including any characters in between that aren't
+     * letters
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * @return the name of the first word list containing the word, see
+     * DictionarySource.getName(), or null if the dictionary combines several
+     * word lists and the validator wasn't built with attributeSources(true)
+     */
+    public String getSource() {
+        return this.source;
+    }
+
+    /**
+     * @return the word's rank in the dictionary, 1 for the most common
+     * word, or 0 if it has no rank
+     */
+    public int getRank() {
+        return this.rank;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof DictionaryMatch)) {
+            return false;
+        }
+        DictionaryMatch other = (DictionaryMatch) obj;
+        return this.offset == other.offset && this.length == other.length && this.word.equals(other.word)
+                && (this.source == null ? other.source == null : this.source.equals(other.source));
+    }
+
+    @Override
+    public int hashCode() {
+        return (this.word.hashCode() * 31 + this.offset) * 31 + this.length;
+    }
+
+    @Override
+    public String toString() {
+        return this.word + " at " + this.offset + ", length " + this.length + (this.source == null ? "" : ", from " + this.source)
+                + (this.rank == 0 ? "" : ", rank " + this.rank);
+    }
+}
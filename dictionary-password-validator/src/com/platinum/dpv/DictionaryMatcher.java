@@ -0,0 +1,108 @@
+package com.platinum.dpv;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A dictionary the validator looks words up in. Words are added while the
+ * dictionary is read, after which finish() is called once; from then on the
+ * matcher is read-only and may be shared between threads.
+ *
+ * All words and letters passed in are already lowercased.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+interface DictionaryMatcher {
+
+    /**
+     * Adds a word to the dictionary
+     * @param word
+     */
+    void add(String word);
+
+    /**
+     * Adds batches of words, using the pool if the matcher can be populated
+     * in parallel
+     * @param batches
+     * @param pool
+     */
+    void addAll(List<String[]> batches, ForkJoinPool pool);
+
+    /**
+     * Called once all words have been added
+     */
+    void finish();
+
+    /**
+     * Adds a word after finish(), while other threads look words up. Only
+     * supported by matchers from DictionaryBackend.newConcurrentMatcher()
+     * @param word
+     * @throws UnsupportedOperationException if the matcher is read-only
+     */
+    void addConcurrently(String word);
+
+    /**
+     * Returns true or false whether or not the scanner's letters [start,
+     * end) are a word in the dictionary
+     * @param scanner
+     * @param start
+     * @param end
+     * @return true/false
+     */
+    boolean isWord(PasswordScanner scanner, int start, int end);
+
+    /**
+     * Returns true or false whether any run of the scanner's letters, of a
+     * length the plan looks up, is in the dictionary. The run found is
+     * recorded with PasswordScanner.setMatch
+     * @param scanner
+     * @param plan
+     * @return true/false
+     */
+    boolean containsWord(PasswordScanner scanner, ScanPlan plan);
+
+    /**
+     * Finds the longest run of the scanner's letters, of a length the plan
+     * looks up, which is in the dictionary, and records it with
+     * PasswordScanner.setMatch
+     * @param scanner
+     * @param plan
+     * @return true if a word was found
+     */
+    boolean findLongestWord(PasswordScanner scanner, ScanPlan plan);
+
+    /**
+     * Finds every run of the scanner's letters, of a length the plan looks
+     * up, which is in the dictionary, and records each one with
+     * PasswordScanner.addMatch: by start and then by length for the filter
+     * backends, by end and then longest first for Aho-Corasick
+     * @param scanner
+     * @param plan
+     * @return true if a word was found
+     */
+    boolean findAllWords(PasswordScanner scanner, ScanPlan plan);
+
+    /**
+     * @return approximate size of the matcher's data in bytes
+     */
+    long memoryUsage();
+
+    /**
+     * @return the fraction of the filter's bits which are set, or NaN if the
+     * matcher isn't a bit array
+     */
+    double fillRatio();
+
+    /**
+     * @return the current estimate of the false-positive rate of a lookup
+     */
+    double falsePositiveProbability();
+
+    /**
+     * Appends matcher-specific lines to the stats printed after loading
+     * @param sBuilder
+     */
+    void appendStats(StringBuilder sBuilder);
+}
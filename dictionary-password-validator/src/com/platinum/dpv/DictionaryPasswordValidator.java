@@ -1,22 +1,41 @@
 package com.platinum.dpv;
 
-import com.skjegstad.utils.BloomFilter;
-import java.io.BufferedReader;
+import com.skjegstad.utils.BinaryFuseMap;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
- * A singleton class which validates if a password uses dictionary words.
- * It also provides a way to look up dictionary words for validity.
+ * Validates if a password uses dictionary words. It also provides a way to
+ * look up dictionary words for validity.
+ *
+ * Validators are created with builder(), each with its own dictionary and
+ * settings. A dictionary may combine any number of word lists (see
+ * DictionarySource), which are read in parallel into a single backend, so
+ * one lookup covers all of them. Their settings are immutable once built and they can be shared
+ * between threads; lookups don't take any locks. The dictionary can be
+ * reloaded while the validator is in use, see reload() and watchDictionary().
+ * getInstance() returns a shared validator configured with configure(), for
+ * code written against the old singleton.
  *
  * License: Apache 2.0
  *
@@ -24,333 +43,1413 @@ import java.util.regex.Pattern;
  */
 public class DictionaryPasswordValidator {
 
-    // Config vars
-    private static float accuracy = 17f;     // 0.05% false positive rate
-    private static int minWordCharLength = 4;
+    // Defaults
+    private static final float DEFAULT_ACCURACY = 17f;     // 0.05% false positive rate
+    private static final int DEFAULT_MIN_WORD_CHAR_LENGTH = 4;
     private static final String JAR_DICTIONARY_FILE = "dictionaries/en_US.dic";
     private static final String ABSOLUTE_DICTIONARY_FILE = "conf/" + JAR_DICTIONARY_FILE;
+    private static final String JAR_SNAPSHOT_FILE = "dictionaries/en_US.bloom";
+    private static final String ABSOLUTE_SNAPSHOT_FILE = "conf/" + JAR_SNAPSHOT_FILE;
+    private static final int BATCH_SIZE = 1024;    // fewest passwords checked by a parallel task
     // Singleton
-    private static DictionaryPasswordValidator instance;
+    private static Builder configuration = new Builder();
+    private static volatile DictionaryPasswordValidator instance;
+    // Config vars
+    private final float accuracy;
+    private final int minWordCharLength;
+    private final DictionaryBackend backend;
+    private final List<DictionarySource> sources;
+    private final File snapshotFile;
+    private final boolean bundled;
+    private final boolean useSnapshot;
+    private final boolean attributeSources;
+    private final boolean concurrentAdds;
+    private final int substitutionVariants;
+    private final LookupMetrics metrics;    // null unless built with metrics(true)
+    private final ScanOrder scanOrder;
+    private final ResultCache resultCache;  // null unless built with resultCache()
+    private final int maxWordRank;          // 0 to find words of any rank
     // Class-specific vars
-    private BloomFilter bloomFilter = null;
-    private int totalWords = 0;
-    private int bitSetSize = 0;
-    private Pattern characterPattern = null;
+    private volatile LoadedDictionary dictionary;
+    private final Object reloadLock = new Object();
+    private final ThreadLocal<PasswordScanner> scanners = new ThreadLocal<PasswordScanner>() {
+
+        @Override
+        protected PasswordScanner initialValue() {
+            return new PasswordScanner();
+        }
+    };
+
+    private DictionaryPasswordValidator(Builder builder, boolean useSnapshot) throws DictionaryPasswordFileException {
+        this.accuracy = builder.accuracy;
+        this.minWordCharLength = builder.minWordCharLength;
+        this.backend = builder.backend;
+        this.bundled = builder.sources.isEmpty() && builder.snapshotFile == null;
+        this.sources = Collections.unmodifiableList(new ArrayList<DictionarySource>(builder.sources));
+        this.attributeSources = builder.attributeSources;
+        this.concurrentAdds = builder.concurrentAdds;
+        this.substitutionVariants = builder.substitutionVariants;
+        this.metrics = builder.metrics ? new LookupMetrics() : null;
+        this.scanOrder = builder.scanOrder;
+        this.resultCache = builder.cacheSize == 0 ? null : new ResultCache(builder.cacheSize, builder.cacheTtlNanos);
+        this.maxWordRank = builder.maxWordRank;
+        this.useSnapshot = useSnapshot;
+        if (!useSnapshot) {
+            this.snapshotFile = null;
+        } else if (builder.snapshotFile != null || !builder.sources.isEmpty()) {
+            this.snapshotFile = builder.snapshotFile;
+        } else {
+            this.snapshotFile = new File(ABSOLUTE_SNAPSHOT_FILE);
+        }
+        this.dictionary = initalizeDictionary();
+    }
 
-    private DictionaryPasswordValidator() {
-        // No code needed here...
+    /**
+     * Starts building a validator. Without any dictionary sources it reads
+     * the same dictionary as getInstance(): the one in /conf/dictionary, or
+     * the one inside the jar.
+     * @return Builder
+     */
+    public static Builder builder() {
+        return new Builder();
     }
 
     /**
-     * Lets you configure the class's values prior to creating the singleton instance
-     * This isn't exactly the best way to do this.
+     * Lets you configure the values of the shared instance prior to creating it.
+     * Prefer builder(), which isn't limited to a single instance.
      *
      * @param accuracy
      * @param minWordCharLength
      * @throws DictionaryPasswordConfigException
      */
     public static synchronized void configure(float newAccuracy, int newMinWordCharLength) throws DictionaryPasswordConfigException {
+        configure(newAccuracy, newMinWordCharLength, DictionaryBackend.BLOOM_FILTER);
+    }
+
+    /**
+     * Lets you configure the values of the shared instance, including the
+     * data structure the dictionary is kept in, prior to creating it.
+     * Prefer builder(), which isn't limited to a single instance.
+     *
+     * @param accuracy bits per word, only used by the filter backends
+     * @param minWordCharLength
+     * @param backend
+     * @throws DictionaryPasswordConfigException
+     */
+    public static synchronized void configure(float newAccuracy, int newMinWordCharLength, DictionaryBackend newBackend) throws DictionaryPasswordConfigException {
         if (instance == null) {
-            accuracy = newAccuracy;
-            minWordCharLength = newMinWordCharLength;
+            Builder newConfiguration = builder().accuracy(newAccuracy).minWordCharLength(newMinWordCharLength).backend(newBackend);
+            newConfiguration.validate();
+            configuration = newConfiguration;
         } else {
             throw new DictionaryPasswordConfigException("Singleton has already been initialized.");
         }
     }
 
     /**
-     * Grab the DictionaryPasswordValidator.
-     * @return DictionaryPasswordValidator instance (or null on error)
+     * Grab the shared DictionaryPasswordValidator, creating it on first use.
+     * Only the first call takes a lock.
+     * @return DictionaryPasswordValidator instance
      * @throws DictionaryPasswordFileException
      */
-    public static synchronized DictionaryPasswordValidator getInstance() throws DictionaryPasswordFileException {
+    public static DictionaryPasswordValidator getInstance() throws DictionaryPasswordFileException {
+
+        DictionaryPasswordValidator result = instance;
+        if (result == null) {
+            synchronized (DictionaryPasswordValidator.class) {
+                result = instance;
+                if (result == null) {
+                    // Don't keep an instance if we have problems reading, the exception keeps passing back
+                    result = new DictionaryPasswordValidator(configuration, true);
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
 
-        if (instance == null) {
+    /**
+     * @return bits per word, only used by the filter backends
+     */
+    public float getAccuracy() {
+        return this.accuracy;
+    }
 
-            instance = new DictionaryPasswordValidator();
+    /**
+     * @return the shortest word that is looked up
+     */
+    public int getMinWordCharLength() {
+        return this.minWordCharLength;
+    }
 
-            instance.characterPattern = Pattern.compile("[a-zA-Z]+");
+    /**
+     * @return the data structure the dictionary is kept in
+     */
+    public DictionaryBackend getBackend() {
+        return this.backend;
+    }
 
-            try {
-                instance.initalizeDictionary();
-            } catch (DictionaryPasswordFileException e) {
+    /**
+     * Reads the dictionary again and swaps it in once it is completely
+     * loaded. Lookups keep using the previous dictionary in the meantime,
+     * and never block. If the dictionary can't be read, the previous one
+     * stays in use. Concurrent reloads run one after the other.
+     * @throws DictionaryPasswordFileException
+     */
+    public void reload() throws DictionaryPasswordFileException {
 
-                // Don't initalize if we have problems reading!
-                instance.characterPattern = null;
-                instance = null;
+        synchronized (this.reloadLock) {
 
-                // Let it keep passing back
-                throw e;
-            }
+            long startTime = System.currentTimeMillis();
+
+            LoadedDictionary loaded = loadDictionary();
+            LoadedDictionary previous = this.dictionary;
+            this.dictionary = loaded;
 
+            long stopTime = System.currentTimeMillis();
+
+            printStats(loaded, previous, startTime, stopTime);
         }
-        return instance;
     }
 
     /**
-     * An initializer method.  This just populates the Bloom Filter using
-     * the list of words in the /conf/dictionary directory
-     * @throws DictionaryPasswordFileException
+     * Starts a background thread which calls reload() whenever a word list,
+     * or the snapshot file, changes. Failed reloads are logged and the
+     * previous dictionary stays in use. Close the returned watcher to stop.
+     * @return the watcher
+     * @throws IOException if the dictionary directory can't be watched
      */
-    private void initalizeDictionary() throws DictionaryPasswordFileException {
-
+    public Closeable watchDictionary() throws IOException {
 
-        // Count and calculate the bit set size
-        this.totalWords = countWords();
-        this.bitSetSize = (int) (accuracy * this.totalWords);
+        List<DictionarySource> watched = this.sources;
+        if (watched.isEmpty()) {
+            watched = Collections.singletonList(DictionarySource.file(new File(ABSOLUTE_DICTIONARY_FILE)));
+        }
+        DictionaryWatcher watcher = new DictionaryWatcher(this, watched, this.snapshotFile);
+        watcher.start();
+        return watcher;
+    }
 
-        // Construct our Bloom Filter
-        this.bloomFilter = new BloomFilter(this.bitSetSize, this.totalWords);
+    /**
+     * An initializer method.  This loads the dictionary and prints its stats
+     * @return the loaded dictionary
+     * @throws DictionaryPasswordFileException
+     */
+    private LoadedDictionary initalizeDictionary() throws DictionaryPasswordFileException {
 
         long startTime = System.currentTimeMillis();
 
-        // Populate the Bloom Filter
-        populateFilter();
+        LoadedDictionary loaded = loadDictionary();
 
         long stopTime = System.currentTimeMillis();
 
-        printStats(startTime, stopTime);
+        printStats(loaded, null, startTime, stopTime);
 
+        return loaded;
     }
 
     /**
-     * Prints the stats for the dictionary and the Bloom Filter to the logger
-     * at the INFO level
-     * @param startTime
-     * @param stopTime
+     * Loads a precompiled snapshot of the dictionary if there is an
+     * up-to-date one, and otherwise populates the configured backend using
+     * the list of words in the dictionary file
+     * @return the loaded dictionary
+     * @throws DictionaryPasswordFileException
      */
-    void printStats(long startTime, long stopTime) {
+    private LoadedDictionary loadDictionary() throws DictionaryPasswordFileException {
 
-        StringBuilder sBuilder = new StringBuilder();
+        List<DictionarySource> wordLists = resolveSources();
 
-        DecimalFormat dFormat = new DecimalFormat("#.##");
+        // A snapshot only holds the combined dictionary, and is read-only
+        boolean attributed = this.attributeSources && wordLists.size() > 1;
 
-        sBuilder.append("\n\nDictionaryPasswordValidator:\n");
-        sBuilder.append("- Successfully populated the bloom filter with ");
-        sBuilder.append(this.totalWords);
-        sBuilder.append(" words.\n");
-        sBuilder.append("- The bit set is ");
-        sBuilder.append(this.bitSetSize);
-        sBuilder.append(" (");
-        sBuilder.append(((this.bitSetSize / 1024)));
-        sBuilder.append("kb) in size.\n");
-        sBuilder.append("- It took ");
-        sBuilder.append(dFormat.format(((stopTime - startTime) * 0.001)));
-        sBuilder.append(" seconds to populate the bloom filter.\n");
-        sBuilder.append("- The current false-positive rate for the bloom filter is: ");
-        sBuilder.append(dFormat.format(100 * this.bloomFilter.getFalsePositiveProbability()));
-        sBuilder.append("%\n\n");
+        LoadedDictionary loaded = this.useSnapshot && !attributed && !this.concurrentAdds ? loadSnapshot(wordLists) : null;
+        if (loaded == null) {
+            loaded = loadWordLists(wordLists, attributed);
+        }
+        return loaded;
+    }
 
-        Logger.getLogger(DictionaryPasswordValidator.class.getName()).log(Level.INFO, sBuilder.toString());
+    /**
+     * Lists the word lists the dictionary currently consists of. Without
+     * configured sources, that's the word list in /conf/dictionary, or the
+     * one inside the jar
+     * @return the word lists
+     * @throws DictionaryPasswordFileException if a directory can't be read
+     */
+    private List<DictionarySource> resolveSources() throws DictionaryPasswordFileException {
 
+        List<DictionarySource> wordLists = new ArrayList<DictionarySource>();
+        if (this.sources.isEmpty()) {
+            File dictionaryFile = new File(ABSOLUTE_DICTIONARY_FILE);
+            wordLists.add(dictionaryFile.exists() ? DictionarySource.file(dictionaryFile) : DictionarySource.classpath(JAR_DICTIONARY_FILE));
+            return wordLists;
+        }
+
+        try {
+            for (DictionarySource source : this.sources) {
+                source.resolve(wordLists);
+            }
+        } catch (IOException ex) {
+            throw new DictionaryPasswordFileException(ex.getMessage(), ex);
+        }
+        return wordLists;
     }
 
     /**
-     * Counts all the words in the dictionary
-     * @return Number of words in the dictionary files
+     * Populates the configured backend from the word lists. Each word list
+     * is read once, and its words are decoded and added on a fork-join pool.
+     * The backend is sized once, for exactly the words it is given. The
+     * ranks of ranked words are kept next to it, keyed by their hash.
+     * @param wordLists
+     * @param attributed whether to also build a matcher for each word list
+     * @return the loaded dictionary
      * @throws DictionaryPasswordFileException
      */
-    private int countWords() throws DictionaryPasswordFileException {
+    private LoadedDictionary loadWordLists(List<DictionarySource> wordLists, boolean attributed) throws DictionaryPasswordFileException {
 
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
 
-        InputStream fStream = null;
-        InputStreamReader iStream = null;
-        BufferedReader bReader = null;
-        int total = 0;
+            // Read the words of all lists
+            List<int[]> ranks = new ArrayList<int[]>();
+            List<List<String[]>> words = readWordLists(wordLists, pool, ranks);
+            List<String[]> allWords = new ArrayList<String[]>();
+            int totalWords = 0;
+            for (List<String[]> wordListWords : words) {
+                allWords.addAll(wordListWords);
+                totalWords += countWords(wordListWords);
+            }
 
+            // Construct and populate our matcher
+            DictionaryMatcher matcher = concurrentAdds ? backend.newConcurrentMatcher(Math.max(1, totalWords), accuracy)
+                    : backend.newMatcher(Math.max(1, totalWords), accuracy);
+            matcher.addAll(allWords, pool);
+            matcher.finish();
+
+            String[] sourceNames = new String[wordLists.size()];
+            DictionaryMatcher[] sourceMatchers = attributed ? new DictionaryMatcher[wordLists.size()] : null;
+            for (int i = 0; i < wordLists.size(); i++) {
+                sourceNames[i] = wordLists.get(i).getName();
+                if (attributed) {
+                    sourceMatchers[i] = backend.newMatcher(Math.max(1, countWords(words.get(i))), accuracy);
+                    sourceMatchers[i].addAll(words.get(i), pool);
+                    sourceMatchers[i].finish();
+                }
+            }
 
-        try {
+            // Words added while in use may have any length
+            int[] wordLengths = concurrentAdds ? null : ScanPlan.countLengths(allWords);
+            ScanPlan plan = new ScanPlan(minWordCharLength, wordLengths, scanOrder);
 
-            // Grab the dictionary file
-            File dictionaryFile = new File(ABSOLUTE_DICTIONARY_FILE);
-            if (dictionaryFile == null || dictionaryFile.exists() == false) {
-                fStream = this.getClass().getClassLoader().getResourceAsStream(JAR_DICTIONARY_FILE);
-            } else {
-                fStream = new FileInputStream(dictionaryFile);
+            return new LoadedDictionary(matcher, totalWords, sourceNames, sourceMatchers, plan, buildRanks(allWords, ranks), maxWordRank);
+
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads the word lists, decoding all of their chunks in parallel
+     * @param wordLists
+     * @param pool
+     * @param ranks where to add the ranks of the words of each batch, in
+     * the order of the batches of all word lists; null for batches without
+     * ranks
+     * @return the words of each word list, in batches
+     * @throws DictionaryPasswordFileException
+     */
+    private List<List<String[]>> readWordLists(List<DictionarySource> wordLists, ForkJoinPool pool, List<int[]> ranks)
+            throws DictionaryPasswordFileException {
+
+        List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+        int[] chunkCounts = new int[wordLists.size()];
+        for (int i = 0; i < wordLists.size(); i++) {
+            try {
+                List<ByteBuffer> wordListChunks = WordListReader.chunks(wordLists.get(i));
+                chunks.addAll(wordListChunks);
+                chunkCounts[i] = wordListChunks.size();
+            } catch (IOException ex) {
+                Logger.getLogger(DictionaryPasswordValidator.class.getName()).log(Level.SEVERE, null, ex);
+                throw new DictionaryPasswordFileException("Error reading " + wordLists.get(i), ex);
             }
+        }
 
+        int[][] decodedRanks = new int[chunks.size()][];
+        List<String[]> decoded = WordListReader.decode(chunks, minWordCharLength, pool, decodedRanks);
+        ranks.addAll(Arrays.asList(decodedRanks));
 
-            iStream = new InputStreamReader(fStream);
-            bReader = new BufferedReader(iStream);
-            String strLine = null;
+        List<List<String[]>> words = new ArrayList<List<String[]>>();
+        int start = 0;
+        for (int chunkCount : chunkCounts) {
+            words.add(decoded.subList(start, start + chunkCount));
+            start += chunkCount;
+        }
+        return words;
+    }
 
-            //Read File Line By Line
-            while ((strLine = bReader.readLine()) != null) {
+    /**
+     * Keeps the ranks of the words, keyed by their hash, so a rank is found
+     * in a few array reads without keeping the words. Once any word is
+     * ranked, all of them are kept, those without a rank as
+     * WordListReader.UNRANKED, so no dictionary word reads another word's rank
+     * @param batches
+     * @param ranks of the words of each batch, see readWordLists()
+     * @return the ranks, or null if no word is ranked
+     */
+    private static BinaryFuseMap buildRanks(List<String[]> batches, List<int[]> ranks) {
 
-                if (strLine.length() > minWordCharLength) {
-                    total++;
-                }
+        int ranked = 0;
+        int total = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            ranked += ranks.get(i) == null ? 0 : 1;
+            total += batches.get(i).length;
+        }
+        if (ranked == 0) {
+            return null;
+        }
+
+        BinaryFuseMap.Builder builder = new BinaryFuseMap.Builder(total);
+        for (int i = 0; i < batches.size(); i++) {
+            int[] batchRanks = ranks.get(i);
+            String[] batch = batches.get(i);
+            for (int j = 0; j < batch.length; j++) {
+                int rank = batchRanks == null ? 0 : batchRanks[j];
+                builder.put(batch[j], rank > 0 ? rank : WordListReader.UNRANKED);
             }
+        }
+        return builder.build();
+    }
 
-        } catch (IOException ex) {
+    /**
+     * Counts the words in batches
+     * @param batches
+     * @return Number of words
+     */
+    private static int countWords(List<String[]> batches) {
 
-            Logger.getLogger(DictionaryPasswordValidator.class.getName()).log(Level.SEVERE, null, ex);
-            throw new DictionaryPasswordFileException("Error reading file line by line", ex);
+        int total = 0;
+        for (String[] batch : batches) {
+            total += batch.length;
+        }
+        return total;
+    }
 
-        } finally {
+    /**
+     * Loads the Bloom filter from a precompiled snapshot. The snapshot file
+     * (by default the one in /conf/dictionary) is memory-mapped and used in
+     * place, off the heap, unless one of the word lists is newer. Without
+     * a word list in /conf/dictionary, the default validator uses the
+     * snapshot in the jar. Snapshots built with other settings are ignored.
+     * @param wordLists
+     * @return the loaded dictionary, or null if there is no usable snapshot
+     */
+    private LoadedDictionary loadSnapshot(List<DictionarySource> wordLists) {
 
-            // Close the input streams
-            if (bReader != null) {
-                try {
-                    bReader.close();
-                } catch (IOException e) {
-                    //TODO: Logger
-                    System.err.println("Error: " + e.getMessage());
-                }
-            }
+        if (backend != DictionaryBackend.BLOOM_FILTER) {
+            return null;
+        }
 
-            if (iStream != null) {
-                try {
-                    iStream.close();
-                } catch (IOException e) {
-                    //TODO: Logger
-                    System.err.println("Error: " + e.getMessage());
+        long newestWordList = 0;
+        for (DictionarySource wordList : wordLists) {
+            newestWordList = Math.max(newestWordList, wordList.lastModified());
+        }
+
+        DictionarySnapshot snapshot = null;
+        String source = null;
+        InputStream fStream = null;
+
+        try {
+
+            if (snapshotFile != null && snapshotFile.exists() && snapshotFile.lastModified() >= newestWordList) {
+                snapshot = DictionarySnapshot.open(snapshotFile);
+                source = snapshotFile.getPath();
+            } else if (bundled && !new File(ABSOLUTE_DICTIONARY_FILE).exists()) {
+                fStream = this.getClass().getClassLoader().getResourceAsStream(JAR_SNAPSHOT_FILE);
+                if (fStream != null) {
+                    snapshot = DictionarySnapshot.read(fStream);
+                    source = JAR_SNAPSHOT_FILE;
                 }
             }
 
+        } catch (IOException ex) {
+
+            Logger.getLogger(DictionaryPasswordValidator.class.getName()).log(Level.WARNING, "Ignoring unreadable dictionary snapshot", ex);
+            return null;
+
+        } finally {
+
             if (fStream != null) {
                 try {
                     fStream.close();
                 } catch (IOException e) {
-                    //TODO: Logger
-                    System.err.println("Error: " + e.getMessage());
+                    // The snapshot has been read by now
+                    Logger.getLogger(DictionaryPasswordValidator.class.getName()).log(Level.FINE, "Couldn't close the bundled snapshot", e);
                 }
             }
         }
 
+        if (snapshot == null) {
+            return null;
+        }
 
-        return total;
+        if (!snapshot.matches(accuracy, minWordCharLength)) {
+            Logger.getLogger(DictionaryPasswordValidator.class.getName()).log(Level.INFO,
+                    "Ignoring dictionary snapshot {0}, it was built with different settings", source);
+            return null;
+        }
 
+        return new LoadedDictionary(new BloomFilterMatcher(snapshot.bloomFilter), snapshot.totalWords, new String[]{source}, null,
+                new ScanPlan(minWordCharLength, snapshot.wordLengths, scanOrder), snapshot.ranks, maxWordRank);
     }
 
     /**
-     * Populates the Bloom filter with the words stored in the /conf/dictionary
-     * directory.
+     * Reads the word lists, ignoring any snapshot, and writes them as a
+     * snapshot for the given settings. Used by DictionaryCompiler.
+     * @param builder the settings and word lists to compile
+     * @param snapshotFile
+     * @throws DictionaryPasswordConfigException if the backend isn't DictionaryBackend.BLOOM_FILTER
      * @throws DictionaryPasswordFileException
      */
-    private void populateFilter() throws DictionaryPasswordFileException {
+    static void compileSnapshot(Builder builder, File snapshotFile) throws DictionaryPasswordConfigException, DictionaryPasswordFileException {
 
-        InputStream fStream = null;
-        InputStreamReader iStream = null;
-        BufferedReader bReader = null;
+        builder.validate();
+        if (builder.backend != DictionaryBackend.BLOOM_FILTER) {
+            throw new DictionaryPasswordConfigException("Only the " + DictionaryBackend.BLOOM_FILTER + " backend can be precompiled.");
+        }
 
+        DictionaryPasswordValidator validator = new DictionaryPasswordValidator(builder, false);
 
+        DictionarySnapshot snapshot = new DictionarySnapshot(validator.minWordCharLength, validator.accuracy,
+                validator.dictionary.totalWords, validator.dictionary.plan.lengthCounts(), validator.dictionary.ranks,
+                ((BloomFilterMatcher) validator.dictionary.matcher).getBloomFilter());
         try {
+            snapshot.write(snapshotFile);
+        } catch (IOException ex) {
+            throw new DictionaryPasswordFileException("Error writing snapshot " + snapshotFile, ex);
+        }
+    }
 
-            // Grab the dictionary file
-            File dictionaryFile = new File(ABSOLUTE_DICTIONARY_FILE);
-            if (dictionaryFile == null || dictionaryFile.exists() == false) {
-                fStream = this.getClass().getClassLoader().getResourceAsStream(JAR_DICTIONARY_FILE);
-            } else {
-                fStream = new FileInputStream(dictionaryFile);
+    /**
+     * Prints the stats for the dictionary and the backend to the logger
+     * at the INFO level
+     * @param loaded
+     * @param previous the dictionary replaced by a reload, or null
+     * @param startTime
+     * @param stopTime
+     */
+    private void printStats(LoadedDictionary loaded, LoadedDictionary previous, long startTime, long stopTime) {
+
+        StringBuilder sBuilder = new StringBuilder();
+
+        DecimalFormat dFormat = new DecimalFormat("#.##");
+        DecimalFormat deltaFormat = new DecimalFormat("+#;-#");
+
+        sBuilder.append("\n\nDictionaryPasswordValidator:\n");
+        sBuilder.append(previous == null ? "- Successfully populated the " : "- Successfully reloaded the ");
+        sBuilder.append(backend);
+        sBuilder.append(" backend with ");
+        sBuilder.append(loaded.totalWords);
+        if (previous != null) {
+            sBuilder.append(" (");
+            sBuilder.append(deltaFormat.format(loaded.totalWords - previous.totalWords));
+            sBuilder.append(")");
+        }
+        sBuilder.append(" words from ");
+        for (int i = 0; i < loaded.sourceNames.length; i++) {
+            sBuilder.append(i == 0 ? "" : ", ");
+            sBuilder.append(loaded.sourceNames[i]);
+        }
+        sBuilder.append(".\n");
+        sBuilder.append("- It took ");
+        sBuilder.append(dFormat.format(((stopTime - startTime) * 0.001)));
+        sBuilder.append(previous == null ? " seconds to populate it.\n" : " seconds to reload it.\n");
+        loaded.matcher.appendStats(sBuilder);
+        if (loaded.ranks != null) {
+            sBuilder.append("- The ranks of the ");
+            sBuilder.append(loaded.ranks.count());
+            sBuilder.append(" words take ");
+            sBuilder.append(loaded.ranks.bitSize() / 8 / 1024);
+            sBuilder.append("kb.\n");
+        }
+        if (previous != null) {
+            sBuilder.append("- Its size changed by ");
+            sBuilder.append(deltaFormat.format((loaded.memoryUsage() - previous.memoryUsage()) / 1024));
+            sBuilder.append("kb.\n");
+        }
+        sBuilder.append("\n");
+
+        Logger.getLogger(DictionaryPasswordValidator.class.getName()).log(Level.INFO, sBuilder.toString());
+
+    }
+
+    /**
+     * Returns true or false whether or not the passed in word exists in the
+     * dictionary
+     * @param word
+     * @return true/false
+     */
+    public boolean isDictionaryWord(String word) {
+
+        PasswordScanner scanner = this.scanners.get();
+        scanner.loadWord(word);
+
+        return this.dictionary.matcher.isWord(scanner, 0, scanner.length());
+    }
+
+    /**
+     * Returns how common a dictionary word is, if the word lists rank their
+     * words (see WordListReader): 1 for the most common word, 2 for the
+     * next and so on. The rank is kept by hash, next to the dictionary, and
+     * found in a few array reads
+     * @param word
+     * @return the word's rank, or 0 if it has none or isn't a dictionary word
+     */
+    public int getWordRank(String word) {
+
+        LoadedDictionary loaded = this.dictionary;
+        PasswordScanner scanner = this.scanners.get();
+        scanner.loadWord(word);
+
+        // Words that aren't in the dictionary could map to any rank
+        if (loaded.ranks == null || !loaded.matcher.isWord(scanner, 0, scanner.length())) {
+            return 0;
+        }
+        return WordListReader.rankOf(loaded.ranks.get(scanner.lettersView(), 0, scanner.length()));
+    }
+
+    /**
+     * Adds a word to the dictionary while it is in use, e.g. a newly breached
+     * password read from a stream. Lookups on other threads carry on without
+     * blocking, and find the word as soon as this returns. Words shorter than
+     * minWordCharLength are ignored, as when reading word lists. Added words
+     * are only kept until the next reload, and aren't attributed to any word
+     * list; add them to a word list as well to keep them.
+     * @param word
+     * @throws IllegalStateException if the validator wasn't built with concurrentAdds(true)
+     */
+    public void addDictionaryWord(String word) {
+
+        if (!this.concurrentAdds) {
+            throw new IllegalStateException("Build the validator with concurrentAdds(true) to add words.");
+        }
+        if (word.length() >= minWordCharLength) {
+            this.dictionary.matcher.addConcurrently(word.toLowerCase());
+        }
+    }
+
+    /**
+     * Returns true or false whether or not the password contains dictionary
+     * keywords. Only the letters A-Z are considered, without capitalization,
+     * and every run of at least minWordCharLength of them (up to the whole
+     * password) is looked up, skipping lengths no dictionary word has, in
+     * the configured ScanOrder. With maxWordRank(), only words that common
+     * count. If the validator was built with
+     * substitutionVariants(), the password is also looked up with its
+     * character substitutions undone. With resultCache(), recent results
+     * are reused.
+     * @param password
+     * @return true/false
+     */
+    public boolean isPasswordDictionaryBased(String password) {
+        return isDictionaryBased(password);
+    }
+
+    /**
+     * isPasswordDictionaryBased() for any CharSequence, e.g. a line of a
+     * memory-mapped file, without making a String of it
+     * @param password
+     * @return true/false
+     */
+    boolean isDictionaryBased(CharSequence password) {
+
+        LoadedDictionary loaded = this.dictionary;
+        PasswordScanner scanner = this.scanners.get();
+        if (this.metrics == null) {
+            return containsWord(loaded, scanner, password);
+        }
+
+        if (!LookupMetrics.isTimed(scanner.countCheck())) {
+            boolean found = containsWord(loaded, scanner, password);
+            this.metrics.record(found, scanner.probes());
+            return found;
+        }
+
+        long startTime = System.nanoTime();
+        boolean found = containsWord(loaded, scanner, password);
+        this.metrics.record(found, scanner.probes(), System.nanoTime() - startTime);
+        return found;
+    }
+
+    /**
+     * Looks a password up in the dictionary, through the result cache if
+     * there is one
+     * @param loaded
+     * @param scanner
+     * @param password
+     * @return true if the password contains a word
+     */
+    private boolean containsWord(LoadedDictionary loaded, PasswordScanner scanner, CharSequence password) {
+        return containsWord(loaded.matcher, loaded.plan, this.resultCache == null ? 0 : loaded.generation, scanner, password);
+    }
+
+    /**
+     * Looks a password up in a matcher, first as letters only and then as
+     * each of its substitution variants
+     * @param matcher
+     * @param plan
+     * @param cacheTag the dictionary's generation to cache results under, 0 not to cache them
+     * @param scanner
+     * @param password
+     * @return true if any of them contains a word
+     */
+    private boolean containsWord(DictionaryMatcher matcher, ScanPlan plan, int cacheTag, PasswordScanner scanner, CharSequence password) {
+
+        // Strip out all characters except A-Z and remove capitalization.
+        scanner.load(password);
+        if (lookUp(matcher, plan, cacheTag, scanner)) {
+            return true;
+        }
+
+        int variants = this.substitutionVariants > 0 ? scanner.loadSubstitutions(password, this.substitutionVariants) : 0;
+        for (int variant = 0; variant < variants; variant++) {
+            scanner.loadVariant(variant);
+            if (lookUp(matcher, plan, cacheTag, scanner)) {
+                return true;
             }
+        }
+        return false;
+    }
+
+    /**
+     * Looks the letters loaded in the scanner up in a matcher. If they are
+     * cached, the result is reused, and if a prefix of them is known not
+     * to contain a word, only the windows ending past it are looked up
+     * @param matcher
+     * @param plan
+     * @param cacheTag see containsWord()
+     * @param scanner
+     * @return true if the letters contain a word
+     */
+    private boolean lookUp(DictionaryMatcher matcher, ScanPlan plan, int cacheTag, PasswordScanner scanner) {
+
+        ResultCache cache = this.resultCache;
+        if (cacheTag == 0 || scanner.length() < plan.minLength()) {
+            return matcher.containsWord(scanner, plan);
+        }
+
+        long now = cache.now();
+        int known = cache.get(scanner, cacheTag, plan.minLength(), now);
+        if (known == ResultCache.FOUND) {
+            return true;
+        }
+        if (known == ResultCache.NOT_FOUND) {
+            return false;
+        }
 
+        scanner.skipPrefix(known);
+        boolean found = matcher.containsWord(scanner, plan);
+        cache.put(scanner, cacheTag, found, now);
+        return found;
+    }
 
-            iStream = new InputStreamReader(fStream);
-            bReader = new BufferedReader(iStream);
-            String strLine = null;
+    /**
+     * Checks many passwords at once, as isPasswordDictionaryBased() would,
+     * e.g. to audit stored passwords. All of them are checked against the
+     * same dictionary, even if it is reloaded in the meantime
+     * @param passwords
+     * @return bit i is set if the i-th password, in iteration order, is dictionary based
+     */
+    public BitSet arePasswordsDictionaryBased(Collection<String> passwords) {
+        return arePasswordsDictionaryBased(passwords, false);
+    }
 
-            //Read File Line By Line
-            while ((strLine = bReader.readLine()) != null) {
+    /**
+     * Checks many passwords at once, as isPasswordDictionaryBased() would,
+     * optionally splitting them across all cores. See
+     * arePasswordsDictionaryBased(Collection)
+     * @param passwords
+     * @param parallel whether to check batches of passwords in parallel, on
+     * a fork-join pool shared by all validators
+     * @return bit i is set if the i-th password, in iteration order, is dictionary based
+     */
+    public BitSet arePasswordsDictionaryBased(Collection<String> passwords, boolean parallel) {
 
-                if (strLine.length() >= minWordCharLength) {
-                    bloomFilter.add(strLine.toLowerCase());
+        String[] batch = passwords.toArray(new String[passwords.size()]);
+        boolean[] results = new boolean[batch.length];
+        LoadedDictionary loaded = this.dictionary;
 
-                }
+        if (parallel && batch.length > BATCH_SIZE) {
+            BatchPool.POOL.invoke(new BatchTask(loaded, batch, 0, batch.length, results));
+        } else {
+            checkBatch(loaded, batch, 0, batch.length, results);
+        }
+
+        BitSet dictionaryBased = new BitSet(batch.length);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i]) {
+                dictionaryBased.set(i);
+            }
+        }
+        return dictionaryBased;
+    }
+
+    /**
+     * Checks passwords[from, to) on the current thread
+     * @param loaded
+     * @param passwords
+     * @param from
+     * @param to
+     * @param results
+     */
+    private void checkBatch(LoadedDictionary loaded, String[] passwords, int from, int to, boolean[] results) {
+
+        PasswordScanner scanner = this.scanners.get();
+        for (int i = from; i < to; i++) {
+            results[i] = containsWord(loaded, scanner, passwords[i]);
+            if (this.metrics != null) {
+                this.metrics.record(results[i], scanner.probes());
             }
+        }
+    }
 
-        } catch (IOException ex) {
+    /**
+     * Returns the longest dictionary word contained in the password, as
+     * lowercase letters, or null if it doesn't contain any. With
+     * substitutionVariants(), the word may come from a variant, e.g.
+     * "password" for "P@ssw0rd"
+     * @param password
+     * @return word or null
+     */
+    public String findLongestDictionaryWord(String password) {
 
-            Logger.getLogger(DictionaryPasswordValidator.class.getName()).log(Level.SEVERE, null, ex);
-            throw new DictionaryPasswordFileException("Error reading file line by line", ex);
+        LoadedDictionary loaded = this.dictionary;
+        DictionaryMatcher matcher = loaded.matcher;
+        PasswordScanner scanner = this.scanners.get();
+        scanner.load(password);
 
-        } finally {
+        String longest = null;
+        if (matcher.findLongestWord(scanner, loaded.plan)) {
+            longest = scanner.matchedWord();
+        }
 
-            // Close the input streams
-            if (bReader != null) {
-                try {
-                    bReader.close();
-                } catch (IOException e) {
-                    //TODO: Logger
-                    System.err.println("Error: " + e.getMessage());
+        int variants = this.substitutionVariants > 0 ? scanner.loadSubstitutions(password, this.substitutionVariants) : 0;
+        for (int variant = 0; variant < variants; variant++) {
+            scanner.loadVariant(variant);
+            if (matcher.findLongestWord(scanner, loaded.plan)) {
+                String word = scanner.matchedWord();
+                if (longest == null || word.length() > longest.length()) {
+                    longest = word;
                 }
             }
+        }
+        return longest;
+    }
 
-            if (iStream != null) {
-                try {
-                    iStream.close();
-                } catch (IOException e) {
-                    //TODO: Logger
-                    System.err.println("Error: " + e.getMessage());
+    /**
+     * Returns every dictionary word in the password, e.g. to show a user
+     * which part of a password is a dictionary word. See
+     * findDictionaryWords(String, boolean)
+     * @param password
+     * @return the words, ordered by offset and then by length; empty if the
+     * password isn't dictionary based
+     */
+    public List<DictionaryMatch> findDictionaryWords(String password) {
+        return findDictionaryWords(password, false);
+    }
+
+    /**
+     * Returns the dictionary words in the password, with their positions in
+     * it and the word list each came from. The words are recorded during
+     * the scan itself, so this costs a single scan, as
+     * isPasswordDictionaryBased() does; only a validator built with
+     * attributeSources(true) then looks each word up in the word lists.
+     * With substitutionVariants(), the words of every variant are included,
+     * once each
+     * @param password
+     * @param stopAtFirst return only the first word found, as soon as
+     * isPasswordDictionaryBased() would
+     * @return the words, ordered by offset and then by length; empty if the
+     * password isn't dictionary based
+     */
+    public List<DictionaryMatch> findDictionaryWords(String password, boolean stopAtFirst) {
+
+        LoadedDictionary loaded = this.dictionary;
+        DictionaryMatcher matcher = loaded.matcher;
+        PasswordScanner scanner = this.scanners.get();
+        List<DictionaryMatch> found = new ArrayList<DictionaryMatch>();
+
+        scanner.load(password);
+        int variants = this.substitutionVariants > 0 ? scanner.loadSubstitutions(password, this.substitutionVariants) : 0;
+        for (int variant = -1; variant < variants; variant++) {
+
+            // The letters only, then each variant
+            if (variant >= 0) {
+                scanner.loadVariant(variant);
+            }
+
+            if (stopAtFirst) {
+                if (matcher.containsWord(scanner, loaded.plan)) {
+                    found.add(newMatch(loaded, scanner, scanner.matchStart(), scanner.matchEnd()));
+                    return found;
+                }
+            } else if (matcher.findAllWords(scanner, loaded.plan)) {
+                for (int i = 0; i < scanner.matchCount(); i++) {
+                    DictionaryMatch match = newMatch(loaded, scanner, scanner.matchStart(i), scanner.matchEnd(i));
+                    if (!found.contains(match)) {
+                        found.add(match);
+                    }
                 }
             }
+        }
 
-            if (fStream != null) {
-                try {
-                    fStream.close();
-                } catch (IOException e) {
-                    //TODO: Logger
-                    System.err.println("Error: " + e.getMessage());
+        Collections.sort(found, new Comparator<DictionaryMatch>() {
+
+            public int compare(DictionaryMatch a, DictionaryMatch b) {
+                if (a.getOffset() != b.getOffset()) {
+                    return a.getOffset() < b.getOffset() ? -1 : 1;
+                }
+                if (a.getLength() != b.getLength()) {
+                    return a.getLength() < b.getLength() ? -1 : 1;
                 }
+                return a.getWord().compareTo(b.getWord());
             }
+        });
+        return found;
+    }
+
+    /**
+     * Estimates how many bits of entropy a password has, as a score rather
+     * than the yes or no of isPasswordDictionaryBased(): a passphrase of
+     * several dictionary words is dictionary based, yet strong. The
+     * letters are split into dictionary words, each worth log2 of the
+     * number of words in the dictionary, and random letters, worth log2(26)
+     * each, whichever way is cheapest; every other character is worth
+     * log2(43). A ranked word is worth log2 of its rank instead, if that's
+     * less, and counts whatever maxWordRank() is. Capitalization isn't
+     * counted. With substitutionVariants(),
+     * the lowest estimate over the variants is returned
+     * @param password
+     * @return estimated entropy in bits, 0 for an empty password
+     */
+    public double estimateGuessEntropy(String password) {
+
+        LoadedDictionary loaded = this.dictionary;
+        PasswordScanner scanner = this.scanners.get();
+        double wordBits = EntropyEstimator.wordBits(loaded.totalWords);
+
+        scanner.load(password);
+        int variants = this.substitutionVariants > 0 ? scanner.loadSubstitutions(password, this.substitutionVariants) : 0;
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int variant = -1; variant < variants; variant++) {
+
+            // The letters only, then each variant
+            if (variant >= 0) {
+                scanner.loadVariant(variant);
+            }
+
+            loaded.matcher.findAllWords(scanner, loaded.scorePlan);
+            double bits = EntropyEstimator.letterBits(scanner, wordBits, loaded.ranks)
+                    + (password.length() - scanner.length()) * EntropyEstimator.OTHER_CHARACTER_BITS;
+            lowest = Math.min(lowest, bits);
         }
+        return lowest;
     }
 
     /**
-     * Returns true or false whether or not the passed in word exists in the
-     * dictionary
-     * @param word
-     * @return true/false
+     * @return the scanner's letters [start, end) as a match in the password
      */
-    public boolean isDictionaryWord(String word) {
-        return this.bloomFilter.contains(word.toLowerCase());
+    private static DictionaryMatch newMatch(LoadedDictionary loaded, PasswordScanner scanner, int start, int end) {
+
+        int offset = scanner.position(start);
+        int length = scanner.position(end - 1) + 1 - offset;
+        String word = new String(scanner.letters(), start, end - start);
+
+        String source = null;
+        if (loaded.sourceMatchers != null) {
+            for (int i = 0; i < loaded.sourceMatchers.length && source == null; i++) {
+                if (loaded.sourceMatchers[i].isWord(scanner, start, end)) {
+                    source = loaded.sourceNames[i];
+                }
+            }
+        } else if (loaded.sourceNames.length == 1) {
+            source = loaded.sourceNames[0];
+        }
+        int rank = loaded.ranks == null ? 0 : WordListReader.rankOf(loaded.ranks.get(scanner.lettersView(), start, end));
+        return new DictionaryMatch(word, offset, length, source, rank);
     }
 
     /**
-     * Returns true or false whether or not the password contains dictionary
-     * keywords
+     * Returns the names of the word lists containing a word of the password,
+     * e.g. to tell a breached password from a product name. Empty if the
+     * password isn't dictionary based. With more than one word list, the
+     * validator must be built with attributeSources(true).
      * @param password
-     * @return true/false
+     * @return names of the word lists, see DictionarySource.getName()
+     * @throws IllegalStateException if sources aren't attributed
      */
-    public boolean isPasswordDictionaryBased(String password) {
+    public List<String> findDictionarySources(String password) {
 
-        StringBuilder pwCharsOnly = new StringBuilder();
+        LoadedDictionary loaded = this.dictionary;
+        PasswordScanner scanner = this.scanners.get();
 
-        // Strip out all characters except A-Z and remove capitalization.
-        Matcher matcher = this.characterPattern.matcher(password.toLowerCase());
-        while (matcher.find()) {
-            pwCharsOnly.append(matcher.group());
+        List<String> found = new ArrayList<String>();
+        if (!containsWord(loaded, scanner, password)) {
+            return found;
         }
 
+        if (loaded.sourceMatchers == null) {
+            if (loaded.sourceNames.length != 1) {
+                throw new IllegalStateException("Build the validator with attributeSources(true) to attribute hits to word lists.");
+            }
+            found.add(loaded.sourceNames[0]);
+            return found;
+        }
 
-        // Now, loop through all possible combinations.
-        // Start with the minWordCharLen and grow till we're equal to
-        // the length of pwCharsOnly
+        for (int i = 0; i < loaded.sourceMatchers.length; i++) {
+            if (containsWord(loaded.sourceMatchers[i], loaded.plan, 0, scanner, password)) {
+                found.add(loaded.sourceNames[i]);
+            }
+        }
+        return found;
+    }
 
-        int pwLength = pwCharsOnly.length();
-        int strWidth = minWordCharLength;
-        int position = 0;
-        String compareStr = null;
-        while (strWidth < pwLength) {
+    /**
+     * Returns a snapshot of the dictionary's statistics and, if the
+     * validator was built with metrics(true), of the passwords it has
+     * checked so far, and of the result cache. The fill ratio of a Bloom filter is counted anew on
+     * every call, by reading the whole filter.
+     * @return ValidatorMetrics
+     */
+    public ValidatorMetrics getMetrics() {
+
+        LoadedDictionary loaded = this.dictionary;
+        DictionaryMatcher matcher = loaded.matcher;
+        ResultCache cache = this.resultCache;
+        long[] cacheCounts = cache == null ? new long[3] : new long[] {cache.hits(), cache.prefixHits(), cache.misses()};
+        if (this.metrics == null) {
+            return new ValidatorMetrics(backend, loaded.totalWords, loaded.memoryUsage(), matcher.fillRatio(),
+                    matcher.falsePositiveProbability(), 0, 0, 0, new long[LatencyHistogram.BUCKETS], cacheCounts);
+        }
+        return new ValidatorMetrics(backend, loaded.totalWords, loaded.memoryUsage(), matcher.fillRatio(),
+                matcher.falsePositiveProbability(), this.metrics.lookups(), this.metrics.hits(),
+                this.metrics.probes(), this.metrics.latencyCounts(), cacheCounts);
+    }
 
-            // Set the substr beginning as baseline
-            position = 0;
-            while ((position + strWidth) <= pwLength) {
+    /**
+     * Registers a DictionaryPasswordValidatorMXBean for this validator with
+     * the platform MBean server, under
+     * com.platinum.dpv:type=DictionaryPasswordValidator,name=&lt;name&gt;.
+     * Unregister it with the returned name once the validator is closed
+     * @param name distinguishes validators, e.g. "login"
+     * @return the name the bean was registered under
+     * @throws JMException if the name is taken or the bean can't be registered
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.platinum.dpv:type=DictionaryPasswordValidator,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(this), objectName);
+        return objectName;
+    }
 
-                compareStr = pwCharsOnly.substring(position, (position + strWidth));
-                if (this.bloomFilter.contains(compareStr) == true) {
-                    return true;
-                }
+    /**
+     * Settings for a new validator. Not thread-safe, but the validators it
+     * builds are.
+     */
+    public static final class Builder {
+
+        private float accuracy = DEFAULT_ACCURACY;
+        private int minWordCharLength = DEFAULT_MIN_WORD_CHAR_LENGTH;
+        private DictionaryBackend backend = DictionaryBackend.BLOOM_FILTER;
+        private final List<DictionarySource> sources = new ArrayList<DictionarySource>();
+        private File snapshotFile = null;
+        private boolean attributeSources = false;
+        private boolean concurrentAdds = false;
+        private int substitutionVariants = 0;
+        private boolean metrics = false;
+        private ScanOrder scanOrder = ScanOrder.BY_START_POSITION;
+        private int cacheSize = 0;
+        private long cacheTtlNanos = 0;
+        private int maxWordRank = 0;
+
+        private Builder() {
+        }
+
+        /**
+         * @param accuracy bits per word, only used by the filter backends
+         * @return this builder
+         */
+        public Builder accuracy(float accuracy) {
+            this.accuracy = accuracy;
+            return this;
+        }
+
+        /**
+         * @param minWordCharLength the shortest word that is looked up
+         * @return this builder
+         */
+        public Builder minWordCharLength(int minWordCharLength) {
+            this.minWordCharLength = minWordCharLength;
+            return this;
+        }
 
-                // Increment the position until we reach the end of pwCharsOnly
-                position++;
+        /**
+         * @param backend the data structure the dictionary is kept in
+         * @return this builder
+         */
+        public Builder backend(DictionaryBackend backend) {
+            this.backend = backend;
+            return this;
+        }
+
+        /**
+         * Reads the words from this file, one per line, instead of the
+         * default dictionary. May be called several times, along with
+         * source(), to combine word lists
+         * @param dictionaryFile
+         * @return this builder
+         */
+        public Builder dictionary(File dictionaryFile) {
+            return source(DictionarySource.file(dictionaryFile));
+        }
+
+        /**
+         * Adds a word list, or a directory of them, to the dictionary instead
+         * of the default dictionary. May be called several times
+         * @param source
+         * @return this builder
+         */
+        public Builder source(DictionarySource source) {
+            if (source == null) {
+                throw new IllegalArgumentException("source must not be null");
             }
+            this.sources.add(source);
+            return this;
+        }
 
-            // Increase the width of the word now
-            strWidth++;
+        /**
+         * Also keeps each word list in a matcher of its own, so
+         * findDictionarySources() can tell which lists a password hits.
+         * This takes about twice the memory, and rules out snapshots
+         * @param attributeSources
+         * @return this builder
+         */
+        public Builder attributeSources(boolean attributeSources) {
+            this.attributeSources = attributeSources;
+            return this;
         }
 
-        // Looks like no matches were found
-        return false;
+        /**
+         * Keeps the dictionary in a scalable Bloom filter of
+         * ConcurrentBloomFilters, so words can be added with
+         * addDictionaryWord() while the validator is in use. The filter
+         * grows as words are added, and its false-positive rate stays below
+         * that of a Bloom filter of the configured accuracy, at the cost of
+         * about 30% more memory. Only supported by
+         * DictionaryBackend.BLOOM_FILTER, and rules out snapshots
+         * @param concurrentAdds
+         * @return this builder
+         */
+        public Builder concurrentAdds(boolean concurrentAdds) {
+            this.concurrentAdds = concurrentAdds;
+            return this;
+        }
+
+        /**
+         * Also looks passwords up with common character substitutions
+         * undone, e.g. P@ssw0rd as password: @ and 4 for a, 8 for b, ( for
+         * c, 3 for e, 6 and 9 for g, 1 and ! for i or l, | for l or i, 0 for
+         * o, $ and 5 for s, 7 and + for t, and 2 for z. Each character that
+         * stands for two letters doubles the number of variants to look up,
+         * up to maxVariants; beyond that, such characters only take their
+         * first letter. 0, the default, turns substitutions off
+         * @param maxVariants most variants looked up per password
+         * @return this builder
+         */
+        public Builder substitutionVariants(int maxVariants) {
+            this.substitutionVariants = maxVariants;
+            return this;
+        }
+
+        /**
+         * @param scanOrder the order in which the filter backends look up
+         * the windows of a password, ScanOrder.BY_START_POSITION by default
+         * @return this builder
+         */
+        public Builder scanOrder(ScanOrder scanOrder) {
+            this.scanOrder = scanOrder;
+            return this;
+        }
+
+        /**
+         * Keeps the results of recent isPasswordDictionaryBased() checks, for
+         * clients that check the same passwords over and over, such as a
+         * strength meter checking on every keystroke. Results are keyed on
+         * a hash of the password's letters, so no password is kept. The
+         * results for the last few prefixes of the letters are reused as
+         * well: after "passwor", checking "password" only looks up the
+         * windows ending in its final d. The cache is emptied on reload,
+         * and rules out concurrentAdds(). isDictionaryWord() isn't cached,
+         * as a single lookup costs no more than the cache would
+         * @param maxEntries most results kept, rounded down to a power of 2
+         * (of at least 8); 0, the default, turns the cache off
+         * @param ttl how long a result is kept, 0 for as long as there's room
+         * @param unit of ttl
+         * @return this builder
+         */
+        public Builder resultCache(int maxEntries, long ttl, TimeUnit unit) {
+            this.cacheSize = maxEntries;
+            this.cacheTtlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * Only counts the most common dictionary words, for word lists that
+         * rank their words by how common they are, one "word&lt;TAB&gt;rank"
+         * per line: a password containing only rarer words isn't dictionary
+         * based, nor are those words found by findLongestDictionaryWord()
+         * and findDictionaryWords(). Words without a rank always count, as
+         * do all words of word lists without ranks
+         * @param maxRank the rank of the least common word that counts, 1
+         * for the most common; 0, the default, counts words of any rank
+         * @return this builder
+         */
+        public Builder maxWordRank(int maxRank) {
+            this.maxWordRank = maxRank;
+            return this;
+        }
+
+        /**
+         * Counts the passwords checked, how many were dictionary based and
+         * how many windows were looked up, and times a sample of the calls
+         * to isPasswordDictionaryBased(), for getMetrics() and
+         * registerMBean(). This costs a few striped counter increments per
+         * check, plus two System.nanoTime() calls for one check in 16
+         * @param metrics
+         * @return this builder
+         */
+        public Builder metrics(boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Uses this precompiled snapshot (see DictionaryCompiler) when it is
+         * at least as new as the word lists and was built with the same
+         * settings. Only used by DictionaryBackend.BLOOM_FILTER
+         * @param snapshotFile
+         * @return this builder
+         */
+        public Builder snapshot(File snapshotFile) {
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
+        /**
+         * Loads the dictionary and creates the validator
+         * @return DictionaryPasswordValidator
+         * @throws DictionaryPasswordConfigException if the settings are invalid
+         * @throws DictionaryPasswordFileException if the dictionary can't be read
+         */
+        public DictionaryPasswordValidator build() throws DictionaryPasswordConfigException, DictionaryPasswordFileException {
+            validate();
+            return new DictionaryPasswordValidator(this, true);
+        }
+
+        private void validate() throws DictionaryPasswordConfigException {
+            if (backend == null) {
+                throw new DictionaryPasswordConfigException("A dictionary backend is required.");
+            }
+            if (minWordCharLength < 1) {
+                throw new DictionaryPasswordConfigException("The minimum word length must be at least 1.");
+            }
+            if (!(accuracy > 0)) {
+                throw new DictionaryPasswordConfigException("The accuracy must be positive.");
+            }
+            if (scanOrder == null) {
+                throw new DictionaryPasswordConfigException("A scan order is required.");
+            }
+            if (maxWordRank < 0) {
+                throw new DictionaryPasswordConfigException("The maximum word rank can't be negative.");
+            }
+            if (substitutionVariants < 0) {
+                throw new DictionaryPasswordConfigException("The number of substitution variants can't be negative.");
+            }
+            if (concurrentAdds && backend != DictionaryBackend.BLOOM_FILTER) {
+                throw new DictionaryPasswordConfigException("Only the " + DictionaryBackend.BLOOM_FILTER + " backend supports concurrent adds.");
+            }
+            if (cacheSize < 0 || cacheTtlNanos < 0) {
+                throw new DictionaryPasswordConfigException("The result cache size and time to live can't be negative.");
+            }
+            if (cacheSize > 0 && concurrentAdds) {
+                throw new DictionaryPasswordConfigException("The result cache can't be combined with concurrent adds, it would miss added words.");
+            }
+        }
+    }
+
+    /**
+     * Checks a range of passwords, splitting the range until a single
+     * batch is left
+     */
+    private final class BatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final LoadedDictionary loaded;
+        private final String[] passwords;
+        private final int from;
+        private final int to;
+        private final boolean[] results;
+
+        BatchTask(LoadedDictionary loaded, String[] passwords, int from, int to, boolean[] results) {
+            this.loaded = loaded;
+            this.passwords = passwords;
+            this.from = from;
+            this.to = to;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BatchTask(loaded, passwords, from, middle, results),
+                        new BatchTask(loaded, passwords, middle, to, results));
+                return;
+            }
+
+            checkBatch(loaded, passwords, from, to, results);
+        }
+    }
+
+    /**
+     * The pool parallel batches are checked on, created on first use. Its
+     * threads are daemons, so it never needs to be shut down
+     */
+    private static final class BatchPool {
+
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    /**
+     * The JMX view of a validator. Each attribute reads only what it
+     * reports, so polling the counters doesn't count the filter's bits
+     */
+    private static final class MetricsBean implements DictionaryPasswordValidatorMXBean {
+
+        private final DictionaryPasswordValidator validator;
+        private final LookupMetrics metrics;
+
+        MetricsBean(DictionaryPasswordValidator validator) {
+            this.validator = validator;
+            this.metrics = validator.metrics;
+        }
+
+        public String getBackend() {
+            return this.validator.backend.name();
+        }
+
+        public int getWordCount() {
+            return this.validator.dictionary.totalWords;
+        }
+
+        public long getMemoryUsage() {
+            return this.validator.dictionary.memoryUsage();
+        }
+
+        public double getFillRatio() {
+            return this.validator.dictionary.matcher.fillRatio();
+        }
+
+        public double getFalsePositiveProbability() {
+            return this.validator.dictionary.matcher.falsePositiveProbability();
+        }
+
+        public long getLookups() {
+            return this.metrics == null ? 0 : this.metrics.lookups();
+        }
+
+        public long getHits() {
+            return this.metrics == null ? 0 : this.metrics.hits();
+        }
+
+        public double getHitRate() {
+            long lookups = getLookups();
+            return lookups == 0 ? 0 : (double) getHits() / lookups;
+        }
+
+        public double getWindowsPerLookup() {
+            long lookups = getLookups();
+            return lookups == 0 ? 0 : (double) this.metrics.probes() / lookups;
+        }
+
+        public long getLatencyP50Nanos() {
+            return latency(50);
+        }
+
+        public long getLatencyP99Nanos() {
+            return latency(99);
+        }
+
+        public long getLatencyP999Nanos() {
+            return latency(99.9);
+        }
+
+        public long getLatencyMaxNanos() {
+            return latency(100);
+        }
+
+        public long getCacheHits() {
+            return this.validator.resultCache == null ? 0 : this.validator.resultCache.hits();
+        }
+
+        public long getCachePrefixHits() {
+            return this.validator.resultCache == null ? 0 : this.validator.resultCache.prefixHits();
+        }
+
+        public long getCacheMisses() {
+            return this.validator.resultCache == null ? 0 : this.validator.resultCache.misses();
+        }
+
+        private long latency(double percentile) {
+            return this.metrics == null ? 0 : LatencyHistogram.valueAt(this.metrics.latencyCounts(), percentile);
+        }
+    }
+
+    /**
+     * A dictionary loaded into a matcher, along with where it came from and
+     * the ranks of its words
+     */
+    private static final class LoadedDictionary {
+
+        private static final AtomicInteger GENERATIONS = new AtomicInteger();
+
+        final DictionaryMatcher matcher;
+        final int totalWords;
+        final String[] sourceNames;
+        final DictionaryMatcher[] sourceMatchers;   // null unless sources are attributed
+        final ScanPlan plan;                        // limited to maxWordRank
+        final ScanPlan scorePlan;                   // finding words of any rank
+        final BinaryFuseMap ranks;                  // null unless the words are ranked
+        final int generation = GENERATIONS.incrementAndGet();  // tags its results in the cache
+
+        LoadedDictionary(DictionaryMatcher matcher, int totalWords, String[] sourceNames, DictionaryMatcher[] sourceMatchers, ScanPlan plan,
+                BinaryFuseMap ranks, int maxWordRank) {
+            this.matcher = matcher;
+            this.totalWords = totalWords;
+            this.sourceNames = sourceNames;
+            this.sourceMatchers = sourceMatchers;
+            this.plan = plan.withMaxRank(ranks, maxWordRank);
+            this.scorePlan = plan;
+            this.ranks = ranks;
+        }
+
+        long memoryUsage() {
+            long total = this.matcher.memoryUsage() + (this.ranks == null ? 0 : this.ranks.bitSize() / 8);
+            if (this.sourceMatchers != null) {
+                for (DictionaryMatcher sourceMatcher : this.sourceMatchers) {
+                    total += sourceMatcher.memoryUsage();
+                }
+            }
+            return total;
+        }
     }
 }
@@ -0,0 +1,93 @@
+package com.platinum.dpv;
+
+/**
+ * The JMX view of a validator, see
+ * DictionaryPasswordValidator.registerMBean(). The attributes mirror
+ * ValidatorMetrics, and are read afresh on every access.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public interface DictionaryPasswordValidatorMXBean {
+
+    /**
+     * @return see ValidatorMetrics.getBackend()
+     */
+    String getBackend();
+
+    /**
+     * @return see ValidatorMetrics.getWordCount()
+     */
+    int getWordCount();
+
+    /**
+     * @return see ValidatorMetrics.getMemoryUsage()
+     */
+    long getMemoryUsage();
+
+    /**
+     * @return see ValidatorMetrics.getFillRatio()
+     */
+    double getFillRatio();
+
+    /**
+     * @return see ValidatorMetrics.getFalsePositiveProbability()
+     */
+    double getFalsePositiveProbability();
+
+    /**
+     * @return see ValidatorMetrics.getLookups()
+     */
+    long getLookups();
+
+    /**
+     * @return see ValidatorMetrics.getHits()
+     */
+    long getHits();
+
+    /**
+     * @return see ValidatorMetrics.getHitRate()
+     */
+    double getHitRate();
+
+    /**
+     * @return see ValidatorMetrics.getWindowsPerLookup()
+     */
+    double getWindowsPerLookup();
+
+    /**
+     * @return median latency of isPasswordDictionaryBased(), in nanoseconds
+     */
+    long getLatencyP50Nanos();
+
+    /**
+     * @return 99th percentile latency of isPasswordDictionaryBased(), in nanoseconds
+     */
+    long getLatencyP99Nanos();
+
+    /**
+     * @return 99.9th percentile latency of isPasswordDictionaryBased(), in nanoseconds
+     */
+    long getLatencyP999Nanos();
+
+    /**
+     * @return highest latency of isPasswordDictionaryBased(), within 12.5%, in nanoseconds
+     */
+    long getLatencyMaxNanos();
+
+    /**
+     * @return see ValidatorMetrics.getCacheHits()
+     */
+    long getCacheHits();
+
+    /**
+     * @return see ValidatorMetrics.getCachePrefixHits()
+     */
+    long getCachePrefixHits();
+
+    /**
+     * @return see ValidatorMetrics.getCacheMisses()
+     */
+    long getCacheMisses();
+}
@@ -0,0 +1,287 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.BinaryFuseMap;
+import com.skjegstad.utils.BloomFilter;
+import com.skjegstad.utils.BloomFilterSnapshot;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A precompiled dictionary: the populated Bloom filter plus the settings it
+ * was built with, and the ranks of the words if the word lists rank them,
+ * so startup doesn't have to read and hash the word list.
+ * All values are big-endian:
+ *
+ *   int    magic, 0x44505653 ("DPVS")
+ *   int    format version, currently 3
+ *   int    minWordCharLength
+ *   float  accuracy
+ *   int    number of words
+ *   int    n, the number of word length counts (since version 2)
+ *   int[n] number of words of each length, see ScanPlan (since version 2)
+ *   int    r, the size of the word ranks in bytes, 0 if the words aren't
+ *          ranked (since version 3)
+ *   ...    r bytes of word ranks, see BinaryFuseMap.write() (since version 3)
+ *   ...    the filter, in BloomFilterSnapshot format
+ *
+ * Older snapshots are still read; the lengths of the words of version 1
+ * snapshots are unknown. The ranks are read onto the heap, while open()
+ * leaves the filter in the file.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class DictionarySnapshot {
+
+    static final int MAGIC = 0x44505653;
+    static final int VERSION = 3;
+    private static final int MAX_LENGTH_COUNTS = 1024;
+    private static final int MAX_HEADER_SIZE = 28 + 4 * MAX_LENGTH_COUNTS;
+
+    final int minWordCharLength;
+    final float accuracy;
+    final int totalWords;
+    final int[] wordLengths;    // null if unknown
+    final BinaryFuseMap ranks;  // null if the words aren't ranked
+    final BloomFilter<String> bloomFilter;
+    private final int rankSize;    // as read, for the offset of the filter
+
+    DictionarySnapshot(int minWordCharLength, float accuracy, int totalWords, int[] wordLengths, BinaryFuseMap ranks,
+            BloomFilter<String> bloomFilter) {
+        this(minWordCharLength, accuracy, totalWords, wordLengths, ranks, bloomFilter, 0);
+    }
+
+    private DictionarySnapshot(int minWordCharLength, float accuracy, int totalWords, int[] wordLengths, BinaryFuseMap ranks,
+            BloomFilter<String> bloomFilter, int rankSize) {
+        this.minWordCharLength = minWordCharLength;
+        this.accuracy = accuracy;
+        this.totalWords = totalWords;
+        this.wordLengths = wordLengths;
+        this.ranks = ranks;
+        this.bloomFilter = bloomFilter;
+        this.rankSize = rankSize;
+    }
+
+    /**
+     * Returns true or false whether the snapshot was built with these settings
+     * @param accuracy
+     * @param minWordCharLength
+     * @return true/false
+     */
+    boolean matches(float accuracy, int minWordCharLength) {
+        return this.accuracy == accuracy && this.minWordCharLength == minWordCharLength;
+    }
+
+    /**
+     * Reads a snapshot, typically from a memory-mapped file
+     * @param buffer
+     * @return DictionarySnapshot
+     * @throws IOException if the buffer doesn't hold a valid snapshot
+     */
+    static DictionarySnapshot read(ByteBuffer buffer) throws IOException {
+
+        DictionarySnapshot header = readHeader(buffer);
+        BinaryFuseMap ranks = readRanks(buffer, header.rankSize);
+        BloomFilter<String> bloomFilter = BloomFilterSnapshot.read(buffer);
+
+        return new DictionarySnapshot(header.minWordCharLength, header.accuracy, header.totalWords, header.wordLengths, ranks, bloomFilter);
+    }
+
+    /**
+     * Opens a snapshot file in place: the filter's bits stay in the
+     * memory-mapped file rather than being copied onto the heap, so every
+     * JVM on the host shares a single copy through the page cache
+     * @param file
+     * @return DictionarySnapshot
+     * @throws IOException if the file doesn't hold a valid snapshot
+     */
+    static DictionarySnapshot open(File file) throws IOException {
+
+        // The header is shorter than MAX_HEADER_SIZE; its end is found by parsing it
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        DictionarySnapshot header;
+        ByteBuffer buffer;
+        try {
+            byte[] bytes = new byte[(int) Math.min(file.length(), MAX_HEADER_SIZE)];
+            in.readFully(bytes);
+            buffer = ByteBuffer.wrap(bytes);
+            header = readHeader(buffer);
+        } catch (EOFException ex) {
+            throw new IOException("Not a dictionary snapshot", ex);
+        } finally {
+            in.close();
+        }
+
+        BinaryFuseMap ranks = null;
+        if (header.rankSize > 0) {
+            if (file.length() - buffer.position() < header.rankSize) {
+                throw new IOException("Truncated dictionary snapshot");
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                ranks = readRanks(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, buffer.position(), header.rankSize),
+                        header.rankSize);
+            } finally {
+                raf.close();
+            }
+        }
+        BloomFilter<String> bloomFilter = BloomFilterSnapshot.open(file, (long) buffer.position() + header.rankSize);
+
+        return new DictionarySnapshot(header.minWordCharLength, header.accuracy, header.totalWords, header.wordLengths, ranks, bloomFilter);
+    }
+
+    /**
+     * Reads the word ranks, if any, preceding the filter
+     * @param buffer positioned at the ranks
+     * @param rankSize their size in bytes, 0 if there are none
+     * @return the ranks, or null
+     * @throws IOException if the buffer doesn't hold rankSize bytes of valid ranks
+     */
+    private static BinaryFuseMap readRanks(ByteBuffer buffer, int rankSize) throws IOException {
+
+        if (rankSize == 0) {
+            return null;
+        }
+        int end = buffer.position() + rankSize;
+        if (buffer.remaining() < rankSize) {
+            throw new IOException("Truncated dictionary snapshot");
+        }
+        BinaryFuseMap ranks = BinaryFuseMap.read(buffer);
+        if (buffer.position() != end) {
+            throw new IOException("Corrupt dictionary snapshot ranks");
+        }
+        return ranks;
+    }
+
+    /**
+     * Reads the settings preceding the ranks and the filter
+     * @param buffer
+     * @return a DictionarySnapshot without ranks or a filter
+     * @throws IOException if the buffer doesn't start with a valid header
+     */
+    private static DictionarySnapshot readHeader(ByteBuffer buffer) throws IOException {
+
+        if (buffer.remaining() < 20 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a dictionary snapshot");
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported dictionary snapshot version " + version);
+        }
+        int minWordCharLength = buffer.getInt();
+        float accuracy = buffer.getFloat();
+        int totalWords = buffer.getInt();
+
+        int[] wordLengths = null;
+        if (version >= 2) {
+            int count = buffer.remaining() < 4 ? -1 : buffer.getInt();
+            if (count < 0 || count > MAX_LENGTH_COUNTS || buffer.remaining() < 4 * count) {
+                throw new IOException("Corrupt dictionary snapshot header");
+            }
+            if (count > 0) {
+                wordLengths = new int[count];
+                for (int i = 0; i < count; i++) {
+                    wordLengths[i] = buffer.getInt();
+                }
+            }
+        }
+
+        int rankSize = 0;
+        if (version >= 3) {
+            rankSize = buffer.remaining() < 4 ? -1 : buffer.getInt();
+            if (rankSize < 0) {
+                throw new IOException("Corrupt dictionary snapshot header");
+            }
+        }
+
+        return new DictionarySnapshot(minWordCharLength, accuracy, totalWords, wordLengths, null, null, rankSize);
+    }
+
+    /**
+     * Reads a snapshot from a stream, e.g. a resource inside the jar, which
+     * can't be memory-mapped
+     * @param in
+     * @return DictionarySnapshot
+     * @throws IOException if the stream doesn't hold a valid snapshot
+     */
+    static DictionarySnapshot read(InputStream in) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 * 1024);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        return read(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Writes the snapshot to a file, creating its directory if needed. The
+     * snapshot is written to a temporary file next to it, which then
+     * replaces the file atomically: validators that have the old snapshot
+     * memory-mapped keep reading it, rather than faulting on a truncated file
+     * @param file
+     * @throws IOException
+     */
+    void write(File file) throws IOException {
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+        boolean written = false;
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(this.minWordCharLength);
+                out.writeFloat(this.accuracy);
+                out.writeInt(this.totalWords);
+                if (this.wordLengths == null) {
+                    out.writeInt(0);
+                } else {
+                    out.writeInt(this.wordLengths.length);
+                    for (int count : this.wordLengths) {
+                        out.writeInt(count);
+                    }
+                }
+                if (this.ranks == null) {
+                    out.writeInt(0);
+                } else {
+                    ByteArrayOutputStream rankBytes = new ByteArrayOutputStream();
+                    DataOutputStream rankOut = new DataOutputStream(rankBytes);
+                    this.ranks.write(rankOut);
+                    rankOut.flush();
+                    out.writeInt(rankBytes.size());
+                    rankBytes.writeTo(out);
+                }
+                BloomFilterSnapshot.write(this.bloomFilter, out);
+            } finally {
+                out.close();
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            written = true;
+        } finally {
+            if (!written) {
+                tempFile.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.platinum.dpv;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A place to read dictionary words from: a word list file, every word list
+ * (*.dic) in a directory, or a word list on the classpath. Word lists hold
+ * one word per line.
+ *
+ * Directories are scanned whenever the dictionary is loaded, so a reload
+ * picks up word lists added since. Each word list found counts as a source
+ * of its own when hits are attributed.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class DictionarySource {
+
+    private static final String WORD_LIST_EXTENSION = ".dic";
+
+    private final File file;
+    private final File directory;
+    private final String resource;
+
+    private DictionarySource(File file, File directory, String resource) {
+        this.file = file;
+        this.directory = directory;
+        this.resource = resource;
+    }
+
+    /**
+     * @param file a word list
+     * @return DictionarySource
+     */
+    public static DictionarySource file(File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        return new DictionarySource(file, null, null);
+    }
+
+    /**
+     * @param directory a directory holding word lists named *.dic
+     * @return DictionarySource
+     */
+    public static DictionarySource directory(File directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory must not be null");
+        }
+        return new DictionarySource(null, directory, null);
+    }
+
+    /**
+     * @param resource the name of a word list on the classpath, e.g. "dictionaries/en_US.dic"
+     * @return DictionarySource
+     */
+    public static DictionarySource classpath(String resource) {
+        if (resource == null) {
+            throw new IllegalArgumentException("resource must not be null");
+        }
+        return new DictionarySource(null, null, resource);
+    }
+
+    /**
+     * @return the path of the file or directory, or the name of the resource
+     */
+    public String getName() {
+        if (this.file != null) {
+            return this.file.getPath();
+        }
+        if (this.directory != null) {
+            return this.directory.getPath();
+        }
+        return this.resource;
+    }
+
+    /**
+     * @return the word list file, or null if this isn't a file source
+     */
+    File getFile() {
+        return this.file;
+    }
+
+    /**
+     * @return the directory, or null if this isn't a directory source
+     */
+    File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Returns true or false whether the name is that of a word list, as
+     * scanned for in directories
+     * @param name
+     * @return true/false
+     */
+    static boolean isWordListName(String name) {
+        return name.endsWith(WORD_LIST_EXTENSION);
+    }
+
+    /**
+     * Adds the word lists this source currently consists of: itself, or
+     * the word lists in the directory, sorted by name
+     * @param wordLists
+     * @throws IOException if the directory can't be listed
+     */
+    void resolve(List<DictionarySource> wordLists) throws IOException {
+
+        if (this.directory == null) {
+            wordLists.add(this);
+            return;
+        }
+
+        File[] files = this.directory.listFiles(new FileFilter() {
+
+            public boolean accept(File candidate) {
+                return candidate.isFile() && isWordListName(candidate.getName());
+            }
+        });
+        if (files == null) {
+            throw new IOException("Dictionary directory " + this.directory + " can't be read");
+        }
+        Arrays.sort(files);
+        for (File wordList : files) {
+            wordLists.add(file(wordList));
+        }
+    }
+
+    /**
+     * @return when the file was last changed; 0 for classpath resources
+     */
+    long lastModified() {
+        return this.file != null ? this.file.lastModified() : 0;
+    }
+
+    /**
+     * Opens a word list
+     * @return InputStream
+     * @throws IOException if the word list doesn't exist
+     */
+    InputStream open() throws IOException {
+
+        if (this.file != null) {
+            return new FileInputStream(this.file);
+        }
+        InputStream fStream = this.resource != null ? DictionarySource.class.getClassLoader().getResourceAsStream(this.resource) : null;
+        if (fStream == null) {
+            throw new IOException("Dictionary " + getName() + " not found");
+        }
+        return fStream;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
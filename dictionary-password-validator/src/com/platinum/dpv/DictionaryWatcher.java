@@ -0,0 +1,161 @@
+package com.platinum.dpv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reloads a validator when one of its word lists or its snapshot changes,
+ * using a WatchService on the directories holding them. In directory
+ * sources, any word list being added, changed or removed counts. Files are
+ * often written in several steps, so a reload only starts once there have
+ * been no changes for a short quiet period.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class DictionaryWatcher implements Closeable, Runnable {
+
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    private final DictionaryPasswordValidator validator;
+    private final Set<Path> files = new HashSet<Path>();
+    private final Set<Path> wordListDirectories = new HashSet<Path>();
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * @param validator the validator to reload
+     * @param sources the validator's dictionary sources; classpath sources are ignored
+     * @param snapshotFile may be null
+     * @throws IOException if a directory can't be watched
+     */
+    DictionaryWatcher(DictionaryPasswordValidator validator, List<DictionarySource> sources, File snapshotFile) throws IOException {
+
+        this.validator = validator;
+        Set<Path> directories = new HashSet<Path>();
+        for (DictionarySource source : sources) {
+            if (source.getFile() != null) {
+                Path file = source.getFile().getAbsoluteFile().toPath();
+                this.files.add(file);
+                directories.add(file.getParent());
+            } else if (source.getDirectory() != null) {
+                Path directory = source.getDirectory().getAbsoluteFile().toPath();
+                this.wordListDirectories.add(directory);
+                directories.add(directory);
+            }
+        }
+        if (snapshotFile != null) {
+            Path file = snapshotFile.getAbsoluteFile().toPath();
+            this.files.add(file);
+            directories.add(file.getParent());
+        }
+        if (directories.isEmpty()) {
+            throw new IOException("There are no dictionary files to watch");
+        }
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            for (Path directory : directories) {
+                directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        } catch (IOException ex) {
+            this.watchService.close();
+            throw ex;
+        }
+
+        this.thread = new Thread(this, "DictionaryWatcher " + sources.get(0).getName());
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        this.thread.start();
+    }
+
+    public void run() {
+
+        try {
+            while (true) {
+
+                // Wait for a change, then for the files to settle
+                WatchKey key = this.watchService.take();
+                boolean changed = false;
+                while (key != null) {
+                    changed |= isWatchedFileChanged(key);
+                    key = changed ? this.watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Stop watching
+        } catch (ClosedWatchServiceException ex) {
+            // Stop watching
+        }
+    }
+
+    /**
+     * Returns true or false whether the key's events concern one of the
+     * watched files, and re-arms the key
+     * @param key
+     * @return true/false
+     */
+    private boolean isWatchedFileChanged(WatchKey key) {
+
+        Path directory = (Path) key.watchable();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            } else if (this.files.contains(directory.resolve((Path) event.context()))) {
+                changed = true;
+            } else if (this.wordListDirectories.contains(directory)
+                    && DictionarySource.isWordListName(event.context().toString())) {
+                changed = true;
+            }
+        }
+        if (!key.reset()) {
+            Logger.getLogger(DictionaryWatcher.class.getName()).log(Level.WARNING,
+                    "{0} can no longer be watched for dictionary changes", directory);
+        }
+        return changed;
+    }
+
+    private void reload() {
+
+        try {
+            this.validator.reload();
+        } catch (DictionaryPasswordFileException ex) {
+            Logger.getLogger(DictionaryWatcher.class.getName()).log(Level.WARNING,
+                    "Unable to reload the dictionary, keeping the previous one", ex);
+        } catch (RuntimeException ex) {
+            Logger.getLogger(DictionaryWatcher.class.getName()).log(Level.SEVERE,
+                    "Unable to reload the dictionary, keeping the previous one", ex);
+        }
+    }
+
+    /**
+     * Stops watching. A reload which has already started is completed.
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        this.watchService.close();
+    }
+}
@@ -0,0 +1,92 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.BinaryFuseMap;
+import java.util.Arrays;
+
+/**
+ * Estimates how hard a password is to guess, as the cheapest way to spell
+ * it from dictionary words and random characters.
+ *
+ * The letters are segmented by dynamic programming over the dictionary
+ * words DictionaryMatcher.findAllWords() recorded in the scanner: a word
+ * costs log2 of the number of words in the dictionary, as if picked at
+ * random from it, and a letter outside of words costs log2(26). A word
+ * ranked by how common it is costs log2 of its rank instead, the guesses
+ * an attacker trying words from the most common down needs, if that's
+ * less. The scan
+ * behind it is the one containsWord() makes, so the filter backends look
+ * up at most one window per start position and word length, and the
+ * segmentation itself is linear in the number of letters and words found.
+ *
+ * Every character that isn't a letter costs log2(43), the number of
+ * printable ASCII characters other than letters. Capitalization isn't
+ * counted, which keeps the estimate on the low side.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class EntropyEstimator {
+
+    static final double LETTER_BITS = Math.log(26) / Math.log(2);
+    static final double OTHER_CHARACTER_BITS = Math.log(43) / Math.log(2);
+
+    private EntropyEstimator() {
+    }
+
+    /**
+     * @param wordCount number of words in the dictionary
+     * @return bits of entropy of a word picked at random from the dictionary
+     */
+    static double wordBits(int wordCount) {
+        return Math.log(Math.max(1, wordCount)) / Math.log(2);
+    }
+
+    /**
+     * @param rank of a word, 1 for the most common
+     * @return bits of entropy of a word of this rank
+     */
+    static double rankBits(int rank) {
+        return Math.log(rank) / Math.log(2);
+    }
+
+    /**
+     * Finds the cheapest segmentation of the letters loaded in the scanner,
+     * after findAllWords() has recorded the words in them
+     * @param scanner
+     * @param wordBits see wordBits()
+     * @param ranks the rank of each ranked word, or null
+     * @return bits of entropy of the letters
+     */
+    static double letterBits(PasswordScanner scanner, double wordBits, BinaryFuseMap ranks) {
+
+        int length = scanner.length();
+        int matchCount = scanner.matchCount();
+
+        // Chain the words by start position: matches can come in any order
+        int[] firstAt = new int[length];
+        int[] nextAt = new int[matchCount];
+        Arrays.fill(firstAt, -1);
+        for (int m = matchCount - 1; m >= 0; m--) {
+            int start = scanner.matchStart(m);
+            nextAt[m] = firstAt[start];
+            firstAt[start] = m;
+        }
+
+        // bits[i] is the cheapest way to spell the first i letters; every
+        // word ends past its start, so bits[i] is final once i is reached
+        double[] bits = new double[length + 1];
+        Arrays.fill(bits, Double.POSITIVE_INFINITY);
+        bits[0] = 0;
+        for (int i = 0; i < length; i++) {
+            bits[i + 1] = Math.min(bits[i + 1], bits[i] + LETTER_BITS);
+            for (int m = firstAt[i]; m >= 0; m = nextAt[m]) {
+                int end = scanner.matchEnd(m);
+                int rank = ranks == null ? 0 : WordListReader.rankOf(ranks.get(scanner.lettersView(), i, end));
+                double cost = rank == 0 ? wordBits : Math.min(wordBits, rankBits(rank));
+                bits[end] = Math.min(bits[end], bits[i] + cost);
+            }
+        }
+        return bits[length];
+    }
+}
@@ -0,0 +1,248 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.MurmurHash3;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A DictionaryMatcher backed by an approximate membership filter, such as a
+ * Bloom filter. Small and fast to build, but with a (configurable)
+ * false-positive rate.
+ *
+ * Every window of a length some dictionary word has is looked up, see
+ * ScanPlan. With ScanOrder.BY_START_POSITION, windows are visited by start
+ * position, growing one letter at a time, so the hash of each window is the
+ * hash of the previous one extended by a single character. The other orders
+ * visit them one length at a time, from hashes computed the same way up
+ * front.
+ *
+ * containsWord() skips the windows within the scanner's knownPrefix(), as
+ * found by the result cache. If the plan limits words by rank, each window
+ * the filter contains is then looked up in the ranks, from the same hash.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+abstract class FilterMatcher implements DictionaryMatcher {
+
+    // What scan() looks for
+    private static final int FIRST = 0;
+    private static final int LONGEST = 1;
+    private static final int ALL = 2;
+
+    /**
+     * Returns true or false whether letters [start, end) may be in the filter
+     * @param letters
+     * @param start
+     * @param end
+     * @return true/false
+     */
+    abstract boolean contains(CharSequence letters, int start, int end);
+
+    /**
+     * Returns true or false whether the word with this MurmurHash3 hash may
+     * be in the filter. Only called if supportsPrecomputedHash()
+     * @param h1
+     * @param h2
+     * @return true/false
+     */
+    abstract boolean containsHash(long h1, long h2);
+
+    /**
+     * @return true if containsHash() can be used
+     */
+    abstract boolean supportsPrecomputedHash();
+
+    public void addAll(List<String[]> batches, ForkJoinPool pool) {
+        for (String[] batch : batches) {
+            for (String word : batch) {
+                add(word);
+            }
+        }
+    }
+
+    public void finish() {
+        // Nothing to do, the filter is ready as soon as the words are added
+    }
+
+    public void addConcurrently(String word) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support concurrent adds");
+    }
+
+    public boolean isWord(PasswordScanner scanner, int start, int end) {
+        return contains(scanner.lettersView(), start, end);
+    }
+
+    public boolean containsWord(PasswordScanner scanner, ScanPlan plan) {
+        return scan(scanner, plan, FIRST);
+    }
+
+    public boolean findLongestWord(PasswordScanner scanner, ScanPlan plan) {
+        return scan(scanner, plan, LONGEST);
+    }
+
+    public boolean findAllWords(PasswordScanner scanner, ScanPlan plan) {
+        return scan(scanner, plan, ALL);
+    }
+
+    /**
+     * Looks up the windows of the scanner's letters in the plan's order.
+     * Passwords of MAX_TRACKED_LENGTH letters or more, and scans for all
+     * words, go by start position
+     * @param scanner
+     * @param plan
+     * @param mode FIRST to return at the first hit, LONGEST to look for the
+     * longest, ALL to record every hit
+     * @return true if any window was found
+     */
+    private boolean scan(PasswordScanner scanner, ScanPlan plan, int mode) {
+        int from = mode == FIRST ? scanner.knownPrefix() : 0;
+        if (mode == ALL || plan.order() == ScanOrder.BY_START_POSITION || scanner.length() >= ScanPlan.MAX_TRACKED_LENGTH) {
+            return scanByStart(scanner, plan, mode, from);
+        }
+        return scanByWidth(scanner, plan, mode, from);
+    }
+
+    /**
+     * Looks up the windows by start position, growing each one letter at a
+     * time. Only windows ending past letter from are looked up
+     */
+    private boolean scanByStart(PasswordScanner scanner, ScanPlan plan, int mode, int from) {
+
+        int minWidth = plan.minLength();
+        int maxWidth = plan.maxLength();
+        if (maxWidth < minWidth) {
+            return false;
+        }
+        int length = scanner.length();
+        char[] letters = scanner.letters();
+        boolean hashed = supportsPrecomputedHash();
+        boolean limited = plan.limitsRank();
+        MurmurHash3 hasher = scanner.hasher();
+        int longest = 0;    // stays 0 for ALL, which looks at every window
+        int hits = 0;
+        int windows = 0;
+
+        for (int start = 0; start + Math.max(minWidth, longest + 1) <= length; start++) {
+
+            int first = Math.max(start + minWidth, from + 1);
+            int last = (int) Math.min(length, (long) start + maxWidth);
+            if (first > last) {
+                continue;
+            }
+
+            // Prime the hasher with all but the last letter of the first window
+            if (hashed) {
+                hasher.reset();
+                for (int i = start; i < first - 1; i++) {
+                    hasher.put(letters[i]);
+                }
+            }
+
+            // Then grow the window one letter at a time, up to the longest word
+            for (int end = first; end <= last; end++) {
+
+                if (hashed) {
+                    hasher.put(letters[end - 1]);
+                }
+                if (!plan.isPresent(end - start)) {
+                    continue;
+                }
+
+                boolean found;
+                windows++;
+                if (hashed) {
+                    hasher.finish();
+                    found = containsHash(hasher.h1(), hasher.h2()) && (!limited || plan.accepts(hasher.h1(), hasher.h2()));
+                } else {
+                    found = contains(scanner.lettersView(), start, end) && (!limited || plan.accepts(scanner.lettersView(), start, end));
+                }
+
+                if (found) {
+                    hits++;
+                    if (mode == FIRST) {
+                        scanner.setMatch(start, end);
+                        scanner.addProbes(windows);
+                        return true;
+                    }
+                    if (mode == ALL) {
+                        scanner.addMatch(start, end);
+                    } else if (end - start > longest) {
+                        longest = end - start;
+                        scanner.setMatch(start, end);
+                    }
+                }
+            }
+        }
+
+        scanner.addProbes(windows);
+        return hits > 0;
+    }
+
+    /**
+     * Looks up the windows one length at a time, in the order of
+     * plan.widths(), from precomputed hashes. Only windows ending past
+     * letter from are looked up
+     */
+    private boolean scanByWidth(PasswordScanner scanner, ScanPlan plan, int mode, int from) {
+
+        int length = scanner.length();
+        int maxWidth = Math.min(length, plan.maxLength());
+        if (maxWidth < plan.minLength()) {
+            return false;
+        }
+
+        boolean hashed = supportsPrecomputedHash();
+        if (hashed) {
+            scanner.hashWindows(plan, maxWidth, from);
+        }
+
+        boolean limited = plan.limitsRank();
+        boolean longestFirst = plan.order() == ScanOrder.LONGEST_FIRST;
+        int[] widths = plan.widths();
+        int longest = 0;
+        int windows = 0;
+
+        for (int i = 0; i < widths.length; i++) {
+
+            int width = widths[i];
+            if (width > maxWidth || width <= longest) {
+                continue;
+            }
+
+            for (int start = Math.max(0, from + 1 - width); start + width <= length; start++) {
+
+                boolean found;
+                windows++;
+                if (hashed) {
+                    long h1 = scanner.windowH1(start, width);
+                    long h2 = scanner.windowH2(start, width);
+                    found = containsHash(h1, h2) && (!limited || plan.accepts(h1, h2));
+                } else {
+                    found = contains(scanner.lettersView(), start, start + width)
+                            && (!limited || plan.accepts(scanner.lettersView(), start, start + width));
+                }
+
+                if (found) {
+                    if (mode == FIRST) {
+                        scanner.setMatch(start, start + width);
+                        scanner.addProbes(windows);
+                        return true;
+                    }
+                    longest = width;
+                    scanner.setMatch(start, start + width);
+                    break;
+                }
+            }
+
+            // Widths only get shorter from here
+            if (longestFirst && longest > 0) {
+                break;
+            }
+        }
+
+        scanner.addProbes(windows);
+        return longest > 0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.platinum.dpv;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds, in the manner of HdrHistogram:
+ * buckets are powers of two split into 8 linear sub-buckets, so any value
+ * is recorded with at most 12.5% error, from 1ns to days, in 488 buckets.
+ * Values below 8ns get a bucket each.
+ *
+ * Each bucket is a LongAdder, so threads recording at once don't contend
+ * on a single counter, and recording a value is one striped increment.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency
+     * @param nanos
+     */
+    void record(long nanos) {
+        this.buckets[bucket(Math.max(0, nanos))].increment();
+    }
+
+    /**
+     * @return a copy of the bucket counts, see valueAt()
+     */
+    long[] counts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @param value
+     * @return the bucket holding value
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket
+     * @return the smallest value recorded in the bucket
+     */
+    static long lowestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param bucket
+     * @return the largest value recorded in the bucket
+     */
+    static long highestValue(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(bucket + 1) - 1;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded
+     * values fall, as the highest value of its bucket
+     * @param counts bucket counts, from counts()
+     * @param percentile from 0 to 100
+     * @return the value, or 0 if nothing was recorded
+     */
+    static long valueAt(long[] counts, double percentile) {
+
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return highestValue(counts.length - 1);
+    }
+}
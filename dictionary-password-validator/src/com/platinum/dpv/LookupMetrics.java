@@ -0,0 +1,74 @@
+package com.platinum.dpv;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters a validator built with metrics(true) updates on every password
+ * check. All of them are LongAdders, striped across threads, so recording
+ * a check costs a few uncontended increments.
+ *
+ * Reading the clock costs more than that (System.nanoTime() takes 20-50ns
+ * on common platforms), so only one check in LATENCY_SAMPLING per thread
+ * is timed. The percentiles of the sample are those of all checks.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+class LookupMetrics {
+
+    static final int LATENCY_SAMPLING = 16;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Records a password check
+     * @param found whether the password was dictionary based
+     * @param probeCount windows looked up, see PasswordScanner.probes()
+     */
+    void record(boolean found, int probeCount) {
+        this.lookups.increment();
+        if (found) {
+            this.hits.increment();
+        }
+        this.probes.add(probeCount);
+    }
+
+    /**
+     * Records a password check and how long it took
+     * @param found whether the password was dictionary based
+     * @param probeCount windows looked up, see PasswordScanner.probes()
+     * @param nanos
+     */
+    void record(boolean found, int probeCount, long nanos) {
+        record(found, probeCount);
+        this.latency.record(nanos);
+    }
+
+    /**
+     * @param check the number of checks the thread made before this one
+     * @return true if the check should be timed
+     */
+    static boolean isTimed(int check) {
+        return (check & (LATENCY_SAMPLING - 1)) == 0;
+    }
+
+    long lookups() {
+        return this.lookups.sum();
+    }
+
+    long hits() {
+        return this.hits.sum();
+    }
+
+    long probes() {
+        return this.probes.sum();
+    }
+
+    long[] latencyCounts() {
+        return this.latency.counts();
+    }
+}
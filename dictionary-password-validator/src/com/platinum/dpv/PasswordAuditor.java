@@ -0,0 +1,237 @@
+package com.platinum.dpv;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Command-line tool which checks every line of a password file, such as a
+ * cracked-password export, against the dictionary, and writes the numbers
+ * of the dictionary based lines to an output file, one per line, followed
+ * by a summary in lines starting with #.
+ *
+ * The input file is memory-mapped and split into chunks of whole lines,
+ * as WordListReader splits word lists, and the chunks are checked on all
+ * cores; results are written in order as they come in, with a bounded
+ * number of chunks in flight. Lines are read in place, byte by byte, so
+ * the file is never copied onto the heap. Only the letters A-Z (and the
+ * characters substitutions undo) count, so any ASCII-compatible encoding,
+ * such as UTF-8 or ISO-8859-1, is read correctly.
+ *
+ * Usage: PasswordAuditor input-file output-file [dictionary-file ...]
+ *
+ * Without dictionary files, the validator's default dictionary is used.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class PasswordAuditor {
+
+    private static final int CHUNKS_PER_THREAD = 4;    // in flight, so threads don't wait on the writer
+
+    private PasswordAuditor() {
+    }
+
+    public static void main(String[] args) {
+
+        if (args.length < 2) {
+            System.err.println("Usage: " + PasswordAuditor.class.getName() + " input-file output-file [dictionary-file ...]");
+            System.exit(2);
+        }
+
+        try {
+            DictionaryPasswordValidator.Builder builder = DictionaryPasswordValidator.builder();
+            for (int i = 2; i < args.length; i++) {
+                builder.dictionary(new File(args[i]));
+            }
+            DictionaryPasswordValidator validator = builder.build();
+
+            File input = new File(args[0]);
+            File output = new File(args[1]);
+            int threads = Runtime.getRuntime().availableProcessors();
+
+            long startTime = System.nanoTime();
+            long[] totals = audit(validator, input, output, threads);
+            long stopTime = System.nanoTime();
+
+            System.out.println(summary(totals, input.length(), stopTime - startTime, threads));
+
+        } catch (Exception ex) {
+            System.err.println("Error: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks every line of the input file and writes the numbers of the
+     * dictionary based lines, counting from 1, to the output file
+     * @param validator
+     * @param input
+     * @param output
+     * @param threads
+     * @return the number of lines read and of lines flagged
+     * @throws IOException if a file can't be read or written
+     * @throws InterruptedException
+     * @throws ExecutionException if checking a chunk failed
+     */
+    private static long[] audit(DictionaryPasswordValidator validator, File input, File output, int threads)
+            throws IOException, InterruptedException, ExecutionException {
+
+        List<ByteBuffer> chunks = WordListReader.chunks(DictionarySource.file(input));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Writer writer = new BufferedWriter(new FileWriter(output));
+        try {
+
+            long lines = 0;
+            long flagged = 0;
+            Queue<Future<ChunkResult>> inFlight = new ArrayDeque<Future<ChunkResult>>();
+            int next = 0;
+            while (next < chunks.size() || !inFlight.isEmpty()) {
+
+                while (next < chunks.size() && inFlight.size() < CHUNKS_PER_THREAD * threads) {
+                    inFlight.add(pool.submit(new ChunkTask(validator, chunks.get(next++))));
+                }
+
+                ChunkResult result = inFlight.remove().get();
+                for (int i = 0; i < result.flaggedCount; i++) {
+                    writer.write(Long.toString(lines + result.flagged[i] + 1));
+                    writer.write('\n');
+                }
+                lines += result.lines;
+                flagged += result.flaggedCount;
+            }
+
+            writer.write("# " + lines + " lines, " + flagged + " dictionary based\n");
+            return new long[] {lines, flagged};
+
+        } finally {
+            pool.shutdownNow();
+            writer.close();
+        }
+    }
+
+    private static String summary(long[] totals, long bytes, long nanos, int threads) {
+
+        DecimalFormat dFormat = new DecimalFormat("#.##");
+        double seconds = nanos / 1e9;
+        long lines = totals[0];
+        long flagged = totals[1];
+
+        return "Checked " + lines + " lines (" + dFormat.format(bytes / 1048576.0) + "MB) in " + dFormat.format(seconds)
+                + "s on " + threads + " threads: " + flagged + " dictionary based ("
+                + dFormat.format(lines == 0 ? 0 : 100.0 * flagged / lines) + "%), "
+                + dFormat.format(lines / seconds) + " lines/s, " + dFormat.format(bytes / 1048576.0 / seconds) + "MB/s";
+    }
+
+    /**
+     * Checks the lines of one chunk
+     */
+    private static final class ChunkTask implements Callable<ChunkResult> {
+
+        private final DictionaryPasswordValidator validator;
+        private final ByteBuffer chunk;
+
+        ChunkTask(DictionaryPasswordValidator validator, ByteBuffer chunk) {
+            this.validator = validator;
+            this.chunk = chunk;
+        }
+
+        public ChunkResult call() {
+
+            ByteLine line = new ByteLine(this.chunk);
+            ChunkResult result = new ChunkResult();
+            int limit = this.chunk.limit();
+            int start = 0;
+            while (start < limit) {
+                int end = start;
+                while (end < limit && this.chunk.get(end) != '\n') {
+                    end++;
+                }
+                int next = end + 1;
+                if (end > start && this.chunk.get(end - 1) == '\r') {
+                    end--;
+                }
+
+                line.set(start, end);
+                if (this.validator.isDictionaryBased(line)) {
+                    result.flag(result.lines);
+                }
+                result.lines++;
+                start = next;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The lines of a chunk, counted from 0, which are dictionary based
+     */
+    private static final class ChunkResult {
+
+        int lines = 0;
+        int[] flagged = new int[16];
+        int flaggedCount = 0;
+
+        void flag(int line) {
+            if (this.flaggedCount == this.flagged.length) {
+                this.flagged = Arrays.copyOf(this.flagged, 2 * this.flagged.length);
+            }
+            this.flagged[this.flaggedCount++] = line;
+        }
+    }
+
+    /**
+     * A line of a chunk, read in place as one char per byte
+     */
+    private static final class ByteLine implements CharSequence {
+
+        private final ByteBuffer bytes;
+        private int start;
+        private int end;
+
+        ByteLine(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        void set(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public int length() {
+            return this.end - this.start;
+        }
+
+        public char charAt(int index) {
+            return (char) (this.bytes.get(this.start + index) & 0xff);
+        }
+
+        public CharSequence subSequence(int from, int to) {
+            ByteLine sub = new ByteLine(this.bytes);
+            sub.set(this.start + from, this.start + to);
+            return sub;
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.MurmurHash3;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Working state for checking one password.
+ *
+ * The password's letters are copied, lowercased, into a reusable char
+ * buffer which the DictionaryMatcher scans directly, together with a
+ * reusable hasher for matchers that hash windows incrementally. Whole words
+ * are loaded the same way by loadWord(). Once the buffer has grown to fit
+ * the longest password, nothing is allocated per check.
+ *
+ * The scanner can also undo common character substitutions, such as @ for
+ * a or 0 for o, through a lookup table indexed by character. Characters that
+ * stand for one of two letters (1 for i or l) make the password branch into
+ * variants, each of which is loaded into the letter buffer in turn; the
+ * number of variants is capped by the caller, and the characters that
+ * would branch beyond the cap only take their first letter.
+ *
+ * Alongside each letter, the scanner keeps the index of the character it
+ * came from, so matches can be reported as positions in the password.
+ *
+ * A scanner holds per-call state and must not be shared between threads.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+class PasswordScanner {
+
+    private static final int MAX_BRANCHES = 30;
+    // The letter each ASCII character stands for, or 0 if it is dropped, and
+    // a second letter for the characters that stand for two of them
+    private static final char[] SUBSTITUTE = new char[128];
+    private static final char[] ALTERNATE = new char[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            SUBSTITUTE[c] = c;
+            SUBSTITUTE[c + ('A' - 'a')] = c;
+        }
+        substitute("@4^", 'a', (char) 0);
+        substitute("8", 'b', (char) 0);
+        substitute("(<", 'c', (char) 0);
+        substitute("3", 'e', (char) 0);
+        substitute("69", 'g', (char) 0);
+        substitute("1!", 'i', 'l');
+        substitute("|", 'l', 'i');
+        substitute("0", 'o', (char) 0);
+        substitute("$5", 's', (char) 0);
+        substitute("7+", 't', (char) 0);
+        substitute("2", 'z', (char) 0);
+    }
+
+    private static void substitute(String chars, char letter, char alternate) {
+        for (int i = 0; i < chars.length(); i++) {
+            SUBSTITUTE[chars.charAt(i)] = letter;
+            ALTERNATE[chars.charAt(i)] = alternate;
+        }
+    }
+
+    private char[] letters = new char[64];
+    private CharBuffer lettersView = CharBuffer.wrap(letters);
+    private int[] positions = new int[64];  // index in the password of each letter
+    private int length = 0;
+    private final MurmurHash3 hasher = new MurmurHash3();
+    private int matchStart = 0;
+    private int matchEnd = 0;
+    private int[] matches = new int[16];   // start, end of each match from addMatch()
+    private int matchCount = 0;
+    private int probes = 0;
+    private int checks = 0;
+    // h1, h2 of window (start, width) at 2 * (start * windowStride + width)
+    private long[] windowHashes = new long[0];
+    private int windowStride = 0;
+    // h1, h2 of the prefixes hashed for the result cache, from prefixFrom letters
+    private final long[] prefixHashes = new long[2 * (ResultCache.PREFIXES + 1)];
+    private int prefixFrom = 0;
+    private int knownPrefix = 0;
+    // The password with its substitutions undone, before branching
+    private char[] substituted = new char[64];
+    private int[] substitutedPositions = new int[64];
+    private int substitutedLength = 0;
+    private final int[] branchAt = new int[MAX_BRANCHES];
+    private final char[] branchLetter = new char[MAX_BRANCHES];
+    private int branches = 0;
+
+    /**
+     * Loads the letters of a password. Everything except A-Z is removed
+     * and capitalization is dropped.
+     * @param password
+     */
+    void load(CharSequence password) {
+
+        int pwLength = password.length();
+        ensureCapacity(pwLength);
+
+        this.length = 0;
+        this.matchStart = 0;
+        this.matchEnd = 0;
+        this.matchCount = 0;
+        this.probes = 0;
+        this.knownPrefix = 0;
+        for (int i = 0; i < pwLength; i++) {
+            char c = password.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                this.positions[this.length] = i;
+                this.letters[this.length++] = c;
+            } else if (c >= 'A' && c <= 'Z') {
+                this.positions[this.length] = i;
+                this.letters[this.length++] = (char) (c + ('a' - 'A'));
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.letters.length) {
+            this.letters = new char[Math.max(capacity, 2 * this.letters.length)];
+            this.lettersView = CharBuffer.wrap(this.letters);
+            this.positions = new int[this.letters.length];
+        }
+    }
+
+    /**
+     * Loads a whole word, all characters kept but lowercased, to be looked
+     * up with DictionaryMatcher.isWord()
+     * @param word
+     */
+    void loadWord(CharSequence word) {
+
+        int wordLength = word.length();
+        ensureCapacity(wordLength);
+
+        this.matchStart = 0;
+        this.matchEnd = 0;
+        this.matchCount = 0;
+        for (int i = 0; i < wordLength; i++) {
+            char c = word.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            } else if (c >= 0x80) {
+                c = Character.toLowerCase(c);
+            }
+            this.letters[i] = c;
+        }
+        this.length = wordLength;
+    }
+
+    /**
+     * Undoes the substitutions in a password, after load() has been called
+     * with it. The variants are then loaded with loadVariant()
+     * @param password
+     * @param maxVariants
+     * @return the number of variants, at most maxVariants; 0 if the
+     * password has no substitutions and load() already loaded its letters
+     */
+    int loadSubstitutions(CharSequence password, int maxVariants) {
+
+        int pwLength = password.length();
+        if (pwLength > this.substituted.length) {
+            this.substituted = new char[Math.max(pwLength, 2 * this.substituted.length)];
+            this.substitutedPositions = new int[this.substituted.length];
+        }
+
+        int count = 0;
+        int branchCount = 0;
+        for (int i = 0; i < pwLength; i++) {
+            char c = password.charAt(i);
+            char letter = c < SUBSTITUTE.length ? SUBSTITUTE[c] : 0;
+            if (letter == 0) {
+                continue;
+            }
+            char alternate = ALTERNATE[c];
+            if (alternate != 0 && branchCount < MAX_BRANCHES && (1 << branchCount) < maxVariants) {
+                this.branchAt[branchCount] = count;
+                this.branchLetter[branchCount] = alternate;
+                branchCount++;
+            }
+            this.substitutedPositions[count] = i;
+            this.substituted[count++] = letter;
+        }
+
+        if (count == this.length) {
+            return 0; // only letters were kept, so nothing was substituted
+        }
+        this.substitutedLength = count;
+        this.branches = branchCount;
+        return Math.min(maxVariants, 1 << branchCount);
+    }
+
+    /**
+     * Loads a variant of the password given to loadSubstitutions() into the
+     * letter buffer: bit b of the variant picks the second letter of the
+     * b-th branching character
+     * @param variant
+     */
+    void loadVariant(int variant) {
+
+        ensureCapacity(this.substitutedLength);
+
+        System.arraycopy(this.substituted, 0, this.letters, 0, this.substitutedLength);
+        System.arraycopy(this.substitutedPositions, 0, this.positions, 0, this.substitutedLength);
+        for (int b = 0; b < this.branches; b++) {
+            if ((variant & (1 << b)) != 0) {
+                this.letters[this.branchAt[b]] = this.branchLetter[b];
+            }
+        }
+        this.length = this.substitutedLength;
+        this.matchStart = 0;
+        this.matchEnd = 0;
+        this.matchCount = 0;
+        this.knownPrefix = 0;
+    }
+
+    /**
+     * @return the letter buffer; only the first length() entries are valid
+     */
+    char[] letters() {
+        return this.letters;
+    }
+
+    /**
+     * @return the letter buffer as a CharSequence, without copying
+     */
+    CharSequence lettersView() {
+        return this.lettersView;
+    }
+
+    /**
+     * @return number of letters loaded
+     */
+    int length() {
+        return this.length;
+    }
+
+    /**
+     * @return a hasher for the matcher to use while scanning
+     */
+    MurmurHash3 hasher() {
+        return this.hasher;
+    }
+
+    /**
+     * Counts lookups made by a matcher: windows looked up, or letters
+     * stepped through
+     * @param count
+     */
+    void addProbes(int count) {
+        this.probes += count;
+    }
+
+    /**
+     * @return lookups counted with addProbes() since the password was loaded
+     */
+    int probes() {
+        return this.probes;
+    }
+
+    /**
+     * @return the number of times this was called before, to sample checks
+     */
+    int countCheck() {
+        return this.checks++;
+    }
+
+    /**
+     * Marks the first letters as known not to contain a word, so the matcher
+     * only needs to look up windows ending past them. Cleared by load()
+     * @param prefixLength
+     */
+    void skipPrefix(int prefixLength) {
+        this.knownPrefix = prefixLength;
+    }
+
+    /**
+     * @return number of letters known not to contain a word, see skipPrefix()
+     */
+    int knownPrefix() {
+        return this.knownPrefix;
+    }
+
+    /**
+     * Hashes the prefixes of the loaded letters from shortest letters up to
+     * longest, at most ResultCache.PREFIXES + 1 of them, for the result cache
+     * @param shortest
+     * @param longest at most length()
+     * @return the length of the shortest prefix hashed
+     */
+    int hashPrefixes(int shortest, int longest) {
+
+        shortest = Math.max(shortest, longest - ResultCache.PREFIXES);
+        this.prefixFrom = shortest;
+        this.hasher.reset();
+        for (int end = 1; end <= longest; end++) {
+            this.hasher.put(this.letters[end - 1]);
+            if (end >= shortest) {
+                this.hasher.finish();
+                this.prefixHashes[2 * (end - shortest)] = this.hasher.h1();
+                this.prefixHashes[2 * (end - shortest) + 1] = this.hasher.h2();
+            }
+        }
+        return shortest;
+    }
+
+    /**
+     * @param prefixLength
+     * @return h1 of the prefix, see hashPrefixes()
+     */
+    long prefixH1(int prefixLength) {
+        return this.prefixHashes[2 * (prefixLength - this.prefixFrom)];
+    }
+
+    /**
+     * @param prefixLength
+     * @return h2 of the prefix, see hashPrefixes()
+     */
+    long prefixH2(int prefixLength) {
+        return this.prefixHashes[2 * (prefixLength - this.prefixFrom) + 1];
+    }
+
+    /**
+     * Hashes the windows of the loaded letters up front, for matchers that
+     * look them up in an order other than by start position. Only windows
+     * whose length the plan looks up, and which end past letter from, are
+     * hashed
+     * @param plan
+     * @param maxWidth longest window, at most MAX_TRACKED_LENGTH - 1
+     * @param from see knownPrefix()
+     */
+    void hashWindows(ScanPlan plan, int maxWidth, int from) {
+
+        int stride = maxWidth + 1;
+        int size = 2 * this.length * stride;
+        if (size > this.windowHashes.length) {
+            this.windowHashes = new long[Math.max(size, 2 * this.windowHashes.length)];
+        }
+        this.windowStride = stride;
+
+        for (int start = 0; start + plan.minLength() <= this.length; start++) {
+            this.hasher.reset();
+            int last = Math.min(this.length, start + maxWidth);
+            for (int end = start + 1; end <= last; end++) {
+                this.hasher.put(this.letters[end - 1]);
+                if (end > from && plan.isPresent(end - start)) {
+                    this.hasher.finish();
+                    int index = 2 * (start * stride + end - start);
+                    this.windowHashes[index] = this.hasher.h1();
+                    this.windowHashes[index + 1] = this.hasher.h2();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param start
+     * @param width
+     * @return h1 of the window, see hashWindows()
+     */
+    long windowH1(int start, int width) {
+        return this.windowHashes[2 * (start * this.windowStride + width)];
+    }
+
+    /**
+     * @param start
+     * @param width
+     * @return h2 of the window, see hashWindows()
+     */
+    long windowH2(int start, int width) {
+        return this.windowHashes[2 * (start * this.windowStride + width) + 1];
+    }
+
+    /**
+     * Records the letters [start, end) as the matched word
+     * @param start
+     * @param end
+     */
+    void setMatch(int start, int end) {
+        this.matchStart = start;
+        this.matchEnd = end;
+    }
+
+    /**
+     * @return the word recorded with setMatch
+     */
+    String matchedWord() {
+        return new String(this.letters, this.matchStart, this.matchEnd - this.matchStart);
+    }
+
+    /**
+     * @return the start of the word recorded with setMatch
+     */
+    int matchStart() {
+        return this.matchStart;
+    }
+
+    /**
+     * @return the end of the word recorded with setMatch
+     */
+    int matchEnd() {
+        return this.matchEnd;
+    }
+
+    /**
+     * Records the letters [start, end) as one of several matched words
+     * @param start
+     * @param end
+     */
+    void addMatch(int start, int end) {
+        if (2 * this.matchCount == this.matches.length) {
+            this.matches = Arrays.copyOf(this.matches, 2 * this.matches.length);
+        }
+        this.matches[2 * this.matchCount] = start;
+        this.matches[2 * this.matchCount + 1] = end;
+        this.matchCount++;
+    }
+
+    /**
+     * @return number of words recorded with addMatch() since the password was loaded
+     */
+    int matchCount() {
+        return this.matchCount;
+    }
+
+    /**
+     * @param match
+     * @return the start of a word recorded with addMatch()
+     */
+    int matchStart(int match) {
+        return this.matches[2 * match];
+    }
+
+    /**
+     * @param match
+     * @return the end of a word recorded with addMatch()
+     */
+    int matchEnd(int match) {
+        return this.matches[2 * match + 1];
+    }
+
+    /**
+     * @param letter
+     * @return the index in the password of the character the letter came from
+     */
+    int position(int letter) {
+        return this.positions[letter];
+    }
+}
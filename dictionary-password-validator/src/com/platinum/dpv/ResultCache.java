@@ -0,0 +1,208 @@
+package com.platinum.dpv;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of lookup results, for clients that check the same
+ * passwords over and over, such as a strength meter checking on every
+ * keystroke.
+ *
+ * Results are keyed on the 128-bit MurmurHash3 of the letters a matcher
+ * scanned, after the password was stripped to its lowercase letters, so the
+ * cache never holds a password or any of its characters. Each key belongs
+ * to one set of WAYS entries, picked by its hash, and the least recently
+ * used entry of the set makes room for a new one. Sets are locked in
+ * stripes, and nothing is allocated per lookup.
+ *
+ * Besides the letters themselves, the last PREFIXES prefixes of the letters
+ * are looked up, longest first. If a prefix contains a word, so do the
+ * letters. If it doesn't, only the windows ending past the prefix need to
+ * be looked up, e.g. only those ending in the final d of "password" after
+ * "passwor" was checked.
+ *
+ * Entries are tagged with the dictionary they were looked up in, and those
+ * of any other dictionary are ignored, so a reload empties the cache.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class ResultCache {
+
+    static final int WAYS = 8;
+    static final int PREFIXES = 4;
+    // get() results other than the length of a prefix without words
+    static final int FOUND = -1;
+    static final int NOT_FOUND = -2;
+    private static final int STRIPES = 64;
+
+    private final int setMask;
+    private final long ttlNanos;    // 0 if entries don't expire
+    private final long[] keys;      // h1, h2 of each entry
+    private final int[] tags;       // dictionary << 1 | found, 0 if empty
+    private final long[] deadlines;
+    private final long[] lastUsed;
+    private final long[] clocks;    // uses of each set, to order its entries
+    private final Object[] locks;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder prefixHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries most results kept, rounded down to a power of 2
+     * times WAYS, and at least WAYS
+     * @param ttlNanos how long a result is kept, 0 for as long as there's room
+     */
+    ResultCache(int maxEntries, long ttlNanos) {
+
+        int sets = Integer.highestOneBit(Math.max(1, maxEntries / WAYS));
+        this.setMask = sets - 1;
+        this.ttlNanos = ttlNanos;
+        this.keys = new long[2 * sets * WAYS];
+        this.tags = new int[sets * WAYS];
+        this.deadlines = new long[sets * WAYS];
+        this.lastUsed = new long[sets * WAYS];
+        this.clocks = new long[sets];
+        this.locks = new Object[Math.min(STRIPES, sets)];
+        for (int i = 0; i < this.locks.length; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return the current time for get() and put(), only read if results expire
+     */
+    long now() {
+        return this.ttlNanos == 0 ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Looks up the letters loaded in the scanner and their prefixes, and
+     * leaves their hashes in the scanner for put()
+     * @param scanner
+     * @param dictionary tag of the dictionary the letters are looked up in
+     * @param minLength the shortest word, and so the shortest prefix worth a lookup
+     * @param now see now()
+     * @return FOUND or NOT_FOUND if the result is known, otherwise the
+     * length of the longest prefix known not to contain a word, or 0
+     */
+    int get(PasswordScanner scanner, int dictionary, int minLength, long now) {
+
+        int length = scanner.length();
+        int shortest = scanner.hashPrefixes(minLength, length);
+
+        for (int prefix = length; prefix >= shortest; prefix--) {
+            int tag = find(scanner.prefixH1(prefix), scanner.prefixH2(prefix), dictionary, now);
+            if (tag == 0) {
+                continue;
+            }
+            if ((tag & 1) != 0) {
+                this.hits.increment();
+                return FOUND;
+            }
+            if (prefix == length) {
+                this.hits.increment();
+                return NOT_FOUND;
+            }
+            this.prefixHits.increment();
+            return prefix;
+        }
+
+        this.misses.increment();
+        return 0;
+    }
+
+    /**
+     * Stores the result for the letters last passed to get()
+     * @param scanner
+     * @param dictionary
+     * @param found whether the letters contain a word
+     * @param now see now()
+     */
+    void put(PasswordScanner scanner, int dictionary, boolean found, long now) {
+
+        int length = scanner.length();
+        long h1 = scanner.prefixH1(length);
+        long h2 = scanner.prefixH2(length);
+        int set = (int) (h1 >>> 32) & this.setMask;
+        int base = set * WAYS;
+        int tag = dictionary << 1 | (found ? 1 : 0);
+
+        synchronized (this.locks[set % this.locks.length]) {
+
+            // Replace the entry for the same key, or an empty, expired or stale
+            // one, or else the least recently used
+            int victim = base;
+            for (int i = base; i < base + WAYS; i++) {
+                if (this.tags[i] == 0 || (this.keys[2 * i] == h1 && this.keys[2 * i + 1] == h2)
+                        || this.tags[i] >>> 1 != dictionary || isExpired(i, now)) {
+                    victim = i;
+                    break;
+                }
+                if (this.lastUsed[i] < this.lastUsed[victim]) {
+                    victim = i;
+                }
+            }
+
+            this.keys[2 * victim] = h1;
+            this.keys[2 * victim + 1] = h2;
+            this.tags[victim] = tag;
+            this.deadlines[victim] = now + this.ttlNanos;
+            this.lastUsed[victim] = ++this.clocks[set];
+        }
+    }
+
+    /**
+     * @return the tag of the live entry for the key, or 0 if there is none
+     */
+    private int find(long h1, long h2, int dictionary, long now) {
+
+        int set = (int) (h1 >>> 32) & this.setMask;
+        int base = set * WAYS;
+
+        synchronized (this.locks[set % this.locks.length]) {
+            for (int i = base; i < base + WAYS; i++) {
+                if (this.keys[2 * i] == h1 && this.keys[2 * i + 1] == h2 && this.tags[i] >>> 1 == dictionary) {
+                    if (isExpired(i, now)) {
+                        return 0;
+                    }
+                    this.lastUsed[i] = ++this.clocks[set];
+                    return this.tags[i];
+                }
+            }
+        }
+        return 0;
+    }
+
+    private boolean isExpired(int entry, long now) {
+        return this.ttlNanos != 0 && now - this.deadlines[entry] > 0;
+    }
+
+    /**
+     * @return number of results kept at most
+     */
+    int capacity() {
+        return this.tags.length;
+    }
+
+    /**
+     * @return lookups answered by the letters, or by a prefix containing a word
+     */
+    long hits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return lookups narrowed down by a prefix without words
+     */
+    long prefixHits() {
+        return this.prefixHits.sum();
+    }
+
+    /**
+     * @return lookups that found nothing in the cache
+     */
+    long misses() {
+        return this.misses.sum();
+    }
+}
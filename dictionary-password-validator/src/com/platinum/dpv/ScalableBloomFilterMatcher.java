@@ -0,0 +1,84 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.ScalableBloomFilter;
+import java.text.DecimalFormat;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A DictionaryMatcher backed by a scalable Bloom filter, which words can
+ * be added to while it is in use. The filter starts out sized for the
+ * words read, and grows as more are added, without its false-positive
+ * rate exceeding the configured one.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+class ScalableBloomFilterMatcher extends FilterMatcher {
+
+    private final ScalableBloomFilter<String> bloomFilter;
+
+    ScalableBloomFilterMatcher(ScalableBloomFilter<String> bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+
+    public void add(String word) {
+        this.bloomFilter.add(word);
+    }
+
+    @Override
+    public void addAll(List<String[]> batches, ForkJoinPool pool) {
+        this.bloomFilter.addAllParallel(batches, pool);
+    }
+
+    @Override
+    public void addConcurrently(String word) {
+        if (!this.bloomFilter.isConcurrent()) {
+            super.addConcurrently(word);
+        }
+        this.bloomFilter.add(word);
+    }
+
+    boolean contains(CharSequence letters, int start, int end) {
+        return this.bloomFilter.contains(letters, start, end);
+    }
+
+    boolean containsHash(long h1, long h2) {
+        return this.bloomFilter.containsHash(h1, h2);
+    }
+
+    boolean supportsPrecomputedHash() {
+        return true;
+    }
+
+    public long memoryUsage() {
+        return (this.bloomFilter.bitSize() + 7) / 8;
+    }
+
+    public double fillRatio() {
+        return (double) this.bloomFilter.cardinality() / this.bloomFilter.bitSize();
+    }
+
+    public double falsePositiveProbability() {
+        return this.bloomFilter.getFalsePositiveProbability();
+    }
+
+    public void appendStats(StringBuilder sBuilder) {
+
+        DecimalFormat dFormat = new DecimalFormat("#.####");
+
+        sBuilder.append("- The bit sets are ");
+        sBuilder.append(this.bloomFilter.bitSize());
+        sBuilder.append(" bits in total, in ");
+        sBuilder.append(this.bloomFilter.filterCount());
+        sBuilder.append(" filter(s) with room for ");
+        sBuilder.append(this.bloomFilter.capacity());
+        sBuilder.append(" words.\n");
+        sBuilder.append("- The current false-positive rate for the bloom filter is: ");
+        sBuilder.append(dFormat.format(100 * this.bloomFilter.getFalsePositiveProbability()));
+        sBuilder.append("%, it stays below ");
+        sBuilder.append(dFormat.format(100 * this.bloomFilter.getFalsePositiveProbabilityBound()));
+        sBuilder.append("%\n");
+    }
+}
@@ -0,0 +1,46 @@
+package com.platinum.dpv;
+
+/**
+ * The order in which the filter backends look up the windows of a
+ * password. Whatever the order, window lengths that no dictionary word has
+ * are skipped, as are windows longer than the longest word. The order
+ * decides how soon a dictionary-based password is found; a password that
+ * isn't costs the same lookups in any order.
+ *
+ * DictionaryBackend.AHO_CORASICK finds all words in a single pass and
+ * ignores the order.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public enum ScanOrder {
+
+    /**
+     * Start by start position, and at each start grow the window one letter
+     * at a time, so each window's hash extends the previous one. Cheapest
+     * per window, and finds words near the start of the password quickly.
+     */
+    BY_START_POSITION,
+
+    /**
+     * The shortest windows first, at every start position, up to the
+     * longest. Finds short words with the fewest lookups wherever they are
+     * in the password.
+     */
+    SHORTEST_FIRST,
+
+    /**
+     * The longest windows first, at every start position, down to the
+     * shortest. Finds long words with the fewest lookups, and
+     * findLongestDictionaryWord() can stop at the first hit.
+     */
+    LONGEST_FIRST,
+
+    /**
+     * The window lengths most dictionary words have first, e.g. 7 and 8
+     * letters before 4 for an English word list, as those windows are the
+     * most likely to be hits.
+     */
+    MOST_COMMON_LENGTH_FIRST
+}
@@ -0,0 +1,202 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.BinaryFuseMap;
+
+/**
+ * Which window lengths a matcher looks up, and in which order, derived from
+ * the lengths of the words in the dictionary.
+ *
+ * Word lengths are counted up to MAX_TRACKED_LENGTH; longer words are
+ * counted together. When the lengths aren't known (a snapshot written
+ * before they were stored, or a dictionary words are added to while in
+ * use), every length from the minimum up is looked up.
+ *
+ * A plan may also limit the words found to the most common ones, by their
+ * rank in the dictionary, see withMaxRank(). Words without a rank are
+ * always found.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class ScanPlan {
+
+    /** Lengths from this one up are counted together. */
+    static final int MAX_TRACKED_LENGTH = 64;
+
+    private final int minLength;
+    private final int maxLength;            // Integer.MAX_VALUE if unbounded
+    private final ScanOrder order;
+    private final int[] lengthCounts;       // null if unknown
+    private final boolean[] present;        // by length, up to MAX_TRACKED_LENGTH
+    private final int[] widths;             // present lengths below MAX_TRACKED_LENGTH, in scan order
+    private final BinaryFuseMap ranks;      // null unless words are limited by rank
+    private final int maxRank;
+
+    /**
+     * @param minLength the shortest word that is looked up
+     * @param lengthCounts number of words of each length, the last entry
+     * counting all from MAX_TRACKED_LENGTH up; null if unknown
+     * @param order
+     */
+    ScanPlan(int minLength, int[] lengthCounts, ScanOrder order) {
+
+        // Counts tracked up to another length are of no use
+        if (lengthCounts != null && lengthCounts.length != MAX_TRACKED_LENGTH + 1) {
+            lengthCounts = null;
+        }
+
+        this.minLength = Math.max(1, minLength);
+        this.order = order;
+        this.lengthCounts = lengthCounts;
+        this.present = new boolean[MAX_TRACKED_LENGTH + 1];
+
+        int longest = 0;
+        int count = 0;
+        for (int length = this.minLength; length <= MAX_TRACKED_LENGTH; length++) {
+            this.present[length] = lengthCounts == null || lengthCounts[length] > 0;
+            if (this.present[length]) {
+                longest = length;
+                count += length < MAX_TRACKED_LENGTH ? 1 : 0;
+            }
+        }
+        this.maxLength = longest == MAX_TRACKED_LENGTH ? Integer.MAX_VALUE : longest;
+
+        this.widths = new int[count];
+        int next = 0;
+        for (int length = MAX_TRACKED_LENGTH - 1; length >= this.minLength; length--) {
+            if (this.present[length]) {
+                this.widths[next++] = length;
+            }
+        }
+        if (order == ScanOrder.SHORTEST_FIRST) {
+            for (int i = 0, j = this.widths.length - 1; i < j; i++, j--) {
+                int width = this.widths[i];
+                this.widths[i] = this.widths[j];
+                this.widths[j] = width;
+            }
+        }
+        if (order == ScanOrder.MOST_COMMON_LENGTH_FIRST && lengthCounts != null) {
+            // Insertion sort by count, longest first among equal counts
+            for (int i = 1; i < this.widths.length; i++) {
+                int width = this.widths[i];
+                int j = i - 1;
+                while (j >= 0 && lengthCounts[this.widths[j]] < lengthCounts[width]) {
+                    this.widths[j + 1] = this.widths[j];
+                    j--;
+                }
+                this.widths[j + 1] = width;
+            }
+        }
+        this.ranks = null;
+        this.maxRank = 0;
+    }
+
+    private ScanPlan(ScanPlan plan, BinaryFuseMap ranks, int maxRank) {
+        this.minLength = plan.minLength;
+        this.maxLength = plan.maxLength;
+        this.order = plan.order;
+        this.lengthCounts = plan.lengthCounts;
+        this.present = plan.present;
+        this.widths = plan.widths;
+        this.ranks = ranks;
+        this.maxRank = maxRank;
+    }
+
+    /**
+     * @param ranks the rank of each ranked word, or null
+     * @param maxRank the rank of the least common word to find, 0 for all
+     * @return this plan, finding only words of rank maxRank or below, and
+     * words without a rank
+     */
+    ScanPlan withMaxRank(BinaryFuseMap ranks, int maxRank) {
+        return ranks == null || maxRank == 0 ? this : new ScanPlan(this, ranks, maxRank);
+    }
+
+    /**
+     * Counts the lengths of the words in batches
+     * @param batches
+     * @return number of words of each length, see ScanPlan(int, int[], ScanOrder)
+     */
+    static int[] countLengths(Iterable<String[]> batches) {
+        int[] counts = new int[MAX_TRACKED_LENGTH + 1];
+        for (String[] batch : batches) {
+            for (String word : batch) {
+                counts[Math.min(word.length(), MAX_TRACKED_LENGTH)]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the shortest window looked up
+     */
+    int minLength() {
+        return this.minLength;
+    }
+
+    /**
+     * @return the longest window looked up, Integer.MAX_VALUE if unbounded
+     */
+    int maxLength() {
+        return this.maxLength;
+    }
+
+    ScanOrder order() {
+        return this.order;
+    }
+
+    /**
+     * @return number of words of each length, or null if unknown
+     */
+    int[] lengthCounts() {
+        return this.lengthCounts;
+    }
+
+    /**
+     * @param length
+     * @return true if windows of this length are looked up
+     */
+    boolean isPresent(int length) {
+        return this.present[Math.min(length, MAX_TRACKED_LENGTH)];
+    }
+
+    /**
+     * @return the lengths to look up below MAX_TRACKED_LENGTH, in scan
+     * order; the array must not be modified
+     */
+    int[] widths() {
+        return this.widths;
+    }
+
+    /**
+     * @return true if accepts() has to be asked about each word found
+     */
+    boolean limitsRank() {
+        return this.ranks != null;
+    }
+
+    /**
+     * Returns true or false whether a word found in the dictionary is common
+     * enough to be reported. Only called if limitsRank()
+     * @param h1 of the word's MurmurHash3 hash
+     * @param h2
+     * @return true/false
+     */
+    boolean accepts(long h1, long h2) {
+        int rank = WordListReader.rankOf(this.ranks.getHash(h1, h2));
+        return rank == 0 || rank <= this.maxRank;
+    }
+
+    /**
+     * accepts(long, long) for letters [start, end)
+     * @param letters
+     * @param start
+     * @param end
+     * @return true/false
+     */
+    boolean accepts(CharSequence letters, int start, int end) {
+        int rank = WordListReader.rankOf(this.ranks.get(letters, start, end));
+        return rank == 0 || rank <= this.maxRank;
+    }
+}
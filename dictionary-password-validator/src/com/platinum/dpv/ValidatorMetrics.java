@@ -0,0 +1,175 @@
+package com.platinum.dpv;
+
+/**
+ * A snapshot of a validator's dictionary and, if it was built with
+ * metrics(true), of the password checks it has made, see
+ * DictionaryPasswordValidator.getMetrics(). The counters are read one after
+ * the other while checks go on, so they may be a few checks apart.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class ValidatorMetrics {
+
+    private final DictionaryBackend backend;
+    private final int wordCount;
+    private final long memoryUsage;
+    private final double fillRatio;
+    private final double falsePositiveProbability;
+    private final long lookups;
+    private final long hits;
+    private final long windowsProbed;
+    private final long[] latencyCounts;
+    private final long cacheHits;
+    private final long cachePrefixHits;
+    private final long cacheMisses;
+
+    ValidatorMetrics(DictionaryBackend backend, int wordCount, long memoryUsage, double fillRatio,
+            double falsePositiveProbability, long lookups, long hits, long windowsProbed, long[] latencyCounts,
+            long[] cacheCounts) {
+        this.backend = backend;
+        this.wordCount = wordCount;
+        this.memoryUsage = memoryUsage;
+        this.fillRatio = fillRatio;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.lookups = lookups;
+        this.hits = hits;
+        this.windowsProbed = windowsProbed;
+        this.latencyCounts = latencyCounts;
+        this.cacheHits = cacheCounts[0];
+        this.cachePrefixHits = cacheCounts[1];
+        this.cacheMisses = cacheCounts[2];
+    }
+
+    /**
+     * @return the backend the dictionary is kept in
+     */
+    public DictionaryBackend getBackend() {
+        return this.backend;
+    }
+
+    /**
+     * @return number of words read into the dictionary
+     */
+    public int getWordCount() {
+        return this.wordCount;
+    }
+
+    /**
+     * @return approximate size of the dictionary in bytes
+     */
+    public long getMemoryUsage() {
+        return this.memoryUsage;
+    }
+
+    /**
+     * @return the fraction of the filter's bits which are set, or NaN for
+     * backends that aren't bit arrays
+     */
+    public double getFillRatio() {
+        return this.fillRatio;
+    }
+
+    /**
+     * @return the estimated false-positive rate of a single lookup; 0 for
+     * the exact backends
+     */
+    public double getFalsePositiveProbability() {
+        return this.falsePositiveProbability;
+    }
+
+    /**
+     * @return number of passwords checked, singly or in batches
+     */
+    public long getLookups() {
+        return this.lookups;
+    }
+
+    /**
+     * @return number of passwords found to be dictionary based
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return the fraction of checked passwords that were dictionary based,
+     * 0 if none were checked
+     */
+    public double getHitRate() {
+        return this.lookups == 0 ? 0 : (double) this.hits / this.lookups;
+    }
+
+    /**
+     * @return number of windows looked up in the dictionary, over all checks.
+     * For DictionaryBackend.AHO_CORASICK, the number of letters scanned
+     */
+    public long getWindowsProbed() {
+        return this.windowsProbed;
+    }
+
+    /**
+     * @return windows looked up per checked password, 0 if none were checked
+     */
+    public double getWindowsPerLookup() {
+        return this.lookups == 0 ? 0 : (double) this.windowsProbed / this.lookups;
+    }
+
+    /**
+     * @return number of checks timed: one in 16 of those made by
+     * isPasswordDictionaryBased() on each thread, starting with the first
+     */
+    public long getTimedLookups() {
+        long total = 0;
+        for (long count : this.latencyCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the latency of isPasswordDictionaryBased() below which the
+     * given percentage of checks fall, within 12.5%
+     * @param percentile from 0 to 100, e.g. 99.9
+     * @return latency in nanoseconds, 0 if no check was timed
+     */
+    public long getLatencyNanos(double percentile) {
+        return LatencyHistogram.valueAt(this.latencyCounts, percentile);
+    }
+
+    /**
+     * @return number of letter strings whose result the cache knew, either
+     * directly or from a prefix containing a word; 0 without resultCache().
+     * A password is looked up as one letter string, plus one for each of
+     * its substitution variants
+     */
+    public long getCacheHits() {
+        return this.cacheHits;
+    }
+
+    /**
+     * @return number of letter strings the cache knew a prefix without
+     * words of, so only the windows past the prefix were looked up
+     */
+    public long getCachePrefixHits() {
+        return this.cachePrefixHits;
+    }
+
+    /**
+     * @return number of letter strings the cache knew nothing about
+     */
+    public long getCacheMisses() {
+        return this.cacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidatorMetrics[backend=" + this.backend + ", words=" + this.wordCount
+                + ", lookups=" + this.lookups + ", hits=" + this.hits
+                + ", windowsPerLookup=" + getWindowsPerLookup()
+                + ", cacheHits=" + this.cacheHits + ", cachePrefixHits=" + this.cachePrefixHits + ", cacheMisses=" + this.cacheMisses
+                + ", p50=" + getLatencyNanos(50) + "ns, p99=" + getLatencyNanos(99) + "ns"
+                + ", fillRatio=" + this.fillRatio + ", falsePositiveProbability=" + this.falsePositiveProbability + "]";
+    }
+}
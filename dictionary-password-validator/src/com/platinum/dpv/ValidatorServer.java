@@ -0,0 +1,444 @@
+package com.platinum.dpv;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small HTTP server in front of a validator, so services that don't run
+ * on the JVM can share one loaded dictionary per host. It runs on the JDK's
+ * built-in server, which keeps connections alive between requests, and
+ * handles each request on a virtual thread where the JVM has them (Java 21
+ * and later), or else on a cached thread pool. The passwords themselves are
+ * checked on a fixed pool of one platform thread per core, as the validator
+ * keeps a scanner per thread, which a new thread per request would rebuild
+ * every time.
+ *
+ * POST /check takes a batch of passwords and answers whether each one is
+ * dictionary based, in the same order. With a JSON content type the body
+ * is an array of strings, ["hunter2", "P@ssw0rd"], and the answer an array
+ * of booleans; otherwise the body is UTF-8 text with one password per line,
+ * and the answer has one line of true or false per password. Batches of
+ * more than a thousand passwords are checked on all cores.
+ *
+ * GET /metrics answers a JSON object of the number of check requests and
+ * passwords served, the latency percentiles of the check requests, and the
+ * validator's ValidatorMetrics. Requests rejected before any password was
+ * checked aren't counted.
+ *
+ * Usage: ValidatorServer [port [dictionary-file ...]]
+ *
+ * The command line server listens on the loopback address only, on port
+ * 8080 by default.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+public final class ValidatorServer implements Closeable {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int MAX_BODY_SIZE = 16 << 20;
+    private static final int PARALLEL_BATCH_SIZE = 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final DictionaryPasswordValidator validator;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ExecutorService checkers;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder passwords = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private ValidatorServer(DictionaryPasswordValidator validator, HttpServer server, ExecutorService executor) {
+        this.validator = validator;
+        this.server = server;
+        this.executor = executor;
+        this.checkers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "dpv-check");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts serving a validator
+     * @param validator
+     * @param address where to listen, e.g. new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)
+     * for any free port on the loopback address
+     * @return the running server; close it to stop
+     * @throws IOException if the address can't be bound
+     */
+    public static ValidatorServer start(DictionaryPasswordValidator validator, InetSocketAddress address) throws IOException {
+
+        HttpServer server = HttpServer.create(address, 0);
+        ExecutorService executor = newExecutor();
+        final ValidatorServer validatorServer = new ValidatorServer(validator, server, executor);
+
+        server.createContext("/check", new HttpHandler() {
+
+            public void handle(HttpExchange exchange) throws IOException {
+                validatorServer.handleCheck(exchange);
+            }
+        });
+        server.createContext("/metrics", new HttpHandler() {
+
+            public void handle(HttpExchange exchange) throws IOException {
+                validatorServer.handleMetrics(exchange);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        return validatorServer;
+    }
+
+    public static void main(String[] args) {
+
+        try {
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            DictionaryPasswordValidator.Builder builder = DictionaryPasswordValidator.builder();
+            for (int i = 1; i < args.length; i++) {
+                builder.dictionary(new File(args[i]));
+            }
+
+            ValidatorServer server = start(builder.metrics(true).build(), new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            System.out.println("Listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/check");
+
+        } catch (NumberFormatException ex) {
+            System.err.println("Usage: " + ValidatorServer.class.getName() + " [port [dictionary-file ...]]");
+            System.exit(2);
+        } catch (Exception ex) {
+            System.err.println("Error: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Java 21 has Executors.newVirtualThreadPerTaskExecutor(); it is looked
+     * up by reflection, as this is built for Java 8
+     */
+    private static ExecutorService newExecutor() {
+
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception ex) {
+            // Before Java 21
+        }
+
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "dpv-server");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return the address the server listens on
+     */
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    /**
+     * Stops the server, without waiting for requests in progress
+     */
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdown();
+        this.checkers.shutdown();
+    }
+
+    private void handleCheck(HttpExchange exchange) throws IOException {
+
+        long startTime = System.nanoTime();
+        boolean checked = false;
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "text/plain", "Use POST\n");
+                return;
+            }
+
+            byte[] body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                respond(exchange, 413, "text/plain", "The body is larger than " + MAX_BODY_SIZE + " bytes\n");
+                return;
+            }
+
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            boolean json = contentType != null && contentType.toLowerCase().contains("json");
+            List<String> batch;
+            try {
+                batch = json ? parseJsonStrings(new String(body, UTF_8)) : parseLines(new String(body, UTF_8));
+            } catch (IllegalArgumentException ex) {
+                respond(exchange, 400, "text/plain", ex.getMessage() + "\n");
+                return;
+            }
+
+            BitSet results = check(batch);
+            this.passwords.add(batch.size());
+            checked = true;
+
+            StringBuilder sBuilder = new StringBuilder(batch.size() * 6 + 2);
+            if (json) {
+                sBuilder.append('[');
+                for (int i = 0; i < batch.size(); i++) {
+                    sBuilder.append(i == 0 ? "" : ",").append(results.get(i));
+                }
+                sBuilder.append("]\n");
+                respond(exchange, 200, "application/json", sBuilder.toString());
+            } else {
+                for (int i = 0; i < batch.size(); i++) {
+                    sBuilder.append(results.get(i)).append('\n');
+                }
+                respond(exchange, 200, "text/plain; charset=utf-8", sBuilder.toString());
+            }
+
+        } finally {
+            if (checked) {
+                this.requests.increment();
+                this.latency.record(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /**
+     * Checks a batch on one of the checker threads, waiting for the result
+     * @throws InterruptedIOException if the request thread is interrupted
+     */
+    private BitSet check(final List<String> batch) throws IOException {
+
+        Future<BitSet> results = this.checkers.submit(new Callable<BitSet>() {
+
+            public BitSet call() {
+                return validator.arePasswordsDictionaryBased(batch, batch.size() > PARALLEL_BATCH_SIZE);
+            }
+        });
+
+        try {
+            return results.get();
+        } catch (InterruptedException ex) {
+            results.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking passwords");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "text/plain", "Use GET\n");
+            return;
+        }
+
+        ValidatorMetrics metrics = this.validator.getMetrics();
+        long[] counts = this.latency.counts();
+        String json = "{\"requests\":" + this.requests.sum()
+                + ",\"passwords\":" + this.passwords.sum()
+                + ",\"latencyP50Nanos\":" + LatencyHistogram.valueAt(counts, 50)
+                + ",\"latencyP99Nanos\":" + LatencyHistogram.valueAt(counts, 99)
+                + ",\"latencyMaxNanos\":" + LatencyHistogram.valueAt(counts, 100)
+                + ",\"backend\":\"" + metrics.getBackend() + "\""
+                + ",\"words\":" + metrics.getWordCount()
+                + ",\"memoryUsage\":" + metrics.getMemoryUsage()
+                + ",\"lookups\":" + metrics.getLookups()
+                + ",\"hits\":" + metrics.getHits()
+                + ",\"windowsPerLookup\":" + metrics.getWindowsPerLookup()
+                + ",\"falsePositiveProbability\":" + metrics.getFalsePositiveProbability() + "}\n";
+        respond(exchange, 200, "application/json", json);
+    }
+
+    /**
+     * @return the body, or null if it is larger than MAX_BODY_SIZE
+     */
+    private static byte[] readBody(InputStream body) throws IOException {
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, read);
+                if (bytes.size() > MAX_BODY_SIZE) {
+                    return null;
+                }
+            }
+            return bytes.toByteArray();
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * Sends a response of known length, so the connection can be kept alive
+     */
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Splits text into lines, dropping the line break after the last one
+     */
+    private static List<String> parseLines(String text) {
+
+        List<String> lines = new ArrayList<String>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            int next = end + 1;
+            if (end > start && text.charAt(end - 1) == '\r') {
+                end--;
+            }
+            lines.add(text.substring(start, end));
+            start = next;
+        }
+        return lines;
+    }
+
+    /**
+     * Parses a JSON array of strings
+     * @throws IllegalArgumentException if the text is anything else
+     */
+    private static List<String> parseJsonStrings(String text) {
+
+        List<String> strings = new ArrayList<String>();
+        int i = skipSpace(text, 0);
+        if (i == text.length() || text.charAt(i) != '[') {
+            throw new IllegalArgumentException("Expected a JSON array of strings");
+        }
+        i = skipSpace(text, i + 1);
+        if (i < text.length() && text.charAt(i) == ']') {
+            i++;
+        } else {
+            while (true) {
+                if (i == text.length() || text.charAt(i) != '"') {
+                    throw new IllegalArgumentException("Expected a string at " + i);
+                }
+
+                StringBuilder sBuilder = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i == text.length()) {
+                        throw new IllegalArgumentException("Unterminated string");
+                    }
+                    char c = text.charAt(i++);
+                    if (c == '"') {
+                        break;
+                    }
+                    if (c != '\\') {
+                        sBuilder.append(c);
+                        continue;
+                    }
+                    if (i == text.length()) {
+                        throw new IllegalArgumentException("Unterminated string");
+                    }
+                    char escaped = text.charAt(i++);
+                    switch (escaped) {
+                        case '"':
+                        case '\\':
+                        case '/':
+                            sBuilder.append(escaped);
+                            break;
+                        case 'b':
+                            sBuilder.append('\b');
+                            break;
+                        case 'f':
+                            sBuilder.append('\f');
+                            break;
+                        case 'n':
+                            sBuilder.append('\n');
+                            break;
+                        case 'r':
+                            sBuilder.append('\r');
+                            break;
+                        case 't':
+                            sBuilder.append('\t');
+                            break;
+                        case 'u':
+                            if (i + 4 > text.length()) {
+                                throw new IllegalArgumentException("Invalid escape at " + (i - 2));
+                            }
+                            try {
+                                sBuilder.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                            } catch (NumberFormatException ex) {
+                                throw new IllegalArgumentException("Invalid escape at " + (i - 2));
+                            }
+                            i += 4;
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Invalid escape at " + (i - 2));
+                    }
+                }
+                strings.add(sBuilder.toString());
+
+                i = skipSpace(text, i);
+                if (i < text.length() && text.charAt(i) == ',') {
+                    i = skipSpace(text, i + 1);
+                } else if (i < text.length() && text.charAt(i) == ']') {
+                    i++;
+                    break;
+                } else {
+                    throw new IllegalArgumentException("Expected , or ] at " + i);
+                }
+            }
+        }
+
+        if (skipSpace(text, i) != text.length()) {
+            throw new IllegalArgumentException("Unexpected text after the array at " + i);
+        }
+        return strings;
+    }
+
+    private static int skipSpace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
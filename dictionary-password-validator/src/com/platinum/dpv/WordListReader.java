@@ -0,0 +1,275 @@
+package com.platinum.dpv;
+
+import com.skjegstad.utils.BinaryFuseMap;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads word lists in a single pass. A word list is split into chunks of
+ * about a megabyte, ending at line breaks, and the chunks are decoded into
+ * words on a fork-join pool. Files are memory-mapped, in segments of up to
+ * a gigabyte; classpath resources are read into memory first.
+ *
+ * Lines are decoded with the platform charset, as InputStreamReader does,
+ * and words shorter than minWordCharLength are skipped. The rest are
+ * lowercased.
+ *
+ * A line may rank its word by how common it is, after a tab: "password\t1"
+ * for the most common word. Ranks above MAX_RANK are lowered to it, and a
+ * rank that isn't a positive number is ignored.
+ *
+ * License: Apache 2.0
+ *
+ * @author jlucier
+ */
+final class WordListReader {
+
+    /**
+     * Rank kept for the words without one, once any word of the dictionary
+     * is ranked, so every dictionary word maps to an exact value: ranks kept
+     * by hash are only reliable for words that were added
+     */
+    static final int UNRANKED = BinaryFuseMap.MAX_VALUE;
+    static final int MAX_RANK = UNRANKED - 1;
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private WordListReader() {
+    }
+
+    /**
+     * Splits a word list into chunks holding whole lines
+     * @param wordList
+     * @return the chunks, in order
+     * @throws IOException if the word list can't be read
+     */
+    static List<ByteBuffer> chunks(DictionarySource wordList) throws IOException {
+
+        List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+        File file = wordList.getFile();
+        if (file == null) {
+            split(ByteBuffer.wrap(readFully(wordList)), chunks, true);
+            return chunks;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(SEGMENT_SIZE, size - position);
+                ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                position += split(segment, chunks, position + length == size);
+            }
+        } finally {
+            raf.close(); // the mappings stay valid
+        }
+        return chunks;
+    }
+
+    /**
+     * Decodes chunks into words and their ranks, in parallel
+     * @param chunks
+     * @param minWordCharLength
+     * @param pool
+     * @param ranks where to store the rank of each word of each chunk, 0
+     * for words without one; left null for chunks without any ranks
+     * @return the words of each chunk, in the order of the chunks
+     */
+    static List<String[]> decode(List<ByteBuffer> chunks, int minWordCharLength, ForkJoinPool pool, int[][] ranks) {
+
+        String[][] words = new String[chunks.size()][];
+        pool.invoke(new DecodeTask(chunks, 0, chunks.size(), minWordCharLength, words, ranks));
+        return Arrays.asList(words);
+    }
+
+    /**
+     * Reads the rank after a word
+     * @param line
+     * @param from index of the first digit
+     * @return the rank, or 0 if it isn't a positive number
+     */
+    private static int parseRank(String line, int from) {
+
+        int end = line.length();
+        while (from < end && line.charAt(from) == ' ') {
+            from++;
+        }
+        while (end > from && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (from == end) {
+            return 0;
+        }
+
+        long rank = 0;
+        for (int i = from; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            rank = Math.min(rank * 10 + (c - '0'), MAX_RANK);
+        }
+        return (int) rank;
+    }
+
+    /**
+     * @param value a word's value in the ranks, or 0 if it isn't there
+     * @return the word's rank, or 0 if it has none
+     */
+    static int rankOf(int value) {
+        return value == UNRANKED ? 0 : value;
+    }
+
+    /**
+     * Cuts whole lines off the buffer into chunks
+     * @param buffer
+     * @param chunks where to add the chunks
+     * @param last whether the buffer ends the word list; if not, a trailing
+     * partial line is left for the next buffer
+     * @return the number of bytes cut off
+     * @throws IOException if a line doesn't fit in the buffer
+     */
+    private static int split(ByteBuffer buffer, List<ByteBuffer> chunks, boolean last) throws IOException {
+
+        int limit = buffer.limit();
+        int start = 0;
+        while (start < limit) {
+
+            int end = Math.min(start + CHUNK_SIZE, limit);
+            while (end < limit && buffer.get(end - 1) != '\n') {
+                end++;
+            }
+            if (end == limit && !last && buffer.get(end - 1) != '\n') {
+                if (start == 0) {
+                    throw new IOException("Line longer than " + SEGMENT_SIZE + " bytes");
+                }
+                break;
+            }
+
+            ByteBuffer chunk = buffer.duplicate();
+            chunk.limit(end);
+            chunk.position(start);
+            chunks.add(chunk.slice());
+            start = end;
+        }
+        return start;
+    }
+
+    private static byte[] readFully(DictionarySource wordList) throws IOException {
+
+        InputStream fStream = wordList.open();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_SIZE);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = fStream.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            fStream.close();
+        }
+    }
+
+    /**
+     * Decodes a range of chunks, splitting the range until a single chunk is left
+     */
+    private static final class DecodeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final List<ByteBuffer> chunks;
+        private final int from;
+        private final int to;
+        private final int minWordCharLength;
+        private final String[][] words;
+        private final int[][] ranks;
+
+        DecodeTask(List<ByteBuffer> chunks, int from, int to, int minWordCharLength, String[][] words, int[][] ranks) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.minWordCharLength = minWordCharLength;
+            this.words = words;
+            this.ranks = ranks;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecodeTask(chunks, from, middle, minWordCharLength, words, ranks),
+                        new DecodeTask(chunks, middle, to, minWordCharLength, words, ranks));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                decode(i);
+            }
+        }
+
+        private void decode(int index) {
+
+            ByteBuffer chunk = chunks.get(index);
+
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.duplicate().get(bytes);
+            Charset charset = Charset.defaultCharset();
+
+            List<String> chunkWords = new ArrayList<String>();
+            int[] chunkRanks = null;
+            int start = 0;
+            while (start < bytes.length) {
+                int end = start;
+                while (end < bytes.length && bytes[end] != '\n') {
+                    end++;
+                }
+                int next = end + 1;
+                if (end > start && bytes[end - 1] == '\r') {
+                    end--;
+                }
+
+                String strLine = new String(bytes, start, end - start, charset);
+                int tab = strLine.indexOf('\t');
+                int rank = 0;
+                if (tab >= 0) {
+                    rank = parseRank(strLine, tab + 1);
+                    strLine = strLine.substring(0, tab);
+                }
+                if (strLine.length() >= minWordCharLength) {
+                    if (rank > 0 && chunkRanks == null) {
+                        chunkRanks = new int[Math.max(16, chunkWords.size() + 1)];
+                    }
+                    if (chunkRanks != null) {
+                        if (chunkWords.size() == chunkRanks.length) {
+                            chunkRanks = Arrays.copyOf(chunkRanks, 2 * chunkRanks.length);
+                        }
+                        chunkRanks[chunkWords.size()] = rank;
+                    }
+                    chunkWords.add(strLine.toLowerCase());
+                }
+                start = next;
+            }
+
+            words[index] = chunkWords.toArray(new String[chunkWords.size()]);
+            if (chunkRanks != null) {
+                ranks[index] = Arrays.copyOf(chunkRanks, chunkWords.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.skjegstad.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A BitStore on the heap which any number of threads may modify at once.
+ * Each bit is set or cleared with a compare-and-set on the word holding it,
+ * so concurrent updates of neighbouring bits are never lost.
+ */
+public class AtomicBitStore implements BitStore {
+
+    private final AtomicLongArray words;
+    private final long size;
+
+    /**
+     * Creates an empty store.
+     *
+     * @param size number of bits, at most 64 * Integer.MAX_VALUE.
+     */
+    public AtomicBitStore(long size) {
+        long wordCount = (size + 63) / 64;
+        if (size < 0 || wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid size " + size);
+        }
+        this.words = new AtomicLongArray((int) wordCount);
+        this.size = size;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean get(long index) {
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    public void set(long index, boolean value) {
+        int wordIndex = (int) (index >>> 6);
+        long mask = 1L << index;
+        long word;
+        long updated;
+        do {
+            word = words.get(wordIndex);
+            updated = value ? word | mask : word & ~mask;
+        } while (word != updated && !words.compareAndSet(wordIndex, word, updated));
+    }
+
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0L);
+        }
+    }
+
+    public long wordCount() {
+        return words.length();
+    }
+
+    public long getWord(long wordIndex) {
+        return words.get((int) wordIndex);
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.skjegstad.utils;
+
+import java.util.Arrays;
+
+/**
+ * A static binary fuse filter, as described in "Binary Fuse Filters: Fast
+ * and Smaller Than Xor Filters" (Graf and Lemire, 2022).
+ * <br /><br />
+ * Each element is mapped to three slots of an array of fingerprints, one in
+ * each of three consecutive segments, and the fingerprints are chosen so
+ * that the three slots of every element xor to the element's own
+ * fingerprint. A lookup is therefore exactly three array reads, and a
+ * non-element matches with probability 2<sup>-f</sup> for f-bit
+ * fingerprints. The array holds about 1.13 slots per element for large sets
+ * (more for small ones), so 8-bit fingerprints cost about 9 bits per element
+ * for a 0.39% false-positive rate and 16-bit fingerprints about 18 bits per
+ * element for 0.0015%. A Bloom filter needs about 12 and 25 bits per element
+ * respectively for the same rates.
+ * <br /><br />
+ * The filter is static: all elements must be known when it is built, see
+ * {@link Builder}, and none can be added afterwards. Elements are hashed as
+ * {@link HashStrategies#MURMUR3_128} does, so the h1/h2 of a
+ * {@link MurmurHash3} can be looked up with {@link #containsHash(long, long)};
+ * only h1 is used. Lookups are thread-safe.
+ */
+public class BinaryFuseFilter {
+
+    private static final ThreadLocal<MurmurHash3> hashers = new ThreadLocal<MurmurHash3>() {
+        @Override
+        protected MurmurHash3 initialValue() { // One hasher per thread, so no locking is needed
+            return new MurmurHash3();
+        }
+    };
+
+    private final int fingerprintBits;
+    private final int size;
+    private final int segmentLength;
+    private final int segmentLengthMask;
+    private final int segmentCountLength;
+    private final long seed;
+    private final byte[] fingerprints8;   // null unless 8-bit fingerprints
+    private final short[] fingerprints16; // null unless 16-bit fingerprints
+
+    /**
+     * Builds a filter holding the elements with the given hashes.
+     *
+     * @param hashes the h1 of each element's MurmurHash3 hash; duplicates are allowed. The array is sorted in place.
+     * @param count number of hashes to read from the array.
+     * @param fingerprintBits 8 or 16.
+     * @throws IllegalStateException if no seed maps the elements to the filter, which only happens if the hash is broken.
+     */
+    public BinaryFuseFilter(long[] hashes, int count, int fingerprintBits) {
+
+        if (fingerprintBits != 8 && fingerprintBits != 16) {
+            throw new IllegalArgumentException("Fingerprints must be 8 or 16 bits, not " + fingerprintBits);
+        }
+
+        // Peeling can't separate duplicate keys, so drop them first
+        Arrays.sort(hashes, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || hashes[i] != hashes[distinct - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+
+        this.fingerprintBits = fingerprintBits;
+        this.size = distinct;
+
+        BinaryFuseLayout layout = BinaryFuseLayout.build(hashes, distinct);
+        this.segmentLength = layout.segmentLength;
+        this.segmentLengthMask = layout.segmentLengthMask;
+        this.segmentCountLength = layout.segmentCountLength;
+        this.seed = layout.seed;
+
+        this.fingerprints8 = fingerprintBits == 8 ? new byte[layout.arrayLength] : null;
+        this.fingerprints16 = fingerprintBits == 16 ? new short[layout.arrayLength] : null;
+        assign(layout, hashes);
+    }
+
+    /**
+     * Sets the fingerprints in reverse removal order, so that each element
+     * writes its lone slot after the other two slots have their final value.
+     */
+    private void assign(BinaryFuseLayout layout, long[] hashes) {
+        for (int i = size - 1; i >= 0; i--) {
+            long key = layout.key(hashes[layout.order[i]]);
+            int slot = layout.slots[i];
+            int h0 = layout.slot(key, 0);
+            int h1 = layout.slot(key, 1);
+            int h2 = layout.slot(key, 2);
+            if (fingerprints8 != null) {
+                fingerprints8[slot] = 0;
+                fingerprints8[slot] = (byte) (fingerprint(key) ^ fingerprints8[h0] ^ fingerprints8[h1] ^ fingerprints8[h2]);
+            } else {
+                fingerprints16[slot] = 0;
+                fingerprints16[slot] = (short) (fingerprint(key) ^ fingerprints16[h0] ^ fingerprints16[h1] ^ fingerprints16[h2]);
+            }
+        }
+    }
+
+    private static int fingerprint(long key) {
+        return (int) (key ^ (key >>> 32));
+    }
+
+    /**
+     * Returns true if the characters may have been added to the filter.
+     *
+     * @param chars the characters to read.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     * @return true if the element may have been added.
+     */
+    public boolean contains(CharSequence chars, int start, int end) {
+        MurmurHash3 hasher = hash(chars, start, end);
+        return containsHash(hasher.h1(), hasher.h2());
+    }
+
+    /**
+     * Returns true if the String may have been added to the filter.
+     *
+     * @param value the String to look up.
+     * @return true if the element may have been added.
+     */
+    public boolean contains(String value) {
+        return contains(value, 0, value.length());
+    }
+
+    /**
+     * Returns true if the element with the given MurmurHash3 hash may have
+     * been added to the filter.
+     *
+     * @param h1 the lower 64 bits of the element's hash.
+     * @param h2 the upper 64 bits of the element's hash, unused.
+     * @return true if the element may have been added.
+     */
+    public boolean containsHash(long h1, long h2) {
+        if (size == 0) {
+            return false;
+        }
+        long key = MurmurHash3.fmix64(h1 + seed);
+        int s0 = (int) (((key >>> 32) * segmentCountLength) >>> 32);
+        int s1 = s0 + segmentLength;
+        int s2 = s1 + segmentLength;
+        s1 ^= (int) (key >>> 18) & segmentLengthMask;
+        s2 ^= (int) key & segmentLengthMask;
+        if (fingerprints8 != null) {
+            return (byte) (fingerprint(key) ^ fingerprints8[s0] ^ fingerprints8[s1] ^ fingerprints8[s2]) == 0;
+        }
+        return (short) (fingerprint(key) ^ fingerprints16[s0] ^ fingerprints16[s1] ^ fingerprints16[s2]) == 0;
+    }
+
+    static MurmurHash3 hash(CharSequence chars, int start, int end) {
+        MurmurHash3 hasher = hashers.get();
+        hasher.reset();
+        for (int i = start; i < end; i++) {
+            hasher.put(chars.charAt(i));
+        }
+        hasher.finish();
+        return hasher;
+    }
+
+    /**
+     * Returns the probability of a false positive, 2<sup>-f</sup> for f-bit
+     * fingerprints.
+     *
+     * @return probability of a false positive.
+     */
+    public double getFalsePositiveProbability() {
+        return size == 0 ? 0 : Math.pow(2, -fingerprintBits);
+    }
+
+    /**
+     * Returns the number of bits per fingerprint.
+     *
+     * @return 8 or 16.
+     */
+    public int getFingerprintBits() {
+        return fingerprintBits;
+    }
+
+    /**
+     * Returns the number of bits in the filter.
+     *
+     * @return the size of the filter in bits.
+     */
+    public long bitSize() {
+        long slotCount = fingerprints8 != null ? fingerprints8.length : fingerprints16.length;
+        return slotCount * fingerprintBits;
+    }
+
+    /**
+     * Returns the number of distinct elements in the filter.
+     *
+     * @return number of elements.
+     */
+    public int count() {
+        return size;
+    }
+
+    /**
+     * Collects the elements of a BinaryFuseFilter. Not thread-safe.
+     */
+    public static class Builder {
+
+        private final int fingerprintBits;
+        private long[] hashes;
+        private int count;
+
+        /**
+         * @param expectedNumberOfElements initial capacity.
+         * @param fingerprintBits 8 or 16.
+         */
+        public Builder(int expectedNumberOfElements, int fingerprintBits) {
+            if (fingerprintBits != 8 && fingerprintBits != 16) {
+                throw new IllegalArgumentException("Fingerprints must be 8 or 16 bits, not " + fingerprintBits);
+            }
+            this.fingerprintBits = fingerprintBits;
+            this.hashes = new long[Math.max(16, expectedNumberOfElements)];
+        }
+
+        /**
+         * Adds a range of characters, as if the String
+         * <code>chars.subSequence(start, end).toString()</code> had been added.
+         *
+         * @param chars the characters to read.
+         * @param start index of the first character (inclusive).
+         * @param end index of the last character (exclusive).
+         */
+        public void add(CharSequence chars, int start, int end) {
+            MurmurHash3 hasher = hash(chars, start, end);
+            addHash(hasher.h1(), hasher.h2());
+        }
+
+        /**
+         * Adds a String.
+         *
+         * @param value the String to add.
+         */
+        public void add(String value) {
+            add(value, 0, value.length());
+        }
+
+        /**
+         * Adds the element with the given MurmurHash3 hash.
+         *
+         * @param h1 the lower 64 bits of the element's hash.
+         * @param h2 the upper 64 bits of the element's hash, unused.
+         */
+        public void addHash(long h1, long h2) {
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            }
+            hashes[count++] = h1;
+        }
+
+        /**
+         * Returns the number of elements added so far, duplicates included.
+         *
+         * @return number of elements added.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Builds the filter. The builder can't be used afterwards.
+         *
+         * @return the filter.
+         */
+        public BinaryFuseFilter build() {
+            BinaryFuseFilter filter = new BinaryFuseFilter(hashes, count, fingerprintBits);
+            hashes = null;
+            return filter;
+        }
+    }
+}
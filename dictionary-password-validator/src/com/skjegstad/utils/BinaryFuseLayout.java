@@ -0,0 +1,189 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.skjegstad.utils;
+
+/**
+ * The slot array shared by {@link BinaryFuseFilter} and {@link BinaryFuseMap}:
+ * how many segments it has, how keys map to three slots in consecutive
+ * segments, and the order in which the slots of a set of elements can be
+ * assigned. Building a layout peels the elements, trying seeds until every
+ * element can be removed.
+ */
+final class BinaryFuseLayout {
+
+    static final int ARITY = 3;
+    static final int MAX_SEGMENT_LENGTH = 1 << 18;
+    private static final int MAX_ATTEMPTS = 100;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    final int segmentLength;
+    final int segmentLengthMask;
+    final int segmentCountLength;
+    final int arrayLength;
+    final long seed;
+    final int[] order;  // elements in removal order, null if not peeled
+    final int[] slots;  // the lone slot of each element in order
+
+    private BinaryFuseLayout(int segmentLength, int segmentCountLength, long seed, int[] order, int[] slots) {
+        this.segmentLength = segmentLength;
+        this.segmentLengthMask = segmentLength - 1;
+        this.segmentCountLength = segmentCountLength;
+        this.arrayLength = segmentCountLength + (ARITY - 1) * segmentLength;
+        this.seed = seed;
+        this.order = order;
+        this.slots = slots;
+    }
+
+    /**
+     * Lays out distinct elements and finds the order to assign them in.
+     *
+     * @param hashes the h1 of each element's MurmurHash3 hash, without duplicates.
+     * @param count number of hashes to read from the array.
+     * @return the layout.
+     * @throws IllegalStateException if no seed maps the elements to the array, which only happens if the hash is broken.
+     */
+    static BinaryFuseLayout build(long[] hashes, int count) {
+
+        int length = segmentLength(count);
+        int capacity = count <= 1 ? 0 : (int) Math.round(count * sizeFactor(count));
+        int segmentCount = (capacity + length - 1) / length - (ARITY - 1);
+        segmentCount = Math.max(1, segmentCount);
+
+        int[] order = new int[count];
+        int[] slots = new int[count];
+        long attemptSeed = 0;
+        for (int attempt = 1;; attempt++) {
+            BinaryFuseLayout layout = new BinaryFuseLayout(length, segmentCount * length, attemptSeed, order, slots);
+            if (layout.tryPeel(hashes, count)) {
+                return layout;
+            }
+            if (attempt == MAX_ATTEMPTS) {
+                throw new IllegalStateException("Couldn't lay out " + count + " elements");
+            }
+            attemptSeed += GOLDEN_GAMMA;
+        }
+    }
+
+    /**
+     * Restores the layout of a stored filter or map, without peeling.
+     *
+     * @return the layout, or null if the values don't describe one.
+     */
+    static BinaryFuseLayout of(int segmentLength, int segmentCountLength, long seed) {
+        if (segmentLength < 4 || segmentLength > MAX_SEGMENT_LENGTH || Integer.bitCount(segmentLength) != 1
+                || segmentCountLength < segmentLength || segmentCountLength % segmentLength != 0
+                || segmentCountLength > Integer.MAX_VALUE - (ARITY - 1) * segmentLength) {
+            return null;
+        }
+        return new BinaryFuseLayout(segmentLength, segmentCountLength, seed, null, null);
+    }
+
+    /**
+     * Finds an order in which every element has a slot no element after it
+     * uses: repeatedly removes an element that is alone in one of its slots.
+     * Stores the elements in removal order and their lone slots in
+     * order/slots.
+     *
+     * @return false if some elements couldn't be removed with this seed.
+     */
+    private boolean tryPeel(long[] hashes, int count) {
+
+        // Per slot: the number of elements using it times 4 plus the xor of
+        // which of their three slots it is, and the xor of the elements.
+        // Once the count drops to one, these identify the element left.
+        int[] slotCount = new int[arrayLength];
+        int[] slotElements = new int[arrayLength];
+        for (int i = 0; i < count; i++) {
+            long key = key(hashes[i]);
+            for (int which = 0; which < ARITY; which++) {
+                int slot = slot(key, which);
+                slotCount[slot] += 4;
+                slotCount[slot] ^= which;
+                slotElements[slot] ^= i;
+            }
+        }
+
+        int[] alone = new int[arrayLength];
+        int aloneCount = 0;
+        for (int slot = 0; slot < arrayLength; slot++) {
+            if (slotCount[slot] >> 2 == 1) {
+                alone[aloneCount++] = slot;
+            }
+        }
+
+        int peeled = 0;
+        while (aloneCount > 0) {
+            int slot = alone[--aloneCount];
+            if (slotCount[slot] >> 2 != 1) {
+                continue; // emptied since it was queued
+            }
+            int element = slotElements[slot];
+            int found = slotCount[slot] & 3;
+            order[peeled] = element;
+            slots[peeled] = slot;
+            peeled++;
+
+            long key = key(hashes[element]);
+            for (int which = 0; which < ARITY; which++) {
+                if (which == found) {
+                    continue;
+                }
+                int other = slot(key, which);
+                if (slotCount[other] >> 2 == 2) {
+                    alone[aloneCount++] = other;
+                }
+                slotCount[other] -= 4;
+                slotCount[other] ^= which;
+                slotElements[other] ^= element;
+            }
+            slotCount[slot] = 0;
+        }
+
+        return peeled == count;
+    }
+
+    /**
+     * Returns the key of the element with the given h1, mixed with the seed.
+     */
+    long key(long h1) {
+        return MurmurHash3.fmix64(h1 + seed);
+    }
+
+    /**
+     * Returns the slot of the key in segment which, which..which+2 counted
+     * from the key's first segment. The first segment is picked from the
+     * upper half of the key, by multiplying rather than dividing, and the
+     * offsets within the segments from the lower bits.
+     */
+    int slot(long key, int which) {
+        int h = (int) (((key >>> 32) * segmentCountLength) >>> 32);
+        h += which * segmentLength;
+        return h ^ (int) (((key & 0xfffffffffL) >>> (36 - 18 * which)) & segmentLengthMask);
+    }
+
+    private static int segmentLength(int size) {
+        if (size <= 1) {
+            return 4;
+        }
+        int log = (int) Math.floor(Math.log(size) / Math.log(3.33) + 2.25);
+        return Math.min(1 << log, MAX_SEGMENT_LENGTH);
+    }
+
+    private static double sizeFactor(int size) {
+        return Math.max(1.125, 0.875 + 0.25 * Math.log(1000000) / Math.log(size));
+    }
+}
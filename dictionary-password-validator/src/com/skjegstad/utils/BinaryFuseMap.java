@@ -0,0 +1,360 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.skjegstad.utils;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A static map from elements to small values, built like a
+ * {@link BinaryFuseFilter}: each element is mapped to three slots, one in each
+ * of three consecutive segments, and the slots are chosen so that those of
+ * every element xor to the element's value plus an 8-bit fingerprint. A
+ * lookup is therefore exactly three array reads.
+ * <br /><br />
+ * The elements themselves are never stored, only one int per slot, about 4.5
+ * bytes per element for large sets. Values are 1 to {@link #MAX_VALUE}, and
+ * elements that weren't added map to 0, except for the 2<sup>-8</sup> of them
+ * whose fingerprint matches by chance, which map to an arbitrary value. Look
+ * up only elements known to be in the set, e.g. those a filter contains, to
+ * avoid those.
+ * <br /><br />
+ * Elements are hashed as {@link HashStrategies#MURMUR3_128} does, so the
+ * h1/h2 of a {@link MurmurHash3} can be looked up with
+ * {@link #getHash(long, long)}; only h1 is used. Lookups are thread-safe.
+ */
+public class BinaryFuseMap {
+
+    /**
+     * Largest value an element can map to.
+     */
+    public static final int MAX_VALUE = (1 << 24) - 1;
+
+    private static final int FINGERPRINT_MASK = ~MAX_VALUE;
+
+    private final int size;
+    private final int segmentLength;
+    private final int segmentLengthMask;
+    private final int segmentCountLength;
+    private final long seed;
+    private final int[] cells;  // fingerprint in the upper 8 bits, value in the lower 24
+
+    /**
+     * Builds a map of the elements with the given hashes to the given values.
+     *
+     * @param hashes the h1 of each element's MurmurHash3 hash; duplicates are
+     * allowed, and keep the smallest of their values. The array is sorted in place.
+     * @param values the value of each element, 1 to MAX_VALUE. The array is reordered along with hashes.
+     * @param count number of elements to read from the arrays.
+     * @throws IllegalArgumentException if a value is out of range.
+     * @throws IllegalStateException if no seed maps the elements to the map, which only happens if the hash is broken.
+     */
+    public BinaryFuseMap(long[] hashes, int[] values, int count) {
+
+        for (int i = 0; i < count; i++) {
+            checkValue(values[i]);
+        }
+
+        // Peeling can't separate duplicate keys, so drop them first
+        sort(hashes, values, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || hashes[i] != hashes[distinct - 1]) {
+                hashes[distinct] = hashes[i];
+                values[distinct++] = values[i];
+            } else {
+                values[distinct - 1] = Math.min(values[distinct - 1], values[i]);
+            }
+        }
+
+        BinaryFuseLayout layout = BinaryFuseLayout.build(hashes, distinct);
+        this.size = distinct;
+        this.segmentLength = layout.segmentLength;
+        this.segmentLengthMask = layout.segmentLengthMask;
+        this.segmentCountLength = layout.segmentCountLength;
+        this.seed = layout.seed;
+        this.cells = new int[layout.arrayLength];
+
+        // In reverse removal order, so that each element writes its lone slot
+        // after the other two slots have their final value
+        for (int i = distinct - 1; i >= 0; i--) {
+            int element = layout.order[i];
+            long key = layout.key(hashes[element]);
+            int slot = layout.slots[i];
+            cells[slot] = 0;
+            cells[slot] = (fingerprint(key) | values[element])
+                    ^ cells[layout.slot(key, 0)] ^ cells[layout.slot(key, 1)] ^ cells[layout.slot(key, 2)];
+        }
+    }
+
+    private BinaryFuseMap(int size, BinaryFuseLayout layout, int[] cells) {
+        this.size = size;
+        this.segmentLength = layout.segmentLength;
+        this.segmentLengthMask = layout.segmentLengthMask;
+        this.segmentCountLength = layout.segmentCountLength;
+        this.seed = layout.seed;
+        this.cells = cells;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 1 || value > MAX_VALUE) {
+            throw new IllegalArgumentException("Values must be 1 to " + MAX_VALUE + ", not " + value);
+        }
+    }
+
+    private static int fingerprint(long key) {
+        return (int) (key ^ (key >>> 32)) & FINGERPRINT_MASK;
+    }
+
+    /**
+     * Sorts hashes[0, count) along with values, by heapsort, so neither
+     * array needs to be boxed.
+     */
+    private static void sort(long[] hashes, int[] values, int count) {
+        for (int i = count / 2 - 1; i >= 0; i--) {
+            siftDown(hashes, values, i, count);
+        }
+        for (int end = count - 1; end > 0; end--) {
+            swap(hashes, values, 0, end);
+            siftDown(hashes, values, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] hashes, int[] values, int i, int count) {
+        while (2 * i + 1 < count) {
+            int child = 2 * i + 1;
+            if (child + 1 < count && hashes[child + 1] > hashes[child]) {
+                child++;
+            }
+            if (hashes[i] >= hashes[child]) {
+                return;
+            }
+            swap(hashes, values, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(long[] hashes, int[] values, int i, int j) {
+        long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * Returns the value of the characters.
+     *
+     * @param chars the characters to read.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     * @return the value, or (most likely) 0 if the element wasn't added.
+     */
+    public int get(CharSequence chars, int start, int end) {
+        MurmurHash3 hasher = BinaryFuseFilter.hash(chars, start, end);
+        return getHash(hasher.h1(), hasher.h2());
+    }
+
+    /**
+     * Returns the value of a String.
+     *
+     * @param value the String to look up.
+     * @return the value, or (most likely) 0 if the element wasn't added.
+     */
+    public int get(String value) {
+        return get(value, 0, value.length());
+    }
+
+    /**
+     * Returns the value of the element with the given MurmurHash3 hash.
+     *
+     * @param h1 the lower 64 bits of the element's hash.
+     * @param h2 the upper 64 bits of the element's hash, unused.
+     * @return the value, or (most likely) 0 if the element wasn't added.
+     */
+    public int getHash(long h1, long h2) {
+        if (size == 0) {
+            return 0;
+        }
+        long key = MurmurHash3.fmix64(h1 + seed);
+        int s0 = (int) (((key >>> 32) * segmentCountLength) >>> 32);
+        int s1 = s0 + segmentLength;
+        int s2 = s1 + segmentLength;
+        s1 ^= (int) (key >>> 18) & segmentLengthMask;
+        s2 ^= (int) key & segmentLengthMask;
+        int cell = fingerprint(key) ^ cells[s0] ^ cells[s1] ^ cells[s2];
+        return (cell & FINGERPRINT_MASK) == 0 ? cell : 0;
+    }
+
+    /**
+     * Returns the number of bits in the map.
+     *
+     * @return the size of the map in bits.
+     */
+    public long bitSize() {
+        return 32L * cells.length;
+    }
+
+    /**
+     * Returns the number of distinct elements in the map.
+     *
+     * @return number of elements.
+     */
+    public int count() {
+        return size;
+    }
+
+    /**
+     * Writes the map, big-endian:
+     * <pre>
+     *   int    number of elements
+     *   int    segment length
+     *   int    segment count times segment length
+     *   long   seed
+     *   int    number of cells (n)
+     *   int[n] the cells
+     * </pre>
+     *
+     * @param out the destination.
+     * @throws IOException if writing fails.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(segmentLength);
+        out.writeInt(segmentCountLength);
+        out.writeLong(seed);
+        out.writeInt(cells.length);
+        for (int cell : cells) {
+            out.writeInt(cell);
+        }
+    }
+
+    /**
+     * Reads a map written by {@link #write(DataOutput)}. The buffer's
+     * position is advanced past the map, and the cells are copied out of it.
+     *
+     * @param buffer the source, positioned at the start of the map.
+     * @return the restored map.
+     * @throws IOException if the buffer does not hold a valid map.
+     */
+    public static BinaryFuseMap read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 24) {
+            throw new IOException("Truncated binary fuse map");
+        }
+        int size = buffer.getInt();
+        int segmentLength = buffer.getInt();
+        int segmentCountLength = buffer.getInt();
+        long seed = buffer.getLong();
+        int cellCount = buffer.getInt();
+        BinaryFuseLayout layout = BinaryFuseLayout.of(segmentLength, segmentCountLength, seed);
+        if (size < 0 || layout == null || cellCount != layout.arrayLength) {
+            throw new IOException("Corrupt binary fuse map");
+        }
+        if (buffer.remaining() / 4 < cellCount) {
+            throw new IOException("Truncated binary fuse map");
+        }
+
+        int[] cells = new int[cellCount];
+        buffer.asIntBuffer().get(cells);
+        buffer.position(buffer.position() + 4 * cellCount);
+        return new BinaryFuseMap(size, layout, cells);
+    }
+
+    /**
+     * Collects the elements of a BinaryFuseMap and their values. Not thread-safe.
+     */
+    public static class Builder {
+
+        private long[] hashes;
+        private int[] values;
+        private int count;
+
+        /**
+         * @param expectedNumberOfElements initial capacity.
+         */
+        public Builder(int expectedNumberOfElements) {
+            this.hashes = new long[Math.max(16, expectedNumberOfElements)];
+            this.values = new int[this.hashes.length];
+        }
+
+        /**
+         * Maps a range of characters, as if the String
+         * <code>chars.subSequence(start, end).toString()</code> had been put.
+         *
+         * @param chars the characters to read.
+         * @param start index of the first character (inclusive).
+         * @param end index of the last character (exclusive).
+         * @param value 1 to MAX_VALUE.
+         */
+        public void put(CharSequence chars, int start, int end, int value) {
+            MurmurHash3 hasher = BinaryFuseFilter.hash(chars, start, end);
+            putHash(hasher.h1(), hasher.h2(), value);
+        }
+
+        /**
+         * Maps a String.
+         *
+         * @param element the String to map.
+         * @param value 1 to MAX_VALUE.
+         */
+        public void put(String element, int value) {
+            put(element, 0, element.length(), value);
+        }
+
+        /**
+         * Maps the element with the given MurmurHash3 hash. If an element is
+         * put more than once, the smallest of its values is kept.
+         *
+         * @param h1 the lower 64 bits of the element's hash.
+         * @param h2 the upper 64 bits of the element's hash, unused.
+         * @param value 1 to MAX_VALUE.
+         */
+        public void putHash(long h1, long h2, int value) {
+            checkValue(value);
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, hashes.length * 2);
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            hashes[count] = h1;
+            values[count++] = value;
+        }
+
+        /**
+         * Returns the number of elements put so far, duplicates included.
+         *
+         * @return number of elements put.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Builds the map. The builder can't be used afterwards.
+         *
+         * @return the map.
+         */
+        public BinaryFuseMap build() {
+            BinaryFuseMap map = new BinaryFuseMap(hashes, values, count);
+            hashes = null;
+            values = null;
+            return map;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.skjegstad.utils;
+
+import java.util.BitSet;
+
+/**
+ * A BitStore on the heap, backed by a java.util.BitSet. Limited to
+ * Integer.MAX_VALUE bits. This is what Bloom filters use unless told
+ * otherwise.
+ */
+public class BitSetStore implements BitStore {
+
+    private final BitSet bitset;
+    private final int size;
+
+    /**
+     * Creates an empty store.
+     *
+     * @param size number of bits.
+     */
+    public BitSetStore(int size) {
+        this(new BitSet(size), size);
+    }
+
+    /**
+     * Wraps an existing bit set. The bit set is used directly, not copied.
+     *
+     * @param bitset the bits.
+     * @param size number of usable bits in <code>bitset</code>.
+     */
+    public BitSetStore(BitSet bitset, int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        this.bitset = bitset;
+        this.size = size;
+    }
+
+    /**
+     * Returns the underlying bit set.
+     *
+     * @return the bit set.
+     */
+    public BitSet getBitSet() {
+        return bitset;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean get(long index) {
+        return bitset.get((int) index);
+    }
+
+    public void set(long index, boolean value) {
+        bitset.set((int) index, value);
+    }
+
+    public void clear() {
+        bitset.clear();
+    }
+
+    public long wordCount() {
+        return (size + 63L) / 64;
+    }
+
+    public long getWord(long wordIndex) {
+        int from = (int) (wordIndex * 64);
+        if (from >= bitset.length()) {
+            return 0;
+        }
+        long[] words = bitset.get(from, (int) Math.min(from + 64L, size)).toLongArray();
+        return words.length == 0 ? 0 : words[0];
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof BitSetStore)) {
+            return false;
+        }
+        BitSetStore other = (BitSetStore) obj;
+        return size == other.size && bitset.equals(other.bitset);
+    }
+
+    @Override
+    public int hashCode() {
+        return 61 * bitset.hashCode() + size;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.skjegstad.utils;
+
+/**
+ * Fixed-size storage for the bits of a Bloom filter, addressed by long
+ * indexes. Bits are grouped in 64-bit words the same way as in
+ * java.util.BitSet: bit i is bit (i % 64) of word (i / 64).
+ *
+ * @see BitSetStore
+ * @see MappedBitStore
+ */
+public interface BitStore {
+
+    /**
+     * Returns the number of bits in the store.
+     *
+     * @return number of bits.
+     */
+    long size();
+
+    /**
+     * Reads a single bit.
+     *
+     * @param index the bit to read, from 0 to size() - 1.
+     * @return true if the bit is set.
+     */
+    boolean get(long index);
+
+    /**
+     * Sets or clears a single bit.
+     *
+     * @param index the bit to write, from 0 to size() - 1.
+     * @param value If true, the bit is set. If false, the bit is cleared.
+     */
+    void set(long index, boolean value);
+
+    /**
+     * Clears all bits.
+     */
+    void clear();
+
+    /**
+     * Returns the number of 64-bit words needed to hold size() bits.
+     *
+     * @return (size() + 63) / 64.
+     */
+    long wordCount();
+
+    /**
+     * Reads 64 bits at once.
+     *
+     * @param wordIndex the word to read, from 0 to wordCount() - 1.
+     * @return the word, with bit (64 * wordIndex) as its least significant bit.
+     */
+    long getWord(long wordIndex);
+}
@@ -0,0 +1,309 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.skjegstad.utils;
+
+import java.util.Arrays;
+
+/**
+ * A cache-line-blocked Bloom filter, as described in "Cache-, Hash- and
+ * Space-Efficient Bloom Filters" (Putze, Sanders and Singler, 2007).
+ * <br /><br />
+ * The bits are split into blocks of 512 bits, the size of a typical 64-byte
+ * cache line. The upper half of h1, of an element's 128-bit MurmurHash3,
+ * picks the block, and all k bits of the element are set within that block,
+ * each one addressed by the top bits of a multiplicative sequence seeded
+ * with h2 and h1. (Plain double hashing within a block repeats positions
+ * too often, and doubles the false-positive rate.)
+ * A lookup therefore touches a single cache line, where {@link BloomFilter}
+ * touches up to k lines spread over the whole bit set. The difference grows
+ * with the size of the filter: once it no longer fits in the CPU caches,
+ * every line touched is a memory access.
+ * <br /><br />
+ * The price is a higher false-positive rate for the same number of bits.
+ * Elements are not spread evenly over the blocks, and the fuller blocks
+ * answer yes more often than a standard filter would. At 17 bits per element
+ * the rate is about 0.061% against 0.028% for {@link BloomFilter}; about 19
+ * bits per element make up the difference. See
+ * {@link #getFalsePositiveProbability(double)}.
+ * <br /><br />
+ * Elements are hashed as {@link HashStrategies#MURMUR3_128} does, so the
+ * h1/h2 of a {@link MurmurHash3} can be looked up with
+ * {@link #containsHash(long, long)}. Lookups are thread-safe once all
+ * elements have been added; adding is not.
+ */
+public class BlockedBloomFilter {
+
+    /** Bits per block: one 64-byte cache line. */
+    public static final int BLOCK_BITS = 512;
+    private static final int BLOCK_WORDS = BLOCK_BITS / 64;
+    private static final long MIX = 0x9e3779b97f4a7c15L;
+    private static final int MAX_BLOCKS = Integer.MAX_VALUE / BLOCK_WORDS;
+
+    private static final ThreadLocal<MurmurHash3> hashers = new ThreadLocal<MurmurHash3>() {
+        @Override
+        protected MurmurHash3 initialValue() { // One hasher per thread, so no locking is needed
+            return new MurmurHash3();
+        }
+    };
+
+    private final long[] words;
+    private final int blockCount;
+    private final int k; // number of bits set per element
+    private final int expectedNumberOfFilterElements;
+    private int numberOfAddedElements;
+
+    /**
+     * Constructs an empty filter. The number of bits is rounded up to a whole
+     * number of blocks, and the number of bits per element (k) is estimated
+     * from it and the number of expected elements.
+     *
+     * @param bitSetSize defines how many bits should be used in total for the filter.
+     * @param expectedNumberOfElements defines the maximum number of elements the filter is expected to contain.
+     */
+    public BlockedBloomFilter(long bitSetSize, int expectedNumberOfElements) {
+        this(bitSetSize, expectedNumberOfElements,
+             (int) Math.round(blockCount(bitSetSize) * (double) BLOCK_BITS / Math.max(1, expectedNumberOfElements) * Math.log(2.0)));
+    }
+
+    /**
+     * Constructs an empty filter. The number of bits is rounded up to a whole
+     * number of blocks.
+     *
+     * @param bitSetSize defines how many bits should be used in total for the filter.
+     * @param expectedNumberOfElements defines the maximum number of elements the filter is expected to contain.
+     * @param k is the number of bits set per element, at least 1.
+     */
+    public BlockedBloomFilter(long bitSetSize, int expectedNumberOfElements, int k) {
+        this.blockCount = blockCount(bitSetSize);
+        this.words = new long[blockCount * BLOCK_WORDS];
+        this.k = Math.max(1, k);
+        this.expectedNumberOfFilterElements = expectedNumberOfElements;
+        this.numberOfAddedElements = 0;
+    }
+
+    private static int blockCount(long bitSetSize) {
+        long blocks = Math.max(1, (bitSetSize + BLOCK_BITS - 1) / BLOCK_BITS);
+        if (bitSetSize < 0 || blocks > MAX_BLOCKS) {
+            throw new IllegalArgumentException("Invalid size " + bitSetSize);
+        }
+        return (int) blocks;
+    }
+
+    /**
+     * Adds a range of characters to the filter, as if the String
+     * <code>chars.subSequence(start, end).toString()</code> had been added.
+     *
+     * @param chars the characters to read.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     */
+    public void add(CharSequence chars, int start, int end) {
+        MurmurHash3 hasher = hash(chars, start, end);
+        addHash(hasher.h1(), hasher.h2());
+    }
+
+    /**
+     * Adds a String to the filter.
+     *
+     * @param value the String to add.
+     */
+    public void add(String value) {
+        add(value, 0, value.length());
+    }
+
+    /**
+     * Adds the element with the given MurmurHash3 hash.
+     *
+     * @param h1 the lower 64 bits of the element's hash.
+     * @param h2 the upper 64 bits of the element's hash.
+     */
+    public void addHash(long h1, long h2) {
+        int base = blockBase(h1);
+        long combined = h2;
+        for (int i = 0; i < k; i++) {
+            combined = combined * MIX + h1;
+            int bit = (int) (combined >>> 55); // the top 9 bits address the block
+            words[base + (bit >>> 6)] |= 1L << bit;
+        }
+        numberOfAddedElements++;
+    }
+
+    /**
+     * Returns true if the characters could have been added to the filter.
+     *
+     * @param chars the characters to read.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     * @return true if the element could have been added.
+     */
+    public boolean contains(CharSequence chars, int start, int end) {
+        MurmurHash3 hasher = hash(chars, start, end);
+        return containsHash(hasher.h1(), hasher.h2());
+    }
+
+    /**
+     * Returns true if the String could have been added to the filter.
+     *
+     * @param value the String to look up.
+     * @return true if the element could have been added.
+     */
+    public boolean contains(String value) {
+        return contains(value, 0, value.length());
+    }
+
+    /**
+     * Returns true if the element with the given MurmurHash3 hash could have
+     * been added to the filter.
+     *
+     * @param h1 the lower 64 bits of the element's hash.
+     * @param h2 the upper 64 bits of the element's hash.
+     * @return true if the element could have been added.
+     */
+    public boolean containsHash(long h1, long h2) {
+        int base = blockBase(h1);
+        long combined = h2;
+        for (int i = 0; i < k; i++) {
+            combined = combined * MIX + h1;
+            int bit = (int) (combined >>> 55);
+            if ((words[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks the block from the upper half of h1, by multiplying rather than
+     * dividing, and returns the index of its first word.
+     */
+    private int blockBase(long h1) {
+        return (int) (((h1 >>> 32) * blockCount) >>> 32) * BLOCK_WORDS;
+    }
+
+    private static MurmurHash3 hash(CharSequence chars, int start, int end) {
+        MurmurHash3 hasher = hashers.get();
+        hasher.reset();
+        for (int i = start; i < end; i++) {
+            hasher.put(chars.charAt(i));
+        }
+        hasher.finish();
+        return hasher;
+    }
+
+    /**
+     * Calculates the probability of a false positive given the specified
+     * number of added elements. The number of elements in a block follows a
+     * Poisson distribution, and a lookup is a false positive with the
+     * probability of a standard Bloom filter of BLOCK_BITS bits holding
+     * that many elements.
+     *
+     * @param numberOfElements number of added elements.
+     * @return probability of a false positive.
+     */
+    public double getFalsePositiveProbability(double numberOfElements) {
+        // sum over j of Poisson(j; n / blocks) * (1 - (1 - 1 / B) ^ (k * j)) ^ k
+        double perBlock = numberOfElements / blockCount;
+        double keep = Math.log1p(-1.0 / BLOCK_BITS);
+        int last = (int) Math.ceil(perBlock + 10 * Math.sqrt(perBlock) + 10);
+        double probability = 0;
+        double poisson = Math.exp(-perBlock);
+        for (int j = 0; j <= last; j++) {
+            if (j > 0) {
+                poisson *= perBlock / j;
+            }
+            probability += poisson * Math.pow(1 - Math.exp(keep * k * j), k);
+        }
+        return probability;
+    }
+
+    /**
+     * Get the current probability of a false positive, given the number of
+     * elements added so far.
+     *
+     * @return probability of false positives.
+     */
+    public double getFalsePositiveProbability() {
+        return getFalsePositiveProbability(numberOfAddedElements);
+    }
+
+    /**
+     * Calculates the expected probability of false positives, assuming the
+     * number of added elements equals the number of expected elements.
+     *
+     * @return expected probability of false positives.
+     */
+    public double expectedFalsePositiveProbability() {
+        return getFalsePositiveProbability(expectedNumberOfFilterElements);
+    }
+
+    /**
+     * Returns the number of bits set per element.
+     *
+     * @return k.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Returns the number of bits in the filter, a multiple of BLOCK_BITS.
+     *
+     * @return the size of the filter in bits.
+     */
+    public long bitSize() {
+        return (long) blockCount * BLOCK_BITS;
+    }
+
+    /**
+     * Returns the number of bits set. Divided by bitSize(), this is the
+     * fill ratio of the filter. Reads the whole filter.
+     *
+     * @return the number of bits set.
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns the number of elements added to the filter.
+     *
+     * @return number of elements added.
+     */
+    public int count() {
+        return numberOfAddedElements;
+    }
+
+    /**
+     * Returns the expected number of elements to be added.
+     *
+     * @return expected number of elements.
+     */
+    public int getExpectedNumberOfElements() {
+        return expectedNumberOfFilterElements;
+    }
+
+    /**
+     * Sets all bits to false.
+     */
+    public void clear() {
+        Arrays.fill(words, 0L);
+        numberOfAddedElements = 0;
+    }
+}
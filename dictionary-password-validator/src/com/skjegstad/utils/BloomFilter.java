@@ -15,12 +15,20 @@
 
 package com.skjegstad.utils;
 
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Implementation of a Bloom-filter, as described here:
@@ -32,30 +40,49 @@ import java.util.Collection;
  * were proposed in comments in his blog:
  * http://blog.locut.us/2008/01/12/a-decent-stand-alone-java-bloom-filter-implementation/
  *
+ * The mapping from elements to bits is delegated to a {@link HashStrategy}.
+ * New filters use {@link HashStrategies#DEFAULT}; filters serialized before
+ * strategies were introduced are read back with {@link HashStrategies#MD5}.
+ * <br /><br />
+ * The bits are kept in a {@link BitStore}: on the heap in a BitSet by default,
+ * or e.g. off-heap in a {@link MappedBitStore} for filters too large for the
+ * heap or shared between processes. Only heap filters can be serialized.
+ *
  * @param <E> Object type that is to be inserted into the Bloom filter, e.g. String or Integer.
  * @author Magnus Skjegstad <magnus@skjegstad.com>
  */
 public class BloomFilter<E> implements Serializable {
-    private BitSet bitset;
-    private int bitSetSize;
+    private static final long serialVersionUID = -7471716041441921411L; // unchanged, keeps old filters readable
+    private static final ObjectStreamField[] serialPersistentFields = { // the serialized form predates BitStore
+        new ObjectStreamField("bitset", BitSet.class),
+        new ObjectStreamField("bitSetSize", Integer.TYPE),
+        new ObjectStreamField("bitsPerElement", Double.TYPE),
+        new ObjectStreamField("expectedNumberOfFilterElements", Integer.TYPE),
+        new ObjectStreamField("numberOfAddedElements", Integer.TYPE),
+        new ObjectStreamField("k", Integer.TYPE),
+        new ObjectStreamField("hashStrategy", HashStrategy.class)
+    };
+    private BitStore bits;
+    private long bitSetSize;
     private double bitsPerElement;
     private int expectedNumberOfFilterElements; // expected (maximum) number of elements to be added
     private int numberOfAddedElements; // number of elements actually added to the Bloom filter
     private int k; // number of hash functions
+    private HashStrategy hashStrategy; // maps elements to bits, null in filters serialized before it existed
 
     static final Charset charset = Charset.forName("UTF-8"); // encoding used for storing hash values as strings
 
     static final String hashName = "MD5"; // MD5 gives good enough accuracy in most circumstances. Change to SHA1 if it's needed
-    static final MessageDigest digestFunction;
-    static { // The digest method is reused between instances
-        MessageDigest tmp;
-        try {
-            tmp = java.security.MessageDigest.getInstance(hashName);
-        } catch (NoSuchAlgorithmException e) {
-            tmp = null;
+    static final ThreadLocal<MessageDigest> digestFunction = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() { // One digest per thread, so no locking is needed
+            try {
+                return java.security.MessageDigest.getInstance(hashName);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
         }
-        digestFunction = tmp;
-    }
+    };
 
     /**
       * Constructs an empty Bloom filter. The total length of the Bloom filter will be
@@ -66,12 +93,44 @@ public class BloomFilter<E> implements Serializable {
       * @param k is the number of hash functions used.
       */
     public BloomFilter(double c, int n, int k) {
+      this(c, n, k, HashStrategies.DEFAULT);
+    }
+
+    /**
+     * Constructs an empty Bloom filter using the given hash strategy. The total length
+     * of the Bloom filter will be c*n.
+     *
+     * @param c is the number of bits used per element.
+     * @param n is the expected number of elements the filter will contain.
+     * @param k is the number of hash functions used.
+     * @param hashStrategy maps elements to bits.
+     */
+    public BloomFilter(double c, int n, int k, HashStrategy hashStrategy) {
+      if (hashStrategy == null) {
+          throw new IllegalArgumentException("hashStrategy must not be null");
+      }
       this.expectedNumberOfFilterElements = n;
       this.k = k;
       this.bitsPerElement = c;
       this.bitSetSize = (int)Math.ceil(c * n);
+      this.hashStrategy = hashStrategy;
       numberOfAddedElements = 0;
-      this.bitset = new BitSet(bitSetSize);
+      this.bits = new BitSetStore((int) bitSetSize);
+    }
+
+    /**
+     * Constructs a Bloom filter on top of the given bit storage, which would typically
+     * be empty. The size of the filter is the size of the store, and the optimal number
+     * of hash functions (k) is estimated from it and the number of expected elements.
+     *
+     * @param bits where the bits of the filter are kept.
+     * @param expectedNumberOElements defines the maximum number of elements the filter is expected to contain.
+     * @param hashStrategy maps elements to bits.
+     */
+    public BloomFilter(BitStore bits, int expectedNumberOElements, HashStrategy hashStrategy) {
+        this(bits.size(), bits.size() / (double)expectedNumberOElements,
+             (int) Math.round((bits.size() / (double)expectedNumberOElements) * Math.log(2.0)),
+             expectedNumberOElements, 0, hashStrategy, bits);
     }
 
     /**
@@ -82,9 +141,22 @@ public class BloomFilter<E> implements Serializable {
      * @param expectedNumberOElements defines the maximum number of elements the filter is expected to contain.
      */
     public BloomFilter(int bitSetSize, int expectedNumberOElements) {
+        this(bitSetSize, expectedNumberOElements, HashStrategies.DEFAULT);
+    }
+
+    /**
+     * Constructs an empty Bloom filter using the given hash strategy. The optimal number of hash
+     * functions (k) is estimated from the total size of the Bloom and the number of expected elements.
+     *
+     * @param bitSetSize defines how many bits should be used in total for the filter.
+     * @param expectedNumberOElements defines the maximum number of elements the filter is expected to contain.
+     * @param hashStrategy maps elements to bits.
+     */
+    public BloomFilter(int bitSetSize, int expectedNumberOElements, HashStrategy hashStrategy) {
         this(bitSetSize / (double)expectedNumberOElements,
              expectedNumberOElements,
-             (int) Math.round((bitSetSize / (double)expectedNumberOElements) * Math.log(2.0)));
+             (int) Math.round((bitSetSize / (double)expectedNumberOElements) * Math.log(2.0)),
+             hashStrategy);
     }
 
     /**
@@ -96,13 +168,28 @@ public class BloomFilter<E> implements Serializable {
      * @param expectedNumberOfElements is the expected number of elements in the Bloom filter.
      */
     public BloomFilter(double falsePositiveProbability, int expectedNumberOfElements) {
+        this(falsePositiveProbability, expectedNumberOfElements, HashStrategies.DEFAULT);
+    }
+
+    /**
+     * Constructs an empty Bloom filter with a given false positive probability, using the given
+     * hash strategy.
+     *
+     * @param falsePositiveProbability is the desired false positive probability.
+     * @param expectedNumberOfElements is the expected number of elements in the Bloom filter.
+     * @param hashStrategy maps elements to bits.
+     */
+    public BloomFilter(double falsePositiveProbability, int expectedNumberOfElements, HashStrategy hashStrategy) {
         this(Math.ceil(-(Math.log(falsePositiveProbability) / Math.log(2))) / Math.log(2), // c = k / ln(2)
              expectedNumberOfElements,
-             (int)Math.ceil(-(Math.log(falsePositiveProbability) / Math.log(2)))); // k = ceil(-log_2(false prob.))
+             (int)Math.ceil(-(Math.log(falsePositiveProbability) / Math.log(2))), // k = ceil(-log_2(false prob.))
+             hashStrategy);
     }
 
     /**
-     * Construct a new Bloom filter based on existing Bloom filter data.
+     * Construct a new Bloom filter based on existing Bloom filter data. The data is
+     * assumed to have been produced by {@link HashStrategies#MD5}, which was the only
+     * strategy before strategies were introduced.
      *
      * @param bitSetSize defines how many bits should be used for the filter.
      * @param expectedNumberOfFilterElements defines the maximum number of elements the filter is expected to contain.
@@ -110,9 +197,41 @@ public class BloomFilter<E> implements Serializable {
      * @param filterData a BitSet representing an existing Bloom filter.
      */
     public BloomFilter(int bitSetSize, int expectedNumberOfFilterElements, int actualNumberOfFilterElements, BitSet filterData) {
-        this(bitSetSize, expectedNumberOfFilterElements);
-        this.bitset = filterData;
+        this(bitSetSize, expectedNumberOfFilterElements, actualNumberOfFilterElements, filterData, HashStrategies.MD5);
+    }
+
+    /**
+     * Construct a new Bloom filter based on existing Bloom filter data.
+     *
+     * @param bitSetSize defines how many bits should be used for the filter.
+     * @param expectedNumberOfFilterElements defines the maximum number of elements the filter is expected to contain.
+     * @param actualNumberOfFilterElements specifies how many elements have been inserted into the <code>filterData</code> BitSet.
+     * @param filterData a BitSet representing an existing Bloom filter.
+     * @param hashStrategy the strategy that was used to populate <code>filterData</code>.
+     */
+    public BloomFilter(int bitSetSize, int expectedNumberOfFilterElements, int actualNumberOfFilterElements, BitSet filterData,
+            HashStrategy hashStrategy) {
+        this(bitSetSize, expectedNumberOfFilterElements, hashStrategy);
+        this.bits = new BitSetStore(filterData, bitSetSize);
+        this.numberOfAddedElements = actualNumberOfFilterElements;
+    }
+
+    /**
+     * Restores a Bloom filter field by field, without deriving any parameter.
+     * Used by {@link BloomFilterSnapshot}.
+     */
+    BloomFilter(long bitSetSize, double bitsPerElement, int k, int expectedNumberOfFilterElements,
+            int actualNumberOfFilterElements, HashStrategy hashStrategy, BitStore filterData) {
+        if (hashStrategy == null) {
+            throw new IllegalArgumentException("hashStrategy must not be null");
+        }
+        this.bitSetSize = bitSetSize;
+        this.bitsPerElement = bitsPerElement;
+        this.k = k;
+        this.expectedNumberOfFilterElements = expectedNumberOfFilterElements;
         this.numberOfAddedElements = actualNumberOfFilterElements;
+        this.hashStrategy = hashStrategy;
+        this.bits = filterData;
     }
 
     /**
@@ -144,11 +263,7 @@ public class BloomFilter<E> implements Serializable {
      */
     public static long createHash(byte[] data) {
         long h = 0;
-        byte[] res;
-
-        synchronized (digestFunction) {
-            res = digestFunction.digest(data);
-        }
+        byte[] res = digestFunction.get().digest(data);
 
         for (int i = 0; i < 4; i++) {
             h <<= 8;
@@ -181,7 +296,10 @@ public class BloomFilter<E> implements Serializable {
         if (this.bitSetSize != other.bitSetSize) {
             return false;
         }
-        if (this.bitset != other.bitset && (this.bitset == null || !this.bitset.equals(other.bitset))) {
+        if (this.hashStrategy != other.hashStrategy) {
+            return false;
+        }
+        if (this.bits != other.bits && (this.bits == null || !this.bits.equals(other.bits))) {
             return false;
         }
         return true;
@@ -194,9 +312,9 @@ public class BloomFilter<E> implements Serializable {
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 61 * hash + (this.bitset != null ? this.bitset.hashCode() : 0);
+        hash = 61 * hash + (this.bits != null ? this.bits.hashCode() : 0);
         hash = 61 * hash + this.expectedNumberOfFilterElements;
-        hash = 61 * hash + this.bitSetSize;
+        hash = 61 * hash + (int) (this.bitSetSize ^ (this.bitSetSize >>> 32));
         hash = 61 * hash + this.k;
         return hash;
     }
@@ -254,11 +372,20 @@ public class BloomFilter<E> implements Serializable {
         return k;
     }
 
+    /**
+     * Returns the strategy used to map elements to bits.
+     *
+     * @return the hash strategy.
+     */
+    public HashStrategy getHashStrategy() {
+        return hashStrategy;
+    }
+
     /**
      * Sets all bits to false in the Bloom filter.
      */
     public void clear() {
-        bitset.clear();
+        bits.clear();
         numberOfAddedElements = 0;
     }
 
@@ -269,16 +396,39 @@ public class BloomFilter<E> implements Serializable {
      * @param element is an element to register in the Bloom filter.
      */
     public void add(E element) {
-       long hash;
        String valString = element.toString();
-       for (int x = 0; x < k; x++) {
-           hash = createHash(valString + Integer.toString(x));
-           hash = hash % (long)bitSetSize;
-           bitset.set(Math.abs((int)hash), true);
-       }
+       add(valString, 0, valString.length());
+    }
+
+    /**
+     * Adds a range of characters to the Bloom filter, as if the String
+     * <code>chars.subSequence(start, end).toString()</code> had been added.
+     *
+     * @param chars the characters to read.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     */
+    public void add(CharSequence chars, int start, int end) {
+       hashStrategy.add(chars, start, end, k, bits);
        numberOfAddedElements ++;
     }
 
+    /**
+     * Adds the element with the given hash, which must come from
+     * {@link MurmurHash3}; see {@link #containsHash(long, long)}.
+     *
+     * @param h1 the lower 64 bits of the element's hash.
+     * @param h2 the upper 64 bits of the element's hash.
+     * @throws UnsupportedOperationException if the filter uses another hash strategy.
+     */
+    public void addHash(long h1, long h2) {
+        if (!supportsPrecomputedHash()) {
+            throw new UnsupportedOperationException("Precomputed hashes require " + HashStrategies.MURMUR3_128);
+        }
+        HashStrategies.probe(h1, h2, k, bits, true);
+        numberOfAddedElements ++;
+    }
+
     /**
      * Adds all elements from a Collection to the Bloom filter.
      * @param c Collection of elements.
@@ -288,6 +438,92 @@ public class BloomFilter<E> implements Serializable {
             add(element);
     }
 
+    /**
+     * Adds many character sequences at once, hashing them in parallel on a
+     * fork-join pool. If the filter's bits are kept in an
+     * {@link AtomicBitStore}, the workers set them directly. Otherwise they
+     * are first set in a temporary AtomicBitStore the size of the filter,
+     * which the workers update with compare-and-set, and then merged into
+     * the filter, so the add briefly needs twice the filter's memory. With a
+     * pool of a single thread, the sequences are simply added one by one.
+     * Like the other add methods, this must not run concurrently with other
+     * modifications.
+     *
+     * @param batches the sequences to add; each array is hashed by a single task.
+     * @param pool the pool to run on.
+     */
+    public void addAllParallel(List<? extends CharSequence[]> batches, ForkJoinPool pool) {
+        if (pool.getParallelism() == 1) {
+            for (CharSequence[] batch : batches) {
+                for (CharSequence chars : batch) {
+                    add(chars, 0, chars.length());
+                }
+            }
+            return;
+        }
+
+        if (bits instanceof AtomicBitStore) {
+            numberOfAddedElements += pool.invoke(new AddTask(batches, 0, batches.size(), hashStrategy, k, (AtomicBitStore) bits));
+            return;
+        }
+
+        AtomicBitStore added = new AtomicBitStore(bitSetSize);
+        numberOfAddedElements += pool.invoke(new AddTask(batches, 0, batches.size(), hashStrategy, k, added));
+
+        // Bit by bit, as BitSet.valueOf() would copy the words twice more
+        for (long i = 0; i < added.wordCount(); i++) {
+            long word = added.getWord(i);
+            while (word != 0) {
+                bits.set(64 * i + Long.numberOfTrailingZeros(word), true);
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Hashes a range of batches into an AtomicBitStore, splitting the range
+     * until a single batch is left. Returns the number of elements added.
+     */
+    private static final class AddTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+        private final List<? extends CharSequence[]> batches;
+        private final int from;
+        private final int to;
+        private final HashStrategy hashStrategy;
+        private final int k;
+        private final AtomicBitStore bits;
+
+        AddTask(List<? extends CharSequence[]> batches, int from, int to, HashStrategy hashStrategy, int k, AtomicBitStore bits) {
+            this.batches = batches;
+            this.from = from;
+            this.to = to;
+            this.hashStrategy = hashStrategy;
+            this.k = k;
+            this.bits = bits;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                AddTask left = new AddTask(batches, from, middle, hashStrategy, k, bits);
+                left.fork();
+                int right = new AddTask(batches, middle, to, hashStrategy, k, bits).compute();
+                return left.join() + right;
+            }
+
+            int added = 0;
+            for (int i = from; i < to; i++) {
+                for (CharSequence chars : batches.get(i)) {
+                    hashStrategy.add(chars, 0, chars.length(), k, bits);
+                    added++;
+                }
+            }
+            return added;
+        }
+    }
+
     /**
      * Returns true if the element could have been inserted into the Bloom filter.
      * Use getFalsePositiveProbability() to calculate the probability of this
@@ -297,15 +533,49 @@ public class BloomFilter<E> implements Serializable {
      * @return true if the element could have been inserted into the Bloom filter.
      */
     public boolean contains(E element) {
-       long hash;
        String valString = element.toString();
-       for (int x = 0; x < k; x++) {
-           hash = createHash(valString + Integer.toString(x));
-           hash = hash % (long)bitSetSize;
-           if (!bitset.get(Math.abs((int)hash)))
-               return false;
-       }
-       return true;
+       return contains(valString, 0, valString.length());
+    }
+
+    /**
+     * Returns true if the range of characters could have been inserted into the
+     * Bloom filter, as if <code>chars.subSequence(start, end).toString()</code>
+     * had been passed to contains(). No copy of the characters is made.
+     *
+     * @param chars the characters to read.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     * @return true if the characters could have been inserted into the Bloom filter.
+     */
+    public boolean contains(CharSequence chars, int start, int end) {
+       return hashStrategy.contains(chars, start, end, k, bits);
+    }
+
+    /**
+     * Returns true if the element with the given hash could have been inserted
+     * into the Bloom filter. The hash must come from {@link MurmurHash3}, so
+     * this only works for filters using {@link HashStrategies#MURMUR3_128};
+     * see {@link #supportsPrecomputedHash()}.
+     *
+     * @param h1 the lower 64 bits of the element's hash.
+     * @param h2 the upper 64 bits of the element's hash.
+     * @return true if the element could have been inserted into the Bloom filter.
+     * @throws UnsupportedOperationException if the filter uses another hash strategy.
+     */
+    public boolean containsHash(long h1, long h2) {
+        if (!supportsPrecomputedHash()) {
+            throw new UnsupportedOperationException("Precomputed hashes require " + HashStrategies.MURMUR3_128);
+        }
+        return HashStrategies.probe(h1, h2, k, bits, false);
+    }
+
+    /**
+     * Returns true if this filter can be queried with {@link #containsHash(long, long)}.
+     *
+     * @return true if the filter uses {@link HashStrategies#MURMUR3_128}.
+     */
+    public boolean supportsPrecomputedHash() {
+        return hashStrategy == HashStrategies.MURMUR3_128;
     }
 
     /**
@@ -328,7 +598,7 @@ public class BloomFilter<E> implements Serializable {
      * @return true if the bit is set, false if it is not.
      */
     public boolean getBit(int bit) {
-        return bitset.get(bit);
+        return bits.get(bit);
     }
 
     /**
@@ -337,27 +607,71 @@ public class BloomFilter<E> implements Serializable {
      * @param value If true, the bit is set. If false, the bit is cleared.
      */
     public void setBit(int bit, boolean value) {
-        bitset.set(bit, value);
+        bits.set(bit, value);
     }
 
     /**
      * Return the bit set used to store the Bloom filter.
      * @return bit set representing the Bloom filter.
+     * @throws UnsupportedOperationException if the bits are not kept in a {@link BitSetStore}.
      */
     public BitSet getBitSet() {
-        return bitset;
+        if (!(bits instanceof BitSetStore)) {
+            throw new UnsupportedOperationException("Bits are kept in a " + bits.getClass().getSimpleName() + ", use getBitStore()");
+        }
+        return ((BitSetStore) bits).getBitSet();
+    }
+
+    /**
+     * Return the storage holding the bits of the Bloom filter.
+     * @return bit storage of the Bloom filter.
+     */
+    public BitStore getBitStore() {
+        return bits;
     }
 
     /**
      * Returns the number of bits in the Bloom filter. Use count() to retrieve
-     * the number of inserted elements.
+     * the number of inserted elements. Use bitSize() for filters that may
+     * hold more than Integer.MAX_VALUE bits.
      *
      * @return the size of the bitset used by the Bloom filter.
+     * @throws IllegalStateException if the filter has more than Integer.MAX_VALUE bits.
      */
     public int size() {
+        if (this.bitSetSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The filter has " + this.bitSetSize + " bits, use bitSize()");
+        }
+        return (int) this.bitSetSize;
+    }
+
+    /**
+     * Returns the number of bits in the Bloom filter.
+     *
+     * @return the number of bits used by the Bloom filter.
+     */
+    public long bitSize() {
         return this.bitSetSize;
     }
 
+    /**
+     * Returns the number of bits set in the Bloom filter. Divided by
+     * bitSize(), this is its fill ratio. Reads the whole filter.
+     *
+     * @return the number of bits set.
+     */
+    public long cardinality() {
+        if (bits instanceof BitSetStore) {
+            return ((BitSetStore) bits).getBitSet().cardinality();
+        }
+        long cardinality = 0;
+        long words = bits.wordCount();
+        for (long i = 0; i < words; i++) {
+            cardinality += Long.bitCount(bits.getWord(i));
+        }
+        return cardinality;
+    }
+
     /**
      * Returns the number of elements added to the Bloom filter after it
      * was constructed or after clear() was called.
@@ -397,4 +711,33 @@ public class BloomFilter<E> implements Serializable {
     public double getBitsPerElement() {
         return this.bitSetSize / (double)numberOfAddedElements;
     }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (!(bits instanceof BitSetStore)) {
+            throw new NotSerializableException("Only Bloom filters kept in a BitSetStore can be serialized");
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("bitset", ((BitSetStore) bits).getBitSet());
+        fields.put("bitSetSize", (int) bitSetSize);
+        fields.put("bitsPerElement", bitsPerElement);
+        fields.put("expectedNumberOfFilterElements", expectedNumberOfFilterElements);
+        fields.put("numberOfAddedElements", numberOfAddedElements);
+        fields.put("k", k);
+        fields.put("hashStrategy", hashStrategy);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        bitSetSize = fields.get("bitSetSize", 0);
+        bits = new BitSetStore((BitSet) fields.get("bitset", null), (int) bitSetSize);
+        bitsPerElement = fields.get("bitsPerElement", 0.0);
+        expectedNumberOfFilterElements = fields.get("expectedNumberOfFilterElements", 0);
+        numberOfAddedElements = fields.get("numberOfAddedElements", 0);
+        k = fields.get("k", 0);
+        hashStrategy = (HashStrategy) fields.get("hashStrategy", null);
+        if (hashStrategy == null) { // serialized before strategies were introduced
+            hashStrategy = HashStrategies.MD5;
+        }
+    }
 }
\ No newline at end of file
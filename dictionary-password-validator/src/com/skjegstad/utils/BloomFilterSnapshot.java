@@ -0,0 +1,253 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.skjegstad.utils;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+/**
+ * A compact binary representation of a Bloom filter, meant to be written
+ * once (e.g. at build time) and loaded quickly, typically by memory-mapping
+ * the file. All values are big-endian:
+ * <pre>
+ *   int    magic, 0x424C4F4F ("BLOO")
+ *   int    format version, currently 2
+ *   int    hash strategy: 1 = MD5, 2 = MURMUR3_128
+ *   int    k
+ *   long   bitSetSize (an int in version 1)
+ *   int    expected number of elements
+ *   int    number of added elements
+ *   double expected bits per element
+ *   long   number of words (n) (an int in version 1)
+ *   long   n words of the bit set, as returned by BitSet.toLongArray()
+ * </pre>
+ * Trailing zero words may be left out. Only the strategies in
+ * {@link HashStrategies} can be stored.
+ * <br /><br />
+ * A snapshot can either be copied onto the heap with read(), or used in place
+ * with open(), which maps the words into a read-only {@link MappedBitStore}.
+ */
+public final class BloomFilterSnapshot {
+
+    /**
+     * First four bytes of a snapshot.
+     */
+    public static final int MAGIC = 0x424C4F4F;
+
+    /**
+     * Current format version.
+     */
+    public static final int VERSION = 2;
+
+    private static final int MD5_ID = 1;
+    private static final int MURMUR3_128_ID = 2;
+    private static final int MAX_HEADER_SIZE = 48;
+
+    private BloomFilterSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a Bloom filter.
+     *
+     * @param filter the filter to write.
+     * @param out the destination, positioned where the snapshot should start.
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if the filter uses a hash strategy that can't be stored.
+     */
+    public static void write(BloomFilter<?> filter, DataOutput out) throws IOException {
+        BitStore bits = filter.getBitStore();
+        long[] words = null;
+        long wordCount = bits.wordCount();
+        if (bits instanceof BitSetStore) {
+            words = ((BitSetStore) bits).getBitSet().toLongArray();
+            wordCount = words.length;
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strategyId(filter.getHashStrategy()));
+        out.writeInt(filter.getK());
+        out.writeLong(filter.bitSize());
+        out.writeInt(filter.getExpectedNumberOfElements());
+        out.writeInt(filter.count());
+        out.writeDouble(filter.getExpectedBitsPerElement());
+        out.writeLong(wordCount);
+        for (long i = 0; i < wordCount; i++) {
+            out.writeLong(words != null ? words[(int) i] : bits.getWord(i));
+        }
+    }
+
+    /**
+     * Reads a snapshot of a Bloom filter. The buffer's position is advanced
+     * past the snapshot. The bits are copied out of the buffer, so it may be
+     * discarded afterwards.
+     *
+     * @param <E> element type of the filter.
+     * @param buffer the source, positioned at the start of the snapshot.
+     * @return the restored filter.
+     * @throws IOException if the buffer does not hold a valid snapshot, or
+     * the filter is too large to be kept on the heap.
+     */
+    public static <E> BloomFilter<E> read(ByteBuffer buffer) throws IOException {
+        Header header = new Header(buffer);
+        if (header.bitSetSize > Integer.MAX_VALUE) {
+            throw new IOException("Bloom filter snapshot of " + header.bitSetSize + " bits is too large for the heap");
+        }
+        if (buffer.remaining() < 8 * header.wordCount) {
+            throw new IOException("Truncated Bloom filter snapshot");
+        }
+
+        int wordCount = (int) header.wordCount;
+        ByteBuffer bits = buffer.slice();
+        bits.limit(8 * wordCount);
+        BitSet bitset = BitSet.valueOf(bits.order(buffer.order()).asLongBuffer());
+        buffer.position(buffer.position() + 8 * wordCount);
+
+        return header.filter(new BitSetStore(bitset, (int) header.bitSetSize));
+    }
+
+    /**
+     * Memory-maps a file holding nothing but a snapshot and reads it.
+     *
+     * @param <E> element type of the filter.
+     * @param file the snapshot file.
+     * @return the restored filter.
+     * @throws IOException if the file can't be read or is not a valid snapshot.
+     */
+    public static <E> BloomFilter<E> read(File file) throws IOException {
+        return read(map(file));
+    }
+
+    /**
+     * Opens a snapshot in place, without copying its bits onto the heap. The
+     * filter is backed by a read-only {@link MappedBitStore}, so it can't be
+     * added to, and its pages are shared with every other process mapping the
+     * same file.
+     *
+     * @param <E> element type of the filter.
+     * @param file the file holding the snapshot.
+     * @param offset position of the snapshot in the file.
+     * @return the filter.
+     * @throws IOException if the file can't be mapped or is not a valid snapshot.
+     */
+    public static <E> BloomFilter<E> open(File file, long offset) throws IOException {
+        Header header;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = Math.min(MAX_HEADER_SIZE, channel.size() - offset);
+            if (length < 0) {
+                throw new IOException("Not a Bloom filter snapshot");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            header = new Header(buffer);
+            offset += buffer.position();
+        } finally {
+            raf.close();
+        }
+
+        return header.filter(MappedBitStore.open(file, offset, header.bitSetSize, header.wordCount, true));
+    }
+
+    /**
+     * Memory-maps a whole file read-only. The mapping stays valid after the
+     * file has been closed.
+     *
+     * @param file the file to map.
+     * @return the mapped contents.
+     * @throws IOException if the file can't be mapped.
+     */
+    public static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int strategyId(HashStrategy hashStrategy) {
+        if (hashStrategy == HashStrategies.MD5) {
+            return MD5_ID;
+        }
+        if (hashStrategy == HashStrategies.MURMUR3_128) {
+            return MURMUR3_128_ID;
+        }
+        throw new IllegalArgumentException("Hash strategy " + hashStrategy + " can't be stored in a snapshot");
+    }
+
+    private static HashStrategy strategy(int id) throws IOException {
+        switch (id) {
+            case MD5_ID:
+                return HashStrategies.MD5;
+            case MURMUR3_128_ID:
+                return HashStrategies.MURMUR3_128;
+            default:
+                throw new IOException("Unknown hash strategy " + id + " in Bloom filter snapshot");
+        }
+    }
+
+    /**
+     * Everything in a snapshot but the words.
+     */
+    private static final class Header {
+
+        final HashStrategy hashStrategy;
+        final int k;
+        final long bitSetSize;
+        final int expectedNumberOfElements;
+        final int numberOfAddedElements;
+        final double bitsPerElement;
+        final long wordCount;
+
+        /**
+         * Reads a header, leaving the buffer positioned at the first word.
+         */
+        Header(ByteBuffer buffer) throws IOException {
+            if (buffer.remaining() < 40 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a Bloom filter snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported Bloom filter snapshot version " + version);
+            }
+            if (version == VERSION && buffer.remaining() < MAX_HEADER_SIZE - 8) {
+                throw new IOException("Truncated Bloom filter snapshot");
+            }
+            hashStrategy = strategy(buffer.getInt());
+            k = buffer.getInt();
+            bitSetSize = version == 1 ? buffer.getInt() : buffer.getLong();
+            expectedNumberOfElements = buffer.getInt();
+            numberOfAddedElements = buffer.getInt();
+            bitsPerElement = buffer.getDouble();
+            wordCount = version == 1 ? buffer.getInt() : buffer.getLong();
+            if (k < 1 || bitSetSize < 1 || wordCount < 0 || wordCount > (bitSetSize + 63) / 64) {
+                throw new IOException("Corrupt Bloom filter snapshot");
+            }
+        }
+
+        <E> BloomFilter<E> filter(BitStore bits) {
+            return new BloomFilter<E>(bitSetSize, bitsPerElement, k, expectedNumberOfElements,
+                    numberOfAddedElements, hashStrategy, bits);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.skjegstad.utils;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Bloom filter which elements can be added to from any number of threads,
+ * while other threads look elements up, without locks.
+ * <br /><br />
+ * The bits are kept in an {@link AtomicBitStore}, where each bit is set with
+ * a compare-and-set on the 64-bit word holding it, and the number of added
+ * elements is kept in a LongAdder. An element is visible to lookups once
+ * add() has returned; a lookup running concurrently with the add may or may
+ * not find it. clear() is not atomic with respect to concurrent adds.
+ * <br /><br />
+ * Filters of this kind can't be serialized; write them with
+ * {@link BloomFilterSnapshot} instead.
+ *
+ * @param <E> Object type that is to be inserted into the Bloom filter, e.g. String or Integer.
+ */
+public class ConcurrentBloomFilter<E> extends BloomFilter<E> {
+
+    private static final long serialVersionUID = 1L;
+    private final transient LongAdder numberOfAddedElements = new LongAdder();
+
+    /**
+     * Constructs an empty filter using {@link HashStrategies#DEFAULT}. The
+     * optimal number of hash functions (k) is estimated from the total size
+     * of the filter and the number of expected elements.
+     *
+     * @param bitSetSize defines how many bits should be used in total for the filter.
+     * @param expectedNumberOElements defines the maximum number of elements the filter is expected to contain.
+     */
+    public ConcurrentBloomFilter(long bitSetSize, int expectedNumberOElements) {
+        this(bitSetSize, expectedNumberOElements, HashStrategies.DEFAULT);
+    }
+
+    /**
+     * Constructs an empty filter using the given hash strategy. The optimal
+     * number of hash functions (k) is estimated from the total size of the
+     * filter and the number of expected elements.
+     *
+     * @param bitSetSize defines how many bits should be used in total for the filter.
+     * @param expectedNumberOElements defines the maximum number of elements the filter is expected to contain.
+     * @param hashStrategy maps elements to bits.
+     */
+    public ConcurrentBloomFilter(long bitSetSize, int expectedNumberOElements, HashStrategy hashStrategy) {
+        super(new AtomicBitStore(bitSetSize), expectedNumberOElements, hashStrategy);
+    }
+
+    /**
+     * Adds a range of characters to the filter, as if the String
+     * <code>chars.subSequence(start, end).toString()</code> had been added.
+     * May be called from any thread.
+     *
+     * @param chars the characters to read.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     */
+    @Override
+    public void add(CharSequence chars, int start, int end) {
+        getHashStrategy().add(chars, start, end, getK(), getBitStore());
+        numberOfAddedElements.increment();
+    }
+
+    /**
+     * Adds the element with the given hash. May be called from any thread.
+     *
+     * @param h1 the lower 64 bits of the element's hash.
+     * @param h2 the upper 64 bits of the element's hash.
+     * @throws UnsupportedOperationException if the filter uses another hash strategy.
+     */
+    @Override
+    public void addHash(long h1, long h2) {
+        if (!supportsPrecomputedHash()) {
+            throw new UnsupportedOperationException("Precomputed hashes require " + HashStrategies.MURMUR3_128);
+        }
+        HashStrategies.probe(h1, h2, getK(), getBitStore(), true);
+        numberOfAddedElements.increment();
+    }
+
+    /**
+     * Adds many character sequences at once, in parallel on a fork-join
+     * pool. The workers set the bits of this filter directly, and unlike
+     * {@link BloomFilter#addAllParallel}, lookups and other adds may run at
+     * the same time.
+     *
+     * @param batches the sequences to add; each array is hashed by a single task.
+     * @param pool the pool to run on.
+     */
+    @Override
+    public void addAllParallel(List<? extends CharSequence[]> batches, ForkJoinPool pool) {
+        pool.invoke(new AddTask(this, batches, 0, batches.size()));
+    }
+
+    /**
+     * Adds a range of batches, splitting the range until a single batch is left.
+     */
+    private static final class AddTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final ConcurrentBloomFilter<?> filter;
+        private final List<? extends CharSequence[]> batches;
+        private final int from;
+        private final int to;
+
+        AddTask(ConcurrentBloomFilter<?> filter, List<? extends CharSequence[]> batches, int from, int to) {
+            this.filter = filter;
+            this.batches = batches;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new AddTask(filter, batches, from, middle), new AddTask(filter, batches, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                for (CharSequence chars : batches.get(i)) {
+                    filter.add(chars, 0, chars.length());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets all bits to false. Elements added concurrently may be lost or
+     * only partly cleared.
+     */
+    @Override
+    public void clear() {
+        getBitStore().clear();
+        numberOfAddedElements.reset();
+    }
+
+    /**
+     * Returns the number of elements added so far. Adds still in progress
+     * may or may not be counted.
+     *
+     * @return number of elements added to the Bloom filter.
+     */
+    @Override
+    public int count() {
+        return (int) Math.min(numberOfAddedElements.sum(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public double getFalsePositiveProbability() {
+        return getFalsePositiveProbability(numberOfAddedElements.sum());
+    }
+
+    @Override
+    public double getBitsPerElement() {
+        return bitSize() / (double) numberOfAddedElements.sum();
+    }
+}
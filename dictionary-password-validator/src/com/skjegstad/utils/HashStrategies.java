@@ -0,0 +1,137 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.skjegstad.utils;
+
+/**
+ * The hash strategies shipped with the Bloom filter.
+ *
+ * @see HashStrategy
+ */
+public enum HashStrategies implements HashStrategy {
+
+    /**
+     * The original strategy: every one of the k bits is found by appending
+     * the function number to the value and running it through MD5.
+     * Use this to read filters that were built before strategies existed.
+     */
+    MD5 {
+        public void add(CharSequence value, int start, int end, int k, BitStore bits) {
+            String valString = value.subSequence(start, end).toString();
+            for (int x = 0; x < k; x++) {
+                bits.set(md5Index(valString, x, bits.size()), true);
+            }
+        }
+
+        public boolean contains(CharSequence value, int start, int end, int k, BitStore bits) {
+            String valString = value.subSequence(start, end).toString();
+            for (int x = 0; x < k; x++) {
+                if (!bits.get(md5Index(valString, x, bits.size()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    },
+
+    /**
+     * A single pass of the 128-bit MurmurHash3 over the characters, with the
+     * k indexes derived from its two halves by Kirsch-Mitzenmacher double
+     * hashing: index(i) = h1 + i * h2. This allocates nothing and takes no locks.
+     */
+    MURMUR3_128 {
+        public void add(CharSequence value, int start, int end, int k, BitStore bits) {
+            murmur3(value, start, end, k, bits, true);
+        }
+
+        public boolean contains(CharSequence value, int start, int end, int k, BitStore bits) {
+            return murmur3(value, start, end, k, bits, false);
+        }
+    };
+
+    /**
+     * The strategy used for new filters.
+     */
+    public static final HashStrategy DEFAULT = MURMUR3_128;
+
+    private static int md5Index(String valString, int x, long bitSetSize) {
+        long hash = BloomFilter.createHash(valString + Integer.toString(x));
+        hash = hash % bitSetSize;
+        return Math.abs((int) hash);
+    }
+
+    /**
+     * Hashes <code>value[start, end)</code> and either sets or tests the
+     * resulting k bits.
+     *
+     * @return when testing, true if all bits were set. Always true when setting.
+     */
+    private static boolean murmur3(CharSequence value, int start, int end, int k, BitStore bits, boolean set) {
+        long h1 = 0;
+        long h2 = 0;
+
+        // Body: blocks of 8 characters (16 bytes)
+        int offset = start;
+        int blocksEnd = start + ((end - start) & ~7);
+        for (; offset < blocksEnd; offset += 8) {
+            h1 ^= MurmurHash3.mixK1(MurmurHash3.getLong(value, offset));
+            h1 = MurmurHash3.mixH1(h1, h2);
+            h2 ^= MurmurHash3.mixK2(MurmurHash3.getLong(value, offset + 4));
+            h2 = MurmurHash3.mixH2(h1, h2);
+        }
+
+        // Tail: up to 7 remaining characters
+        int remaining = end - offset;
+        if (remaining > 4) {
+            h2 ^= MurmurHash3.mixK2(MurmurHash3.getPartialLong(value, offset + 4, remaining - 4));
+        }
+        if (remaining > 0) {
+            h1 ^= MurmurHash3.mixK1(MurmurHash3.getPartialLong(value, offset, Math.min(remaining, 4)));
+        }
+
+        // Finalization, the length is counted in bytes
+        long length = 2L * (end - start);
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = MurmurHash3.fmix64(h1);
+        h2 = MurmurHash3.fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        return probe(h1, h2, k, bits, set);
+    }
+
+    /**
+     * Sets or tests the k bits derived from a MurmurHash3 result.
+     *
+     * @return when testing, true if all bits were set. Always true when setting.
+     */
+    static boolean probe(long h1, long h2, int k, BitStore bits, boolean set) {
+        long bitSetSize = bits.size();
+        long combined = h1;
+        for (int i = 0; i < k; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitSetSize;
+            if (set) {
+                bits.set(index, true);
+            } else if (!bits.get(index)) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+}
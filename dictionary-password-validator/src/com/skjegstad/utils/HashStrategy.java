@@ -0,0 +1,54 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.skjegstad.utils;
+
+import java.io.Serializable;
+
+/**
+ * Maps a value onto the k bit positions of a Bloom filter.
+ * <br /><br />
+ * A strategy is stored together with the filter data, so the same strategy
+ * must be used to query a filter as was used to populate it. Implementations
+ * must be stateless and safe to share between threads.
+ *
+ * @see HashStrategies
+ */
+public interface HashStrategy extends Serializable {
+
+    /**
+     * Sets the k bits representing the characters <code>value[start, end)</code>.
+     *
+     * @param value the characters to hash.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     * @param k number of hash functions.
+     * @param bits the bits of the filter.
+     */
+    void add(CharSequence value, int start, int end, int k, BitStore bits);
+
+    /**
+     * Checks whether all k bits representing the characters <code>value[start, end)</code>
+     * are set.
+     *
+     * @param value the characters to hash.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     * @param k number of hash functions.
+     * @param bits the bits of the filter.
+     * @return true if every bit is set.
+     */
+    boolean contains(CharSequence value, int start, int end, int k, BitStore bits);
+}
@@ -0,0 +1,177 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.skjegstad.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A BitStore kept off-heap in a memory-mapped file. The bits don't count
+ * against the Java heap, the store can hold more than Integer.MAX_VALUE bits,
+ * and every JVM on a host that maps the same file shares one copy of it
+ * through the operating system's page cache.
+ * <br /><br />
+ * The words are stored as big-endian longs starting at a given offset in the
+ * file, which is the layout used by {@link BloomFilterSnapshot}. Files larger
+ * than a single mapping allows are mapped in segments of 1 GB.
+ * <br /><br />
+ * Like java.util.BitSet, a writable store must not be modified by several
+ * threads (or processes) at once.
+ */
+public class MappedBitStore implements BitStore {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT; // bytes, a multiple of 8
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+    private final long wordCount;   // words present in the file
+    private final boolean readOnly;
+
+    private MappedBitStore(MappedByteBuffer[] segments, long size, long wordCount, boolean readOnly) {
+        this.segments = segments;
+        this.size = size;
+        this.wordCount = wordCount;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Creates a file holding an empty, writable store. An existing file is
+     * overwritten.
+     *
+     * @param file the file to create.
+     * @param size number of bits.
+     * @return the store.
+     * @throws IOException if the file can't be created or mapped.
+     */
+    public static MappedBitStore create(File file, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(8 * words(size));
+        } finally {
+            raf.close();
+        }
+        return open(file, 0, size, words(size), false);
+    }
+
+    /**
+     * Maps a store which is part of an existing file.
+     *
+     * @param file the file holding the store.
+     * @param offset position of the first word in the file.
+     * @param size number of bits.
+     * @param wordCount number of words present in the file. May be less than
+     * (size + 63) / 64 for read-only stores, the missing words read as zero.
+     * @param readOnly if true, the file is mapped read-only and set() fails.
+     * @return the store.
+     * @throws IOException if the file can't be mapped or is too short.
+     */
+    public static MappedBitStore open(File file, long offset, long size, long wordCount, boolean readOnly) throws IOException {
+        if (size < 0 || wordCount < 0 || wordCount > words(size) || (!readOnly && wordCount != words(size))) {
+            throw new IllegalArgumentException("Invalid size " + size + " for " + wordCount + " words");
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = 8 * wordCount;
+            if (channel.size() < offset + length) {
+                throw new IOException(file + " is too short for " + wordCount + " words at offset " + offset);
+            }
+
+            FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(mode, offset + start, Math.min(SEGMENT_SIZE, length - start));
+            }
+            return new MappedBitStore(segments, size, wordCount, readOnly);
+        } finally {
+            raf.close(); // the mappings stay valid
+        }
+    }
+
+    private static long words(long size) {
+        return (size + 63) / 64;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean get(long index) {
+        return (getWord(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public void set(long index, boolean value) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Store is read-only");
+        }
+        long byteIndex = (index >>> 6) << 3;
+        MappedByteBuffer segment = segments[(int) (byteIndex >>> SEGMENT_SHIFT)];
+        int position = (int) (byteIndex & SEGMENT_MASK);
+        long word = segment.getLong(position);
+        segment.putLong(position, value ? word | (1L << index) : word & ~(1L << index));
+    }
+
+    public void clear() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Store is read-only");
+        }
+        for (MappedByteBuffer segment : segments) {
+            for (int position = 0; position < segment.capacity(); position += 8) {
+                segment.putLong(position, 0L);
+            }
+        }
+    }
+
+    public long wordCount() {
+        return words(size);
+    }
+
+    public long getWord(long wordIndex) {
+        if (wordIndex >= wordCount) {
+            return 0;
+        }
+        long byteIndex = wordIndex << 3;
+        return segments[(int) (byteIndex >>> SEGMENT_SHIFT)].getLong((int) (byteIndex & SEGMENT_MASK));
+    }
+
+    /**
+     * Returns true if the store can't be modified.
+     *
+     * @return true if the file was mapped read-only.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Writes changes through to the file.
+     */
+    public void flush() {
+        if (!readOnly) {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        }
+    }
+}
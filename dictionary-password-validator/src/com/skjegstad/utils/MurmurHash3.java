@@ -0,0 +1,194 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.skjegstad.utils;
+
+/**
+ * Building blocks of the 128-bit x64 variant of Austin Appleby's MurmurHash3,
+ * as described here: http://code.google.com/p/smhasher/wiki/MurmurHash3
+ * <br /><br />
+ * Characters are consumed as 16-bit little-endian units, so hashing a
+ * CharSequence gives the same result as hashing its UTF-16LE encoding
+ * without having to encode it first. A block is 8 characters (16 bytes).
+ * <br /><br />
+ * An instance is an incremental hasher: characters are appended one at a
+ * time and the hash of everything appended so far can be read at any point
+ * in constant time, which makes it cheap to hash every prefix of a string.
+ * It produces the same h1/h2 as {@link HashStrategies#MURMUR3_128}, so the
+ * result can be passed to {@link BloomFilter#containsHash(long, long)}.
+ * Instances are not thread-safe but allocate nothing and can be reused.
+ */
+public final class MurmurHash3 {
+
+    static final long C1 = 0x87c37b91114253d5L;
+    static final long C2 = 0x4cf5ad432745937fL;
+
+    private long h1;
+    private long h2;
+    private long tailK1; // characters 0-3 of the current, incomplete block
+    private long tailK2; // characters 4-7 of the current, incomplete block
+    private int tailLength;
+    private int length;
+    private long hash1;
+    private long hash2;
+
+    /**
+     * Creates an empty hasher.
+     */
+    public MurmurHash3() {
+        reset();
+    }
+
+    /**
+     * Discards all appended characters.
+     */
+    public void reset() {
+        h1 = 0;
+        h2 = 0;
+        tailK1 = 0;
+        tailK2 = 0;
+        tailLength = 0;
+        length = 0;
+    }
+
+    /**
+     * Appends a character.
+     *
+     * @param c the character to append.
+     */
+    public void put(char c) {
+        if (tailLength < 4) {
+            tailK1 |= (long) c << (16 * tailLength);
+        } else {
+            tailK2 |= (long) c << (16 * (tailLength - 4));
+        }
+        length++;
+        if (++tailLength == 8) {
+            h1 ^= mixK1(tailK1);
+            h1 = mixH1(h1, h2);
+            h2 ^= mixK2(tailK2);
+            h2 = mixH2(h1, h2);
+            tailK1 = 0;
+            tailK2 = 0;
+            tailLength = 0;
+        }
+    }
+
+    /**
+     * Computes the hash of all characters appended since the last reset.
+     * Read the result with {@link #h1()} and {@link #h2()}. More characters
+     * may be appended afterwards.
+     */
+    public void finish() {
+        long f1 = h1;
+        long f2 = h2;
+        if (tailLength > 4) {
+            f2 ^= mixK2(tailK2);
+        }
+        if (tailLength > 0) {
+            f1 ^= mixK1(tailK1);
+        }
+        long byteLength = 2L * length;
+        f1 ^= byteLength;
+        f2 ^= byteLength;
+        f1 += f2;
+        f2 += f1;
+        f1 = fmix64(f1);
+        f2 = fmix64(f2);
+        f1 += f2;
+        f2 += f1;
+        hash1 = f1;
+        hash2 = f2;
+    }
+
+    /**
+     * @return the lower 64 bits of the hash computed by the last call to finish().
+     */
+    public long h1() {
+        return hash1;
+    }
+
+    /**
+     * @return the upper 64 bits of the hash computed by the last call to finish().
+     */
+    public long h2() {
+        return hash2;
+    }
+
+    /**
+     * Packs four characters starting at <code>offset</code> into a long.
+     *
+     * @param value the characters to read.
+     * @param offset index of the first character.
+     * @return the characters as a little-endian long.
+     */
+    static long getLong(CharSequence value, int offset) {
+        return (long) value.charAt(offset)
+                | (long) value.charAt(offset + 1) << 16
+                | (long) value.charAt(offset + 2) << 32
+                | (long) value.charAt(offset + 3) << 48;
+    }
+
+    /**
+     * Packs up to four characters of a block tail into a long.
+     *
+     * @param value the characters to read.
+     * @param offset index of the first character.
+     * @param length number of characters to read (0 to 4).
+     * @return the characters as a little-endian long.
+     */
+    static long getPartialLong(CharSequence value, int offset, int length) {
+        long k = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            k = (k << 16) | value.charAt(offset + i);
+        }
+        return k;
+    }
+
+    static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    static long mixH1(long h1, long h2) {
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        return h1 * 5 + 0x52dce729;
+    }
+
+    static long mixH2(long h1, long h2) {
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        return h2 * 5 + 0x38495ab5;
+    }
+
+    static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,392 @@
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.skjegstad.utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A Bloom filter that grows instead of degrading, as described in
+ * "Scalable Bloom Filters" (Almeida, Baquero, Preguica and Hutchison, 2007).
+ * <br /><br />
+ * Elements go into a chain of {@link BloomFilter}s. Once the newest one has
+ * received as many elements as it was sized for, a new one is started, with
+ * growthFactor times the capacity and tighteningRatio times the error rate
+ * of the previous one. The error rates form a geometric series, so however
+ * many elements are added, the false-positive probability of the whole
+ * chain stays below the one it was created with. The first filter is sized
+ * for falsePositiveProbability * (1 - tighteningRatio), which costs a few
+ * bits per element more than a single filter of the right size would.
+ * <br /><br />
+ * Elements are hashed once, with {@link MurmurHash3}, and every filter of
+ * the chain is probed with the same hash. A lookup costs k probes per
+ * filter, and the number of filters only grows with the logarithm of the
+ * number of elements.
+ * <br /><br />
+ * A filter created as concurrent chains {@link ConcurrentBloomFilter}s: any
+ * number of threads may then add and look up elements at the same time.
+ * Adds only take a lock when a new filter has to be started. Other filters
+ * are not thread-safe, like {@link BloomFilter}.
+ *
+ * @param <E> Object type that is to be inserted into the Bloom filter, e.g. String or Integer.
+ */
+public class ScalableBloomFilter<E> {
+
+    /** Capacity of each filter relative to the previous one, by default. */
+    public static final int DEFAULT_GROWTH_FACTOR = 2;
+    /** Error rate of each filter relative to the previous one, by default. */
+    public static final double DEFAULT_TIGHTENING_RATIO = 0.8;
+
+    private static final ThreadLocal<MurmurHash3> hashers = new ThreadLocal<MurmurHash3>() {
+        @Override
+        protected MurmurHash3 initialValue() { // One hasher per thread, so no locking is needed
+            return new MurmurHash3();
+        }
+    };
+
+    private final double falsePositiveProbability;
+    private final int growthFactor;
+    private final double tighteningRatio;
+    private final boolean concurrent;
+    private volatile Stage[] stages; // replaced, never modified, when a filter is started
+
+    /**
+     * Constructs a filter with the default growth factor and tightening ratio.
+     *
+     * @param initialCapacity number of elements the first filter is sized for.
+     * @param falsePositiveProbability the bound on the false-positive probability.
+     * @param concurrent whether elements may be added from several threads at once.
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveProbability, boolean concurrent) {
+        this(initialCapacity, falsePositiveProbability, DEFAULT_GROWTH_FACTOR, DEFAULT_TIGHTENING_RATIO, concurrent);
+    }
+
+    /**
+     * Constructs a filter.
+     *
+     * @param initialCapacity number of elements the first filter is sized for.
+     * @param falsePositiveProbability the bound on the false-positive probability.
+     * @param growthFactor capacity of each filter relative to the previous one, at least 1.
+     * @param tighteningRatio error rate of each filter relative to the previous one, between 0 and 1.
+     * @param concurrent whether elements may be added from several threads at once.
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveProbability, int growthFactor,
+                               double tighteningRatio, boolean concurrent) {
+        if (initialCapacity < 1 || !(falsePositiveProbability > 0 && falsePositiveProbability < 1)
+                || growthFactor < 1 || !(tighteningRatio > 0 && tighteningRatio < 1)) {
+            throw new IllegalArgumentException("Invalid parameters");
+        }
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.growthFactor = growthFactor;
+        this.tighteningRatio = tighteningRatio;
+        this.concurrent = concurrent;
+        this.stages = new Stage[] {newStage(initialCapacity, falsePositiveProbability * (1 - tighteningRatio))};
+    }
+
+    /**
+     * A filter of the chain, with the error rate it was sized for
+     */
+    private static final class Stage {
+
+        final BloomFilter<?> filter;
+        final double falsePositiveProbability;
+
+        Stage(BloomFilter<?> filter, double falsePositiveProbability) {
+            this.filter = filter;
+            this.falsePositiveProbability = falsePositiveProbability;
+        }
+    }
+
+    private Stage newStage(int capacity, double probability) {
+        // k = ceil(-log_2(p)), c = k / ln(2), as BloomFilter(double, int) does
+        int k = (int) Math.ceil(-(Math.log(probability) / Math.log(2)));
+        long bitSetSize = (long) Math.ceil(k / Math.log(2) * capacity);
+        BloomFilter<?> filter;
+        if (concurrent) {
+            filter = new ConcurrentBloomFilter<E>(bitSetSize, capacity, HashStrategies.MURMUR3_128);
+        } else {
+            if (bitSetSize > Integer.MAX_VALUE) {
+                throw new IllegalStateException("The next filter would hold " + bitSetSize + " bits");
+            }
+            filter = new BloomFilter<E>(new BitSetStore((int) bitSetSize), capacity, HashStrategies.MURMUR3_128);
+        }
+        return new Stage(filter, probability);
+    }
+
+    /**
+     * Adds an object to the filter. The output from the object's toString()
+     * method is used as input to the hash functions.
+     *
+     * @param element is an element to register in the filter.
+     */
+    public void add(E element) {
+        String valString = element.toString();
+        add(valString, 0, valString.length());
+    }
+
+    /**
+     * Adds a range of characters to the filter, as if the String
+     * <code>chars.subSequence(start, end).toString()</code> had been added.
+     *
+     * @param chars the characters to read.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     */
+    public void add(CharSequence chars, int start, int end) {
+        MurmurHash3 hasher = hash(chars, start, end);
+        addHash(hasher.h1(), hasher.h2());
+    }
+
+    /**
+     * Adds the element with the given MurmurHash3 hash, starting a new
+     * filter first if the newest one is full.
+     *
+     * @param h1 the lower 64 bits of the element's hash.
+     * @param h2 the upper 64 bits of the element's hash.
+     */
+    public void addHash(long h1, long h2) {
+        Stage[] current = stages;
+        BloomFilter<?> newest = current[current.length - 1].filter;
+        if (newest.count() >= newest.getExpectedNumberOfElements()) {
+            newest = grow(current);
+        }
+        newest.addHash(h1, h2);
+    }
+
+    /**
+     * Starts a new filter, unless another thread already has
+     *
+     * @param seen the chain the caller found full.
+     * @return the newest filter.
+     */
+    private synchronized BloomFilter<?> grow(Stage[] seen) {
+        Stage[] current = stages;
+        if (current == seen) {
+            Stage last = current[current.length - 1];
+            long capacity = (long) last.filter.getExpectedNumberOfElements() * growthFactor;
+            Stage next = newStage((int) Math.min(capacity, Integer.MAX_VALUE), last.falsePositiveProbability * tighteningRatio);
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = next;
+            stages = current;
+        }
+        return current[current.length - 1].filter;
+    }
+
+    /**
+     * Adds many character sequences at once. A concurrent filter adds them
+     * in parallel on the fork-join pool; other filters add them one by one.
+     *
+     * @param batches the sequences to add; each array is added by a single task.
+     * @param pool the pool to run on.
+     */
+    public void addAllParallel(List<? extends CharSequence[]> batches, ForkJoinPool pool) {
+        if (!concurrent || pool.getParallelism() == 1) {
+            for (CharSequence[] batch : batches) {
+                for (CharSequence chars : batch) {
+                    add(chars, 0, chars.length());
+                }
+            }
+            return;
+        }
+        pool.invoke(new AddTask(this, batches, 0, batches.size()));
+    }
+
+    /**
+     * Adds a range of batches, splitting the range until a single batch is left.
+     */
+    private static final class AddTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final ScalableBloomFilter<?> filter;
+        private final List<? extends CharSequence[]> batches;
+        private final int from;
+        private final int to;
+
+        AddTask(ScalableBloomFilter<?> filter, List<? extends CharSequence[]> batches, int from, int to) {
+            this.filter = filter;
+            this.batches = batches;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new AddTask(filter, batches, from, middle), new AddTask(filter, batches, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                for (CharSequence chars : batches.get(i)) {
+                    filter.add(chars, 0, chars.length());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the element could have been added to the filter.
+     *
+     * @param element element to check.
+     * @return true if the element could have been added.
+     */
+    public boolean contains(E element) {
+        String valString = element.toString();
+        return contains(valString, 0, valString.length());
+    }
+
+    /**
+     * Returns true if the characters could have been added to the filter.
+     *
+     * @param chars the characters to read.
+     * @param start index of the first character (inclusive).
+     * @param end index of the last character (exclusive).
+     * @return true if the element could have been added.
+     */
+    public boolean contains(CharSequence chars, int start, int end) {
+        MurmurHash3 hasher = hash(chars, start, end);
+        return containsHash(hasher.h1(), hasher.h2());
+    }
+
+    /**
+     * Returns true if the element with the given MurmurHash3 hash could have
+     * been added to the filter. Every filter of the chain is probed, the
+     * oldest first.
+     *
+     * @param h1 the lower 64 bits of the element's hash.
+     * @param h2 the upper 64 bits of the element's hash.
+     * @return true if the element could have been added.
+     */
+    public boolean containsHash(long h1, long h2) {
+        for (Stage stage : stages) {
+            if (stage.filter.containsHash(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MurmurHash3 hash(CharSequence chars, int start, int end) {
+        MurmurHash3 hasher = hashers.get();
+        hasher.reset();
+        for (int i = start; i < end; i++) {
+            hasher.put(chars.charAt(i));
+        }
+        hasher.finish();
+        return hasher;
+    }
+
+    /**
+     * Get the current probability of a false positive: the probability that
+     * any filter of the chain gives one, given the number of elements each
+     * has received so far.
+     *
+     * @return probability of false positives.
+     */
+    public double getFalsePositiveProbability() {
+        double none = 1;
+        for (Stage stage : stages) {
+            none *= 1 - stage.filter.getFalsePositiveProbability();
+        }
+        return 1 - none;
+    }
+
+    /**
+     * Returns the bound on the false-positive probability, which holds
+     * however many elements are added.
+     *
+     * @return the false-positive probability the filter was created with.
+     */
+    public double getFalsePositiveProbabilityBound() {
+        return falsePositiveProbability;
+    }
+
+    /**
+     * Returns the number of elements added to the filter.
+     *
+     * @return number of elements added.
+     */
+    public long count() {
+        long count = 0;
+        for (Stage stage : stages) {
+            count += stage.filter.count();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of elements the filter can take before it has to
+     * start a new filter.
+     *
+     * @return the combined capacity of the filters.
+     */
+    public long capacity() {
+        long capacity = 0;
+        for (Stage stage : stages) {
+            capacity += stage.filter.getExpectedNumberOfElements();
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the number of filters in the chain.
+     *
+     * @return number of filters, at least 1.
+     */
+    public int filterCount() {
+        return stages.length;
+    }
+
+    /**
+     * Returns the number of bits of all filters.
+     *
+     * @return the size of the filter in bits.
+     */
+    public long bitSize() {
+        long bitSize = 0;
+        for (Stage stage : stages) {
+            bitSize += stage.filter.bitSize();
+        }
+        return bitSize;
+    }
+
+    /**
+     * Returns the number of bits set in all filters. Divided by bitSize(),
+     * this is the fill ratio of the chain. Reads all filters.
+     *
+     * @return the number of bits set.
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for (Stage stage : stages) {
+            cardinality += stage.filter.cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns true if elements may be added from several threads at once.
+     *
+     * @return true if the filter chains ConcurrentBloomFilters.
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+}
@@ -0,0 +1,51 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Runs in its own JVM, so the singleton can be configured with the
+ * Aho-Corasick backend.
+ *
+ * @author jlucier
+ */
+public class AhoCorasickValidatorTest {
+
+    private static DictionaryPasswordValidator pDV;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        DictionaryPasswordValidator.configure(17f, 4, DictionaryBackend.AHO_CORASICK);
+        pDV = DictionaryPasswordValidator.getInstance();
+    }
+
+    @Test
+    public void lookupDictionaryWord() {
+        assertTrue(pDV.isDictionaryWord("word"));
+        assertTrue(pDV.isDictionaryWord("Sunshine"));
+        assertFalse(pDV.isDictionaryWord("sunshin"));
+        assertFalse(pDV.isDictionaryWord("dog"));
+    }
+
+    @Test
+    public void testInvalidDictionaryPassword() {
+        assertTrue(pDV.isPasswordDictionaryBased("Pa8!ss9wo4rd2"));
+        assertTrue(pDV.isPasswordDictionaryBased("Horse!23"));
+    }
+
+    @Test
+    public void testValidDictionaryPassword() {
+        assertFalse(pDV.isPasswordDictionaryBased("tstweb@234ya!"));
+        assertFalse(pDV.isPasswordDictionaryBased("Zq9!xJ-Zq8@xJ-Zq7#xJ"));
+    }
+
+    @Test
+    public void testLongestDictionaryWord() {
+        assertEquals("password", pDV.findLongestDictionaryWord("x1Pa8!ss9wo4rd2zz"));
+        assertEquals("sunshine", pDV.findLongestDictionaryWord("monk#Sunshine"));
+        assertNull(pDV.findLongestDictionaryWord("tstweb@234ya!"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checking ASCII passwords and words allocates nothing once the validator's
+ * per-thread buffers are warm.
+ *
+ * @author jlucier
+ */
+public class AllocationTest {
+
+    private static final String[] PASSWORDS = {
+        "Pa8!ss9wo4rd2", "Zq9!xJ", "1Sunshine!", "", "x7$Kq2!v", "correcthorsebatterystaple",
+        "P@ssw0rd", "!11ic!t|1!", "Tr0ub4dor&3", "qwerty123456", "zzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzz"
+    };
+    private static final int WARMUP_CALLS = 20000;
+    private static final int MEASURED_CALLS = 10000;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    @BeforeClass
+    public static void setUpClass() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private static long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static int check(DictionaryPasswordValidator validator, int calls) {
+        int hits = 0;
+        for (int i = 0; i < calls; i++) {
+            String password = PASSWORDS[i % PASSWORDS.length];
+            if (validator.isPasswordDictionaryBased(password)) {
+                hits++;
+            }
+            if (validator.isDictionaryWord(password)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static void assertNoAllocations(DictionaryPasswordValidator validator) {
+
+        check(validator, WARMUP_CALLS);
+
+        long before = allocatedBytes();
+        int hits = check(validator, MEASURED_CALLS);
+        long allocated = allocatedBytes() - before;
+
+        assertTrue(hits > 0);
+        // Allow for the measurement itself, but not for a single byte per call
+        assertTrue(validator.getBackend() + " allocated " + allocated + " bytes", allocated < MEASURED_CALLS);
+    }
+
+    @Test
+    public void filterBackendsDoNotAllocate() throws Exception {
+        assertNoAllocations(DictionaryPasswordValidator.builder().build());
+        assertNoAllocations(DictionaryPasswordValidator.builder().backend(DictionaryBackend.BLOCKED_BLOOM_FILTER).build());
+        assertNoAllocations(DictionaryPasswordValidator.builder().backend(DictionaryBackend.BINARY_FUSE_FILTER).build());
+    }
+
+    @Test
+    public void ahoCorasickDoesNotAllocate() throws Exception {
+        assertNoAllocations(DictionaryPasswordValidator.builder().backend(DictionaryBackend.AHO_CORASICK).build());
+    }
+
+    @Test
+    public void substitutionsDoNotAllocate() throws Exception {
+        assertNoAllocations(DictionaryPasswordValidator.builder().substitutionVariants(16).build());
+    }
+}
@@ -0,0 +1,77 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checking many passwords at once.
+ *
+ * @author jlucier
+ */
+public class BatchValidationTest {
+
+    private static List<String> passwords;
+
+    @BeforeClass
+    public static void setUpClass() {
+
+        // Enough passwords for several batches, mixing hits and misses
+        String[] samples = {"Pa8!ss9wo4rd2", "Zq9!xJ", "1Sunshine!", "", "x7$Kq2!v", "correcthorsebatterystaple"};
+        Random random = new Random(42);
+        passwords = new ArrayList<String>();
+        for (int i = 0; i < 2000; i++) {
+            if (i % 3 == 0) {
+                passwords.add(samples[random.nextInt(samples.length)]);
+            } else {
+                char[] chars = new char[4 + random.nextInt(20)];
+                for (int c = 0; c < chars.length; c++) {
+                    chars[c] = (char) ('!' + random.nextInt('~' - '!'));
+                }
+                passwords.add(new String(chars));
+            }
+        }
+    }
+
+    private static void assertMatchesSingleChecks(DictionaryPasswordValidator validator, BitSet results) {
+        for (int i = 0; i < passwords.size(); i++) {
+            assertEquals(passwords.get(i), validator.isPasswordDictionaryBased(passwords.get(i)), results.get(i));
+        }
+    }
+
+    @Test
+    public void bloomFilterBatchMatchesSingleChecks() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().build();
+
+        assertMatchesSingleChecks(validator, validator.arePasswordsDictionaryBased(passwords));
+        assertMatchesSingleChecks(validator, validator.arePasswordsDictionaryBased(passwords, true));
+    }
+
+    @Test
+    public void ahoCorasickBatchMatchesSingleChecks() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(DictionaryBackend.AHO_CORASICK).build();
+
+        assertMatchesSingleChecks(validator, validator.arePasswordsDictionaryBased(passwords));
+        assertMatchesSingleChecks(validator, validator.arePasswordsDictionaryBased(passwords, true));
+    }
+
+    @Test
+    public void resultsFollowIterationOrder() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(DictionaryBackend.AHO_CORASICK).build();
+
+        BitSet results = validator.arePasswordsDictionaryBased(Arrays.asList("Zq9!xJ", "1Sunshine!", "", "Pa8!ss9wo4rd2"));
+        assertEquals("{1, 3}", results.toString());
+        assertTrue(validator.arePasswordsDictionaryBased(Collections.<String>emptyList()).isEmpty());
+    }
+}
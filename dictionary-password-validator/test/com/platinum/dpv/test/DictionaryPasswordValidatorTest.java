@@ -82,6 +82,51 @@ public class DictionaryPasswordValidatorTest {
     }
 
 
+    @Test
+    public void testWholePasswordIsDictionaryWord() {
+
+        try {
+            DictionaryPasswordValidator pDV = DictionaryPasswordValidator.getInstance();
+            assertTrue(pDV.isPasswordDictionaryBased("Horse!23"));
+
+        } catch (DictionaryPasswordFileException ex) {
+            assertTrue(false);
+            Logger.getLogger(DictionaryPasswordValidatorTest.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+    }
+
+    @Test
+    public void testLongPassphrase() {
+
+        try {
+            DictionaryPasswordValidator pDV = DictionaryPasswordValidator.getInstance();
+            String passphrase = "Zq9!xJ-Zq8@xJ-Zq7#xJ-Zq6$xJ-Zq5%xJ-Zq4^xJ-Zq3&xJ-Zq2*xJ-Zq1(xJ-Zq0)xJ";
+            assertFalse(pDV.isPasswordDictionaryBased(passphrase));
+            assertTrue(pDV.isPasswordDictionaryBased(passphrase + "-staple"));
+
+        } catch (DictionaryPasswordFileException ex) {
+            assertTrue(false);
+            Logger.getLogger(DictionaryPasswordValidatorTest.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+    }
+
+    @Test
+    public void testLongestDictionaryWord() {
+
+        try {
+            DictionaryPasswordValidator pDV = DictionaryPasswordValidator.getInstance();
+            assertEquals("password", pDV.findLongestDictionaryWord("x1Pa8!ss9wo4rd2zz"));
+            assertNull(pDV.findLongestDictionaryWord("tstweb@234ya!"));
+
+        } catch (DictionaryPasswordFileException ex) {
+            assertTrue(false);
+            Logger.getLogger(DictionaryPasswordValidatorTest.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+    }
+
     @Test
     public void testValidDictionaryPassword() {
 
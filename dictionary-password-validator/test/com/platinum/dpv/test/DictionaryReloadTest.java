@@ -0,0 +1,135 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryCompiler;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Reloading a validator's dictionary while it is in use.
+ *
+ * @author jlucier
+ */
+public class DictionaryReloadTest {
+
+    private File directory;
+    private File dictionaryFile;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("dictionaries", "");
+        directory.delete();
+        directory.mkdir();
+        dictionaryFile = new File(directory, "tenant.dic");
+        writeDictionary("zebra", "quokka");
+    }
+
+    @After
+    public void tearDown() {
+        dictionaryFile.delete();
+        directory.delete();
+    }
+
+    private void writeDictionary(String... words) throws Exception {
+        Writer writer = new FileWriter(dictionaryFile);
+        try {
+            writer.write(words.length + "\n");
+            for (String word : words) {
+                writer.write(word + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private DictionaryPasswordValidator build() throws Exception {
+        return DictionaryPasswordValidator.builder()
+                .dictionary(dictionaryFile).backend(DictionaryBackend.AHO_CORASICK).build();
+    }
+
+    @Test
+    public void reloadSwapsDictionary() throws Exception {
+
+        DictionaryPasswordValidator validator = build();
+        assertTrue(validator.isPasswordDictionaryBased("1zebra!"));
+        assertFalse(validator.isPasswordDictionaryBased("1wombat!"));
+
+        writeDictionary("wombat");
+        validator.reload();
+
+        assertTrue(validator.isPasswordDictionaryBased("1wombat!"));
+        assertFalse(validator.isPasswordDictionaryBased("1zebra!"));
+    }
+
+    @Test
+    public void failedReloadKeepsDictionary() throws Exception {
+
+        DictionaryPasswordValidator validator = build();
+        dictionaryFile.delete();
+        try {
+            validator.reload();
+            fail("reload() should fail without a dictionary file");
+        } catch (Exception ex) {
+            // Expected
+        }
+        assertTrue(validator.isPasswordDictionaryBased("1zebra!"));
+    }
+
+    @Test
+    public void watcherReloadsChangedFile() throws Exception {
+
+        DictionaryPasswordValidator validator = build();
+        Closeable watcher = validator.watchDictionary();
+        try {
+            writeDictionary("zebra", "quokka", "wombat");
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (!validator.isPasswordDictionaryBased("1wombat!") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(validator.isPasswordDictionaryBased("1wombat!"));
+            assertTrue(validator.isPasswordDictionaryBased("1zebra!"));
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void recompilingASnapshotKeepsLoadedValidatorsWorking() throws Exception {
+
+        // A large dictionary, so its snapshot is longer than the next one
+        String[] words = new String[5000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "zebra" + Integer.toString(i, 26).replace('0', 'q').replace('1', 'x');
+        }
+        words[0] = "quokka";
+        writeDictionary(words);
+
+        File snapshot = new File(directory, "tenant.bloom");
+        try {
+            DictionaryCompiler.main(new String[] {snapshot.getPath(), "17", "4", dictionaryFile.getPath()});
+            DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder()
+                    .dictionary(dictionaryFile).snapshot(snapshot).build();
+            assertEquals(snapshot.getPath(), validator.findDictionaryWords("1quokka!").get(0).getSource());
+
+            writeDictionary("wombat");
+            DictionaryCompiler.main(new String[] {snapshot.getPath(), "17", "4", dictionaryFile.getPath()});
+
+            // Still reading the snapshot it loaded
+            assertTrue(validator.isPasswordDictionaryBased("1quokka!"));
+            assertFalse(validator.isPasswordDictionaryBased("1wombat!"));
+            validator.reload();
+            assertTrue(validator.isPasswordDictionaryBased("1wombat!"));
+            assertFalse(validator.isPasswordDictionaryBased("1quokka!"));
+        } finally {
+            snapshot.delete();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import com.platinum.dpv.DictionarySource;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Dictionaries combining several word lists.
+ *
+ * @author jlucier
+ */
+public class DictionarySourceTest {
+
+    private File directory;
+    private File german;
+    private File products;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("dictionaries", "");
+        directory.delete();
+        directory.mkdir();
+        german = writeDictionary("de_DE.dic", "Schmetterling", "Zwiebel");
+        products = writeDictionary("products.dic", "Quokkasoft", "Zebranet");
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private File writeDictionary(String name, String... words) throws Exception {
+        File file = new File(directory, name);
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(words.length + "\n");
+            for (String word : words) {
+                writer.write(word + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void oneLookupCoversAllWordLists() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder()
+                .source(DictionarySource.directory(directory))
+                .source(DictionarySource.classpath("dictionaries/en_US.dic"))
+                .build();
+
+        assertTrue(validator.isPasswordDictionaryBased("1Zwiebel!"));
+        assertTrue(validator.isPasswordDictionaryBased("zebranet2024"));
+        assertTrue(validator.isPasswordDictionaryBased("Pa8!ss9wo4rd2"));
+        assertTrue(validator.isDictionaryWord("schmetterling"));
+    }
+
+    @Test
+    public void hitsAreAttributedToWordLists() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder()
+                .source(DictionarySource.directory(directory))
+                .source(DictionarySource.classpath("dictionaries/en_US.dic"))
+                .backend(DictionaryBackend.AHO_CORASICK)
+                .attributeSources(true)
+                .build();
+
+        assertEquals(Arrays.asList(german.getPath()), validator.findDictionarySources("1Zwiebel!"));
+        assertEquals(Arrays.asList(products.getPath(), "dictionaries/en_US.dic"),
+                validator.findDictionarySources("Zebranet-password"));
+        assertEquals(Collections.<String>emptyList(), validator.findDictionarySources("Zq9!xJ"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void attributionMustBeEnabled() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder()
+                .dictionary(german).dictionary(products).backend(DictionaryBackend.AHO_CORASICK).build();
+        validator.findDictionarySources("1Zwiebel!");
+    }
+
+    @Test
+    public void reloadRescansDirectories() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder()
+                .source(DictionarySource.directory(directory)).backend(DictionaryBackend.AHO_CORASICK).build();
+        assertFalse(validator.isPasswordDictionaryBased("1Caballo!"));
+
+        writeDictionary("es_ES.dic", "Caballo");
+        validator.reload();
+
+        assertTrue(validator.isPasswordDictionaryBased("1Caballo!"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryMatch;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import com.platinum.dpv.DictionarySource;
+import com.platinum.dpv.ScanOrder;
+import java.io.File;
+import java.util.List;
+import org.junit.Test;
+import static com.platinum.dpv.test.TestDictionaries.writeDictionary;
+import static org.junit.Assert.*;
+
+/**
+ * Reporting which words a password contains, and where.
+ *
+ * @author jlucier
+ */
+public class FindDictionaryWordsTest {
+
+    @Test
+    public void wordsAreReportedAtTheirPositions() throws Exception {
+
+        File dictionary = writeDictionary("pass", "word", "password", "sun");
+        for (DictionaryBackend backend : new DictionaryBackend[] {DictionaryBackend.AHO_CORASICK, DictionaryBackend.BINARY_FUSE_FILTER}) {
+            DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(backend).dictionary(dictionary).build();
+
+            List<DictionaryMatch> matches = validator.findDictionaryWords("My-Pass.Word1sun");
+            assertEquals(backend + " " + matches, 3, matches.size());
+            assertEquals("pass", matches.get(0).getWord());
+            assertEquals(3, matches.get(0).getOffset());
+            assertEquals(4, matches.get(0).getLength());
+            assertEquals("password", matches.get(1).getWord());
+            assertEquals(3, matches.get(1).getOffset());
+            assertEquals(9, matches.get(1).getLength());
+            assertEquals("word", matches.get(2).getWord());
+            assertEquals(8, matches.get(2).getOffset());
+            assertEquals(DictionarySource.file(dictionary).getName(), matches.get(2).getSource());
+
+            assertTrue(validator.findDictionaryWords("Zq9!xJ").isEmpty());
+        }
+    }
+
+    @Test
+    public void stopAtFirstReturnsTheWordTheCheckFinds() throws Exception {
+
+        File dictionary = writeDictionary("pass", "word", "password");
+        DictionaryPasswordValidator shortestFirst = DictionaryPasswordValidator.builder().backend(DictionaryBackend.BINARY_FUSE_FILTER)
+                .dictionary(dictionary).build();
+        DictionaryPasswordValidator longestFirst = DictionaryPasswordValidator.builder().backend(DictionaryBackend.BINARY_FUSE_FILTER)
+                .dictionary(dictionary).scanOrder(ScanOrder.LONGEST_FIRST).build();
+        DictionaryPasswordValidator ahoCorasick = DictionaryPasswordValidator.builder().backend(DictionaryBackend.AHO_CORASICK)
+                .dictionary(dictionary).build();
+
+        List<DictionaryMatch> matches = shortestFirst.findDictionaryWords("1Password!", true);
+        assertEquals(1, matches.size());
+        assertEquals("pass", matches.get(0).getWord());
+        assertEquals(1, matches.get(0).getOffset());
+        assertEquals("password", longestFirst.findDictionaryWords("1Password!", true).get(0).getWord());
+        assertEquals("pass", ahoCorasick.findDictionaryWords("1Password!", true).get(0).getWord());
+        assertTrue(shortestFirst.findDictionaryWords("Zq9!xJ", true).isEmpty());
+    }
+
+    @Test
+    public void wordsAreAttributedAndSubstitutionsUndone() throws Exception {
+
+        File passwords = writeDictionary("password");
+        File weather = writeDictionary("sunshine");
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().dictionary(passwords).dictionary(weather)
+                .attributeSources(true).substitutionVariants(4).build();
+
+        List<DictionaryMatch> matches = validator.findDictionaryWords("5unsh1neP@ssw0rd");
+        assertEquals(matches.toString(), 2, matches.size());
+        assertEquals("sunshine", matches.get(0).getWord());
+        assertEquals(DictionarySource.file(weather).getName(), matches.get(0).getSource());
+        assertEquals("password", matches.get(1).getWord());
+        assertEquals(8, matches.get(1).getOffset());
+        assertEquals(8, matches.get(1).getLength());
+        assertEquals(DictionarySource.file(passwords).getName(), matches.get(1).getSource());
+
+        DictionaryPasswordValidator unattributed = DictionaryPasswordValidator.builder().dictionary(passwords).dictionary(weather).build();
+        assertNull(unattributed.findDictionaryWords("sunshine").get(0).getSource());
+    }
+}
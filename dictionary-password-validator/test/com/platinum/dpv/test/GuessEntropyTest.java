@@ -0,0 +1,49 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import java.io.File;
+import org.junit.Test;
+import static com.platinum.dpv.test.TestDictionaries.writeDictionary;
+import static org.junit.Assert.*;
+
+/**
+ * Scoring passwords by the cheapest way to spell them.
+ *
+ * @author jlucier
+ */
+public class GuessEntropyTest {
+
+    private static final double LETTER = Math.log(26) / Math.log(2);
+    private static final double OTHER = Math.log(43) / Math.log(2);
+
+    @Test
+    public void lettersAreSplitIntoWordsTheCheapestWay() throws Exception {
+
+        // 8 words: 3 bits each
+        File dictionary = writeDictionary("correct", "horse", "battery", "staple", "pass", "word", "password", "ssword");
+        for (DictionaryBackend backend : new DictionaryBackend[] {DictionaryBackend.AHO_CORASICK, DictionaryBackend.BINARY_FUSE_FILTER}) {
+            DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(backend).dictionary(dictionary).build();
+
+            assertEquals(backend.toString(), 12, validator.estimateGuessEntropy("correcthorsebatterystaple"), 1e-9);
+            assertEquals(backend.toString(), 3, validator.estimateGuessEntropy("password"), 1e-9);
+            assertEquals(backend.toString(), 3 + 2 * LETTER, validator.estimateGuessEntropy("xpasswordx"), 1e-9);
+            assertEquals(backend.toString(), 3 + 2 * OTHER, validator.estimateGuessEntropy("Password1!"), 1e-9);
+            assertEquals(backend.toString(), 4 * LETTER + 2 * OTHER, validator.estimateGuessEntropy("Zq9!xJ"), 1e-9);
+            assertEquals(backend.toString(), 0, validator.estimateGuessEntropy(""), 1e-9);
+        }
+    }
+
+    @Test
+    public void passphrasesScoreAboveDictionaryWords() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().substitutionVariants(4).build();
+
+        double passphrase = validator.estimateGuessEntropy("correcthorsebatterystaple");
+        assertTrue(validator.isPasswordDictionaryBased("correcthorsebatterystaple"));
+        assertTrue(passphrase > 50);
+        assertTrue(validator.estimateGuessEntropy("password") < 20);
+        assertEquals(validator.estimateGuessEntropy("password"), validator.estimateGuessEntropy("P@ssw0rd"), 1e-9);
+        assertTrue(validator.estimateGuessEntropy("xkqzvbwmjtpl") > 50);
+    }
+}
@@ -0,0 +1,76 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import com.platinum.dpv.ValidatorMetrics;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Lookup counters, latency percentiles and filter statistics.
+ *
+ * @author jlucier
+ */
+public class MetricsTest {
+
+    @Test
+    public void checksAreCounted() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().metrics(true).build();
+
+        assertTrue(validator.isPasswordDictionaryBased("1Sunshine!"));
+        assertFalse(validator.isPasswordDictionaryBased("Zq9!xJ"));
+        validator.arePasswordsDictionaryBased(Arrays.asList("Pa8!ss9wo4rd2", "Zq9!xJ"));
+
+        ValidatorMetrics metrics = validator.getMetrics();
+        assertEquals(4, metrics.getLookups());
+        assertEquals(2, metrics.getHits());
+        assertEquals(0.5, metrics.getHitRate(), 0);
+        assertEquals(1, metrics.getTimedLookups());
+        // zqxj alone is a window of 4 letters
+        assertTrue(metrics.getWindowsProbed() > 1);
+        assertTrue(metrics.getWindowsPerLookup() > 0);
+
+        long median = metrics.getLatencyNanos(50);
+        assertTrue(median > 0);
+        assertTrue(median <= metrics.getLatencyNanos(100));
+    }
+
+    @Test
+    public void filterStatisticsAreReported() throws Exception {
+
+        ValidatorMetrics bloom = DictionaryPasswordValidator.builder().build().getMetrics();
+        assertEquals(DictionaryBackend.BLOOM_FILTER, bloom.getBackend());
+        assertTrue(bloom.getWordCount() > 0);
+        // about half of the bits are set in a filter sized for its words
+        assertEquals(0.5, bloom.getFillRatio(), 0.05);
+        assertTrue(bloom.getFalsePositiveProbability() > 0 && bloom.getFalsePositiveProbability() < 0.001);
+        assertEquals(0, bloom.getLookups());
+
+        ValidatorMetrics exact = DictionaryPasswordValidator.builder().backend(DictionaryBackend.AHO_CORASICK).build().getMetrics();
+        assertTrue(Double.isNaN(exact.getFillRatio()));
+        assertEquals(0, exact.getFalsePositiveProbability(), 0);
+    }
+
+    @Test
+    public void mbeanReportsTheSameCounters() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().metrics(true).build();
+        ObjectName name = validator.registerMBean("metrics-test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            validator.isPasswordDictionaryBased("1Sunshine!");
+
+            assertEquals(1L, server.getAttribute(name, "Lookups"));
+            assertEquals(1.0, server.getAttribute(name, "HitRate"));
+            assertEquals("BLOOM_FILTER", server.getAttribute(name, "Backend"));
+            assertTrue((Long) server.getAttribute(name, "LatencyP99Nanos") > 0);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
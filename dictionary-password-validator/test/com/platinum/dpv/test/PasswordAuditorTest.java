@@ -0,0 +1,110 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryPasswordValidator;
+import com.platinum.dpv.PasswordAuditor;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Auditing a password file from the command line.
+ *
+ * @author jlucier
+ */
+public class PasswordAuditorTest {
+
+    private static File tempFile(String suffix) throws Exception {
+        File file = File.createTempFile("audit", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static List<String> readLines(File file) throws Exception {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    @Test
+    public void flaggedLinesAreNumberedFromOne() throws Exception {
+
+        File dictionary = tempFile(".dic");
+        Writer writer = new FileWriter(dictionary);
+        writer.write("2\nsunshine\npassword\n");
+        writer.close();
+
+        File input = tempFile(".txt");
+        writer = new FileWriter(input);
+        writer.write("Zq9!xJ\r\n1Sunshine!\r\n\nx7$Kq2!v\nmypassword");
+        writer.close();
+
+        File output = tempFile(".txt");
+        PasswordAuditor.main(new String[] {input.getPath(), output.getPath(), dictionary.getPath()});
+
+        List<String> lines = readLines(output);
+        assertEquals("2", lines.get(0));
+        assertEquals("5", lines.get(1));
+        assertEquals("# 5 lines, 2 dictionary based", lines.get(2));
+        assertEquals(3, lines.size());
+    }
+
+    @Test
+    public void largeFilesMatchSingleChecks() throws Exception {
+
+        // Several chunks' worth of lines
+        Random random = new Random(5);
+        String[] samples = {"Pa8!ss9wo4rd2", "1Sunshine!", "", "correcthorsebatterystaple", "caféMonkey"};
+        File input = tempFile(".txt");
+        List<Integer> expected = new ArrayList<Integer>();
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().build();
+        Writer writer = new BufferedWriter(new FileWriter(input));
+        try {
+            for (int i = 1; i <= 300000; i++) {
+                String password;
+                if (i % 7 == 0) {
+                    password = samples[random.nextInt(samples.length)];
+                } else {
+                    char[] chars = new char[4 + random.nextInt(8)];
+                    for (int c = 0; c < chars.length; c++) {
+                        chars[c] = (char) ('!' + random.nextInt('~' - '!'));
+                    }
+                    password = new String(chars);
+                }
+                writer.write(password);
+                writer.write('\n');
+                if (validator.isPasswordDictionaryBased(password)) {
+                    expected.add(i);
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        assertTrue(input.length() > 2 * 1048576);
+
+        File output = tempFile(".txt");
+        PasswordAuditor.main(new String[] {input.getPath(), output.getPath()});
+
+        List<String> lines = readLines(output);
+        assertEquals(expected.size() + 1, lines.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), lines.get(i));
+        }
+        assertEquals("# 300000 lines, " + expected.size() + " dictionary based", lines.get(expected.size()));
+    }
+}
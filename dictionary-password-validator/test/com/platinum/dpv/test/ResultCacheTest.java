@@ -0,0 +1,135 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryPasswordConfigException;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import com.platinum.dpv.ScanOrder;
+import com.platinum.dpv.ValidatorMetrics;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static com.platinum.dpv.test.TestDictionaries.writeDictionary;
+import static org.junit.Assert.*;
+
+/**
+ * Reusing the results of earlier checks.
+ *
+ * @author jlucier
+ */
+public class ResultCacheTest {
+
+    private static long windowsProbed(DictionaryPasswordValidator validator, String password) {
+        long before = validator.getMetrics().getWindowsProbed();
+        validator.isPasswordDictionaryBased(password);
+        return validator.getMetrics().getWindowsProbed() - before;
+    }
+
+    @Test
+    public void cachedResultsMatchUncachedOnes() throws Exception {
+
+        // Passwords typed one character at a time, some of them twice
+        Random random = new Random(11);
+        String[] samples = {"1Sunshine!", "P@ssw0rd", "correcthorsebatterystaple", "Zq9!xJ"};
+        List<String> passwords = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            String password = samples[random.nextInt(samples.length)];
+            if (random.nextBoolean()) {
+                char[] chars = new char[4 + random.nextInt(20)];
+                for (int c = 0; c < chars.length; c++) {
+                    chars[c] = (char) ('!' + random.nextInt('~' - '!'));
+                }
+                password = new String(chars);
+            }
+            for (int end = 1; end <= password.length(); end++) {
+                passwords.add(password.substring(0, end));
+            }
+        }
+
+        for (DictionaryBackend backend : new DictionaryBackend[] {DictionaryBackend.BLOOM_FILTER, DictionaryBackend.AHO_CORASICK}) {
+            for (ScanOrder order : new ScanOrder[] {ScanOrder.BY_START_POSITION, ScanOrder.LONGEST_FIRST}) {
+                DictionaryPasswordValidator uncached = DictionaryPasswordValidator.builder().backend(backend).scanOrder(order)
+                        .substitutionVariants(4).build();
+                DictionaryPasswordValidator cached = DictionaryPasswordValidator.builder().backend(backend).scanOrder(order)
+                        .substitutionVariants(4).resultCache(1024, 0, TimeUnit.SECONDS).build();
+                for (String password : passwords) {
+                    assertEquals(backend + " " + order + " " + password, uncached.isPasswordDictionaryBased(password),
+                            cached.isPasswordDictionaryBased(password));
+                }
+                assertTrue(cached.getMetrics().getCacheHits() > 0);
+                assertTrue(cached.getMetrics().getCachePrefixHits() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void keystrokesOnlyLookUpNewWindows() throws Exception {
+
+        File dictionary = writeDictionary("sunshine", "password");
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(DictionaryBackend.BINARY_FUSE_FILTER)
+                .dictionary(dictionary).resultCache(64, 0, TimeUnit.SECONDS).metrics(true).build();
+
+        String password = "qwertyuiopasdf";
+        for (int end = 8; end <= password.length(); end++) {
+            // Only the 8-letter window ending in the new letter
+            assertEquals(password.substring(0, end), 1, windowsProbed(validator, password.substring(0, end)));
+        }
+        assertEquals(0, windowsProbed(validator, password));
+
+        assertTrue(validator.isPasswordDictionaryBased("xxpassword"));
+        assertEquals(0, windowsProbed(validator, "xxpasswordxx"));
+
+        ValidatorMetrics metrics = validator.getMetrics();
+        assertEquals(2, metrics.getCacheHits());
+        assertEquals(6, metrics.getCachePrefixHits());
+        assertEquals(2, metrics.getCacheMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedResultsAreEvicted() throws Exception {
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(DictionaryBackend.AHO_CORASICK)
+                .resultCache(8, 0, TimeUnit.SECONDS).build();
+
+        // Room for 8 results: using the first keeps it, and the second is evicted
+        String[] passwords = {"zqxjkvbw", "wbvkjxqz", "qzjxwvkb", "bkvwxjzq", "jqzxbwkv", "vkwbxzqj", "xjqzvbkw", "kbwvzqxj"};
+        for (String password : passwords) {
+            validator.isPasswordDictionaryBased(password);
+        }
+        validator.isPasswordDictionaryBased(passwords[0]);
+        validator.isPasswordDictionaryBased("zxqjwbvk");
+        assertEquals(1, validator.getMetrics().getCacheHits());
+
+        validator.isPasswordDictionaryBased(passwords[0]);
+        assertEquals(2, validator.getMetrics().getCacheHits());
+        validator.isPasswordDictionaryBased(passwords[1]);
+        assertEquals(2, validator.getMetrics().getCacheHits());
+    }
+
+    @Test
+    public void resultsExpireAndAreDroppedOnReload() throws Exception {
+
+        DictionaryPasswordValidator expiring = DictionaryPasswordValidator.builder().resultCache(64, 1, TimeUnit.MILLISECONDS).build();
+        expiring.isPasswordDictionaryBased("zqxjkvbw");
+        Thread.sleep(10);
+        expiring.isPasswordDictionaryBased("zqxjkvbw");
+        assertEquals(0, expiring.getMetrics().getCacheHits());
+        assertEquals(2, expiring.getMetrics().getCacheMisses());
+
+        DictionaryPasswordValidator reloaded = DictionaryPasswordValidator.builder().resultCache(64, 0, TimeUnit.SECONDS).build();
+        reloaded.isPasswordDictionaryBased("zqxjkvbw");
+        reloaded.isPasswordDictionaryBased("zqxjkvbw");
+        assertEquals(1, reloaded.getMetrics().getCacheHits());
+        reloaded.reload();
+        reloaded.isPasswordDictionaryBased("zqxjkvbw");
+        assertEquals(1, reloaded.getMetrics().getCacheHits());
+        assertEquals(2, reloaded.getMetrics().getCacheMisses());
+    }
+
+    @Test(expected = DictionaryPasswordConfigException.class)
+    public void cacheRulesOutConcurrentAdds() throws Exception {
+        DictionaryPasswordValidator.builder().concurrentAdds(true).resultCache(64, 0, TimeUnit.SECONDS).build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryCompiler;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import com.platinum.dpv.ScanOrder;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static com.platinum.dpv.test.TestDictionaries.writeDictionary;
+import static org.junit.Assert.*;
+
+/**
+ * Window lengths without dictionary words are skipped, and every scan order
+ * finds the same words.
+ *
+ * @author jlucier
+ */
+public class ScanOrderTest {
+
+    private static long windowsProbed(DictionaryPasswordValidator validator, String password) {
+        long before = validator.getMetrics().getWindowsProbed();
+        validator.isPasswordDictionaryBased(password);
+        return validator.getMetrics().getWindowsProbed() - before;
+    }
+
+    @Test
+    public void ordersFindTheSameWords() throws Exception {
+
+        Random random = new Random(7);
+        List<String> passwords = new ArrayList<String>();
+        for (int i = 0; i < 2000; i++) {
+            char[] chars = new char[4 + random.nextInt(20)];
+            for (int c = 0; c < chars.length; c++) {
+                chars[c] = (char) ('a' + random.nextInt(26));
+            }
+            passwords.add(new String(chars));
+        }
+        passwords.add("1Sunshine!");
+        passwords.add("correcthorsebatterystaple");
+
+        for (DictionaryBackend backend : new DictionaryBackend[] {DictionaryBackend.BLOOM_FILTER, DictionaryBackend.BINARY_FUSE_FILTER}) {
+            DictionaryPasswordValidator reference = DictionaryPasswordValidator.builder().backend(backend).build();
+            for (ScanOrder order : ScanOrder.values()) {
+                DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(backend).scanOrder(order).build();
+                for (String password : passwords) {
+                    assertEquals(order + " " + password, reference.isPasswordDictionaryBased(password), validator.isPasswordDictionaryBased(password));
+                    assertEquals(order + " " + password, reference.findLongestDictionaryWord(password), validator.findLongestDictionaryWord(password));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void lengthsWithoutWordsAreSkipped() throws Exception {
+
+        File dictionary = writeDictionary("sunshine", "password");
+        for (ScanOrder order : ScanOrder.values()) {
+            DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(DictionaryBackend.BINARY_FUSE_FILTER)
+                    .dictionary(dictionary).scanOrder(order).metrics(true).build();
+
+            // Only the 5 windows of 8 letters
+            assertEquals(order.toString(), 5, windowsProbed(validator, "xxxxxxxxxxxx"));
+            assertEquals(order.toString(), 0, windowsProbed(validator, "xxxxxxx"));
+        }
+    }
+
+    @Test
+    public void longestFirstFindsLongWordsSooner() throws Exception {
+
+        File dictionary = writeDictionary("pass", "word", "password");
+        DictionaryPasswordValidator byStartPosition = DictionaryPasswordValidator.builder().backend(DictionaryBackend.BINARY_FUSE_FILTER)
+                .dictionary(dictionary).metrics(true).build();
+        DictionaryPasswordValidator longestFirst = DictionaryPasswordValidator.builder().backend(DictionaryBackend.BINARY_FUSE_FILTER)
+                .dictionary(dictionary).scanOrder(ScanOrder.LONGEST_FIRST).metrics(true).build();
+
+        // 4 and 8 letters at starts 0-3, then pass at 4; or 8 letters at starts 0-4
+        assertEquals(9, windowsProbed(byStartPosition, "xxxxpassword"));
+        assertEquals(5, windowsProbed(longestFirst, "xxxxpassword"));
+        assertEquals("password", longestFirst.findLongestDictionaryWord("xxxxpassword"));
+    }
+
+    @Test
+    public void shortestFirstFindsShortWordsSooner() throws Exception {
+
+        File dictionary = writeDictionary("pass", "correcthorsebattery");
+        DictionaryPasswordValidator byStartPosition = DictionaryPasswordValidator.builder().backend(DictionaryBackend.BINARY_FUSE_FILTER)
+                .dictionary(dictionary).metrics(true).build();
+        DictionaryPasswordValidator shortestFirst = DictionaryPasswordValidator.builder().backend(DictionaryBackend.BINARY_FUSE_FILTER)
+                .dictionary(dictionary).scanOrder(ScanOrder.SHORTEST_FIRST).metrics(true).build();
+
+        // 4 and 19 letters at starts 0-5, 4 letters at 6-7, then pass at 8;
+        // or 4 letters at starts 0-8
+        String password = "xxxxxxxxpassxxxxxxxxxxxx";
+        assertEquals(15, windowsProbed(byStartPosition, password));
+        assertEquals(9, windowsProbed(shortestFirst, password));
+        assertEquals("pass", shortestFirst.findLongestDictionaryWord(password));
+    }
+
+    @Test
+    public void snapshotsKeepWordLengths() throws Exception {
+
+        File snapshot = File.createTempFile("dictionary", ".bloom");
+        snapshot.deleteOnExit();
+        DictionaryCompiler.main(new String[] {snapshot.getPath()});
+
+        DictionaryPasswordValidator fromWordList = DictionaryPasswordValidator.builder().metrics(true).build();
+        DictionaryPasswordValidator fromSnapshot = DictionaryPasswordValidator.builder().snapshot(snapshot).metrics(true).build();
+
+        String password = "qxqxqxqxqxqxqxqxqxqxqxqxqxqxqxqxqxqxqxqx";
+        long windows = windowsProbed(fromWordList, password);
+        assertEquals(windows, windowsProbed(fromSnapshot, password));
+        // Fewer than all 703 windows of 4 to 40 letters
+        assertTrue(windows < 703);
+    }
+}
@@ -0,0 +1,37 @@
+package com.platinum.dpv.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+
+/**
+ * Small word lists for the tests.
+ *
+ * @author jlucier
+ */
+final class TestDictionaries {
+
+    private TestDictionaries() {
+    }
+
+    /**
+     * Writes the words to a temporary word list, deleted when the JVM exits.
+     * @param words
+     * @return the word list
+     * @throws Exception
+     */
+    static File writeDictionary(String... words) throws Exception {
+        File file = File.createTempFile("dictionary", ".dic");
+        file.deleteOnExit();
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(words.length + "\n");
+            for (String word : words) {
+                writer.write(word + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
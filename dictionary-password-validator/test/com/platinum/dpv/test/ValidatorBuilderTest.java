@@ -0,0 +1,127 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryPasswordConfigException;
+import com.platinum.dpv.DictionaryPasswordFileException;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import java.io.File;
+import java.util.Arrays;
+import org.junit.Test;
+import static com.platinum.dpv.test.TestDictionaries.writeDictionary;
+import static org.junit.Assert.*;
+
+/**
+ * Validators built side by side with different dictionaries and settings.
+ *
+ * @author jlucier
+ */
+public class ValidatorBuilderTest {
+
+    @Test
+    public void instancesAreIndependent() throws Exception {
+
+        File tenantDictionary = writeDictionary("zebra", "quokka", "Wombat");
+
+        DictionaryPasswordValidator tenant = DictionaryPasswordValidator.builder()
+                .dictionary(tenantDictionary).minWordCharLength(5).build();
+        DictionaryPasswordValidator exact = DictionaryPasswordValidator.builder()
+                .dictionary(tenantDictionary).backend(DictionaryBackend.AHO_CORASICK).build();
+        DictionaryPasswordValidator bundled = DictionaryPasswordValidator.builder().build();
+
+        assertEquals(5, tenant.getMinWordCharLength());
+        assertTrue(tenant.isPasswordDictionaryBased("12Quokka!"));
+        assertTrue(tenant.isDictionaryWord("wombat"));
+        assertTrue(exact.isPasswordDictionaryBased("x-zebra-x"));
+        assertFalse(exact.isPasswordDictionaryBased("Pa8!ss9wo4rd2"));
+        assertTrue(bundled.isPasswordDictionaryBased("Pa8!ss9wo4rd2"));
+    }
+
+    @Test
+    public void blockedBloomFilterFindsDictionaryWords() throws Exception {
+
+        DictionaryPasswordValidator blocked = DictionaryPasswordValidator.builder()
+                .backend(DictionaryBackend.BLOCKED_BLOOM_FILTER).build();
+
+        assertEquals(DictionaryBackend.BLOCKED_BLOOM_FILTER, blocked.getBackend());
+        assertTrue(blocked.isDictionaryWord("Sunshine"));
+        assertTrue(blocked.isPasswordDictionaryBased("Pa8!ss9wo4rd2"));
+        assertTrue(blocked.isPasswordDictionaryBased("Horse!23"));
+        assertFalse(blocked.isPasswordDictionaryBased("Zq9!xJ"));
+        assertEquals("password", blocked.findLongestDictionaryWord("1password!"));
+    }
+
+    @Test
+    public void binaryFuseFilterFindsDictionaryWords() throws Exception {
+
+        DictionaryPasswordValidator fuse = DictionaryPasswordValidator.builder()
+                .backend(DictionaryBackend.BINARY_FUSE_FILTER).build();
+
+        assertEquals(DictionaryBackend.BINARY_FUSE_FILTER, fuse.getBackend());
+        assertTrue(fuse.isDictionaryWord("Sunshine"));
+        assertTrue(fuse.isPasswordDictionaryBased("Pa8!ss9wo4rd2"));
+        assertTrue(fuse.isPasswordDictionaryBased("Horse!23"));
+        assertFalse(fuse.isPasswordDictionaryBased("Zq9!xJ"));
+        assertEquals("password", fuse.findLongestDictionaryWord("1password!"));
+    }
+
+    @Test
+    public void wordsCanBeAddedWhileInUse() throws Exception {
+
+        DictionaryPasswordValidator live = DictionaryPasswordValidator.builder().concurrentAdds(true).build();
+        assertFalse(live.isPasswordDictionaryBased("1Xylofant!"));
+
+        live.addDictionaryWord("Xylofant");
+
+        assertTrue(live.isPasswordDictionaryBased("1Xylofant!"));
+        assertTrue(live.isDictionaryWord("xylofant"));
+        assertTrue(live.isPasswordDictionaryBased("Pa8!ss9wo4rd2"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void concurrentAddsMustBeEnabled() throws Exception {
+        DictionaryPasswordValidator.builder().dictionary(writeDictionary("zebra")).build().addDictionaryWord("Xylofant");
+    }
+
+    @Test(expected = DictionaryPasswordConfigException.class)
+    public void concurrentAddsNeedTheBloomFilter() throws Exception {
+        DictionaryPasswordValidator.builder().backend(DictionaryBackend.AHO_CORASICK).concurrentAdds(true).build();
+    }
+
+    @Test
+    public void substitutionsAreUndone() throws Exception {
+
+        File dictionary = writeDictionary("password", "illicit");
+        DictionaryPasswordValidator plain = DictionaryPasswordValidator.builder()
+                .backend(DictionaryBackend.AHO_CORASICK).dictionary(dictionary).build();
+        DictionaryPasswordValidator leet = DictionaryPasswordValidator.builder()
+                .backend(DictionaryBackend.AHO_CORASICK).dictionary(dictionary).substitutionVariants(16).build();
+
+        assertFalse(plain.isPasswordDictionaryBased("P@ssw0rd"));
+        assertTrue(leet.isPasswordDictionaryBased("P@ssw0rd"));
+        assertTrue(leet.isPasswordDictionaryBased("xx Pa$$w0rd!"));
+        assertEquals("password", leet.findLongestDictionaryWord("1P@55w0rd"));
+        assertTrue(leet.arePasswordsDictionaryBased(Arrays.asList("Zq9!xJ", "P@ssw0rd")).get(1));
+
+        // 1 and ! stand for i or l, so each of them doubles the variants
+        assertTrue(leet.isPasswordDictionaryBased("!11ic!t"));
+        assertFalse(DictionaryPasswordValidator.builder().backend(DictionaryBackend.AHO_CORASICK)
+                .dictionary(dictionary).substitutionVariants(4).build().isPasswordDictionaryBased("!11ic!t"));
+        assertFalse(leet.isPasswordDictionaryBased("Zq9!xJ"));
+    }
+
+    @Test
+    public void sharedInstanceIsReused() throws Exception {
+        assertSame(DictionaryPasswordValidator.getInstance(), DictionaryPasswordValidator.getInstance());
+        assertNotSame(DictionaryPasswordValidator.getInstance(), DictionaryPasswordValidator.builder().build());
+    }
+
+    @Test(expected = DictionaryPasswordConfigException.class)
+    public void invalidSettingsAreRejected() throws Exception {
+        DictionaryPasswordValidator.builder().minWordCharLength(0).build();
+    }
+
+    @Test(expected = DictionaryPasswordFileException.class)
+    public void missingDictionaryIsReported() throws Exception {
+        DictionaryPasswordValidator.builder().dictionary(new File("no-such-dictionary.dic")).build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryPasswordValidator;
+import com.platinum.dpv.ValidatorServer;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checking passwords over HTTP, on localhost.
+ *
+ * @author jlucier
+ */
+public class ValidatorServerTest {
+
+    private static ValidatorServer server;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().metrics(true).build();
+        server = ValidatorServer.start(validator, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        server.close();
+    }
+
+    /**
+     * @return the status code, then the body
+     */
+    private static String[] request(String method, String path, String contentType, String body) throws Exception {
+
+        URL url = new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+            OutputStream out = connection.getOutputStream();
+            out.write(body.getBytes("UTF-8"));
+            out.close();
+        }
+
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, read);
+        }
+        in.close();
+        return new String[] {Integer.toString(status), new String(bytes.toByteArray(), "UTF-8")};
+    }
+
+    @Test
+    public void textBatchesAreAnsweredLineByLine() throws Exception {
+
+        String[] response = request("POST", "/check", "text/plain", "Zq9!xJ\r\n1Sunshine!\n\ncorrecthorsebatterystaple\n");
+        assertEquals("200", response[0]);
+        assertEquals("false\ntrue\nfalse\ntrue\n", response[1]);
+    }
+
+    @Test
+    public void jsonBatchesAreAnsweredInOrder() throws Exception {
+
+        String[] response = request("POST", "/check", "application/json", " [\"1Sunshine!\", \"Zq9!xJ\", \"pass\\u0077ord\\n\", \"\\\"x7$Kq2!v\\\"\"] ");
+        assertEquals("200", response[0]);
+        assertEquals("[true,false,true,false]\n", response[1]);
+
+        assertEquals("[]\n", request("POST", "/check", "application/json", "[]")[1]);
+    }
+
+    @Test
+    public void badRequestsAreRejected() throws Exception {
+
+        assertEquals("400", request("POST", "/check", "application/json", "[\"unterminated]")[0]);
+        assertEquals("400", request("POST", "/check", "application/json", "{\"passwords\": []}")[0]);
+        assertEquals("405", request("GET", "/check", null, null)[0]);
+    }
+
+    @Test
+    public void metricsCountPasswordsServed() throws Exception {
+
+        request("POST", "/check", "text/plain", "1Sunshine!\nZq9!xJ\n");
+        String[] response = request("GET", "/metrics", null, null);
+        assertEquals("200", response[0]);
+        assertTrue(response[1], response[1].startsWith("{\"requests\":"));
+        assertTrue(response[1], response[1].contains("\"backend\":\"BLOOM_FILTER\""));
+        assertFalse(response[1], response[1].contains("\"passwords\":0,"));
+    }
+
+    @Test
+    public void rejectedRequestsAreNotCounted() throws Exception {
+
+        request("POST", "/check", "text/plain", "1Sunshine!\n");
+        String before = request("GET", "/metrics", null, null)[1];
+        request("GET", "/check", null, null);
+        request("POST", "/check", "application/json", "[\"unterminated]");
+        String after = request("GET", "/metrics", null, null)[1];
+
+        assertEquals(requestCount(before), requestCount(after));
+        assertTrue(after, requestCount(after) > 0);
+    }
+
+    private static long requestCount(String metrics) {
+        int start = metrics.indexOf("\"requests\":") + "\"requests\":".length();
+        return Long.parseLong(metrics.substring(start, metrics.indexOf(',', start)));
+    }
+}
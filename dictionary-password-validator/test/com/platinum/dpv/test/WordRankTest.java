@@ -0,0 +1,127 @@
+package com.platinum.dpv.test;
+
+import com.platinum.dpv.DictionaryBackend;
+import com.platinum.dpv.DictionaryCompiler;
+import com.platinum.dpv.DictionaryMatch;
+import com.platinum.dpv.DictionaryPasswordValidator;
+import com.platinum.dpv.ScanOrder;
+import java.io.File;
+import java.util.List;
+import org.junit.Test;
+import static com.platinum.dpv.test.TestDictionaries.writeDictionary;
+import static org.junit.Assert.*;
+
+/**
+ * Word lists ranking their words by how common they are.
+ *
+ * @author jlucier
+ */
+public class WordRankTest {
+
+    private static final DictionaryBackend[] BACKENDS = {DictionaryBackend.BLOOM_FILTER,
+        DictionaryBackend.BINARY_FUSE_FILTER, DictionaryBackend.AHO_CORASICK};
+
+    @Test
+    public void ranksAreKeptByWord() throws Exception {
+
+        File dictionary = writeDictionary("password\t1", "Dragon\t50", "zebras\t3000", "castle", "bras\toften");
+        for (DictionaryBackend backend : BACKENDS) {
+            DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(backend).dictionary(dictionary).build();
+
+            assertEquals(backend.toString(), 1, validator.getWordRank("password"));
+            assertEquals(backend.toString(), 50, validator.getWordRank("DRAGON"));
+            assertEquals(backend.toString(), 3000, validator.getWordRank("zebras"));
+            assertEquals(backend.toString(), 0, validator.getWordRank("castle"));
+            assertEquals(backend.toString(), 0, validator.getWordRank("bras"));
+            assertEquals(backend.toString(), 0, validator.getWordRank("unicorn"));
+            assertTrue(backend.toString(), validator.isDictionaryWord("bras"));
+            assertTrue(backend.toString(), validator.isPasswordDictionaryBased("zebras1"));
+
+            List<DictionaryMatch> matches = validator.findDictionaryWords("dragon!password");
+            assertEquals(backend.toString(), 2, matches.size());
+            assertEquals(backend.toString(), 50, matches.get(0).getRank());
+            assertEquals(backend.toString(), 1, matches.get(1).getRank());
+        }
+    }
+
+    @Test
+    public void onlyCommonWordsCountWithMaxWordRank() throws Exception {
+
+        File dictionary = writeDictionary("password\t1", "dragon\t50", "zebras\t3000", "bras\t20", "castle", "unicorns\t9000");
+        for (DictionaryBackend backend : BACKENDS) {
+            for (ScanOrder order : ScanOrder.values()) {
+                DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(backend).scanOrder(order)
+                        .dictionary(dictionary).maxWordRank(100).build();
+                String name = backend + " " + order;
+
+                assertTrue(name, validator.isPasswordDictionaryBased("xxpasswordxx"));
+                assertTrue(name, validator.isPasswordDictionaryBased("mydragon1"));
+                assertTrue(name, validator.isPasswordDictionaryBased("castle99"));
+                assertFalse(name, validator.isPasswordDictionaryBased("unicorns99"));
+                // The rare zebras ends in the common bras
+                assertTrue(name, validator.isPasswordDictionaryBased("zebras"));
+                assertEquals(name, "bras", validator.findLongestDictionaryWord("zebras"));
+
+                List<DictionaryMatch> matches = validator.findDictionaryWords("unicornspassword");
+                assertEquals(name, 1, matches.size());
+                assertEquals(name, "password", matches.get(0).getWord());
+                assertTrue(name, validator.isDictionaryWord("unicorns"));
+            }
+        }
+    }
+
+    @Test
+    public void unrankedWordsAlwaysCount() throws Exception {
+
+        // Words looked up by a hash alone would read another word's rank 1 time in 256
+        String[] words = new String[20001];
+        words[0] = "password\t1";
+        for (int i = 1; i < words.length; i++) {
+            words[i] = "word" + Integer.toString(i, 10).replace('0', 'a').replace('1', 'b').replace('2', 'c')
+                    .replace('3', 'd').replace('4', 'e').replace('5', 'f').replace('6', 'g').replace('7', 'h')
+                    .replace('8', 'i').replace('9', 'j');
+        }
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(DictionaryBackend.AHO_CORASICK)
+                .dictionary(writeDictionary(words)).maxWordRank(1).build();
+
+        for (int i = 1; i < words.length; i++) {
+            assertTrue(words[i], validator.isPasswordDictionaryBased(words[i] + "1"));
+            assertEquals(words[i], 0, validator.getWordRank(words[i]));
+        }
+        assertEquals(1, validator.getWordRank("password"));
+    }
+
+    @Test
+    public void commonWordsScoreLower() throws Exception {
+
+        // 8 words: 3 bits each, unless the rank is lower
+        File dictionary = writeDictionary("correct\t1", "horse\t4", "battery\t100", "staple", "pass", "word", "password", "ssword");
+        for (DictionaryBackend backend : BACKENDS) {
+            DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().backend(backend).dictionary(dictionary)
+                    .maxWordRank(1).build();
+
+            assertEquals(backend.toString(), 0 + 2 + 3 + 3, validator.estimateGuessEntropy("correcthorsebatterystaple"), 1e-9);
+            assertEquals(backend.toString(), 3, validator.estimateGuessEntropy("password"), 1e-9);
+        }
+    }
+
+    @Test
+    public void snapshotsKeepRanks() throws Exception {
+
+        File dictionary = writeDictionary("password\t1", "dragon\t50", "unicorns\t9000", "castle");
+        File snapshot = File.createTempFile("dictionary", ".bloom");
+        snapshot.deleteOnExit();
+        DictionaryCompiler.main(new String[] {snapshot.getPath(), "17", "4", dictionary.getPath()});
+
+        DictionaryPasswordValidator validator = DictionaryPasswordValidator.builder().dictionary(dictionary).snapshot(snapshot)
+                .maxWordRank(100).build();
+
+        List<DictionaryMatch> matches = validator.findDictionaryWords("dragon");
+        assertEquals(1, matches.size());
+        assertEquals(snapshot.getPath(), matches.get(0).getSource());
+        assertEquals(50, matches.get(0).getRank());
+        assertEquals(9000, validator.getWordRank("unicorns"));
+        assertFalse(validator.isPasswordDictionaryBased("unicorns"));
+        assertTrue(validator.isPasswordDictionaryBased("castle"));
+    }
+}
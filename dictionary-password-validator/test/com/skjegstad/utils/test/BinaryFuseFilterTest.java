@@ -0,0 +1,86 @@
+package com.skjegstad.utils.test;
+
+import com.skjegstad.utils.BinaryFuseFilter;
+import com.skjegstad.utils.MurmurHash3;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author jlucier
+ */
+public class BinaryFuseFilterTest {
+
+    private static BinaryFuseFilter build(int n, int fingerprintBits) {
+        BinaryFuseFilter.Builder builder = new BinaryFuseFilter.Builder(n, fingerprintBits);
+        for (int i = 0; i < n; i++) {
+            builder.add("word" + i);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void findsAddedWords() {
+
+        for (int n : new int[] {0, 1, 2, 3, 10, 1000, 100000}) {
+            BinaryFuseFilter filter = build(n, 8);
+            for (int i = 0; i < n; i++) {
+                assertTrue(n + " " + i, filter.contains("word" + i));
+            }
+            assertEquals(n, filter.count());
+        }
+        assertFalse(build(0, 16).contains("word0"));
+    }
+
+    @Test
+    public void duplicatesAreIgnored() {
+
+        BinaryFuseFilter.Builder builder = new BinaryFuseFilter.Builder(10, 16);
+        for (int i = 0; i < 1000; i++) {
+            builder.add("word" + (i % 100));
+        }
+        BinaryFuseFilter filter = builder.build();
+
+        assertEquals(100, filter.count());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(filter.contains("word" + i));
+        }
+    }
+
+    @Test
+    public void incrementalHashMatchesContains() {
+
+        BinaryFuseFilter.Builder builder = new BinaryFuseFilter.Builder(10, 16);
+        builder.add("dictionary");
+        BinaryFuseFilter filter = builder.build();
+
+        MurmurHash3 hasher = new MurmurHash3();
+        String prefix = "dictionaryvalidator";
+        for (int i = 0; i < prefix.length(); i++) {
+            hasher.put(prefix.charAt(i));
+            hasher.finish();
+            assertEquals(filter.contains(prefix, 0, i + 1), filter.containsHash(hasher.h1(), hasher.h2()));
+        }
+        assertTrue(filter.contains("dictionaryvalidator", 0, 10));
+    }
+
+    @Test
+    public void falsePositiveRateMatchesFingerprintSize() {
+
+        int n = 200000;
+        BinaryFuseFilter filter = build(n, 8);
+
+        int lookups = 500000;
+        int falsePositives = 0;
+        for (int i = 0; i < lookups; i++) {
+            if (filter.contains("miss" + i)) {
+                falsePositives++;
+            }
+        }
+        double measured = (double) falsePositives / lookups;
+
+        assertEquals(1 / 256.0, filter.getFalsePositiveProbability(), 0);
+        assertEquals(filter.getFalsePositiveProbability(), measured, 0.1 / 256);
+        assertTrue(filter.bitSize() < 9.4 * n);
+        assertTrue(build(n, 16).bitSize() < 18.8 * n);
+    }
+}
@@ -0,0 +1,104 @@
+package com.skjegstad.utils.test;
+
+import com.skjegstad.utils.BinaryFuseMap;
+import com.skjegstad.utils.MurmurHash3;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author jlucier
+ */
+public class BinaryFuseMapTest {
+
+    private static BinaryFuseMap build(int n) {
+        BinaryFuseMap.Builder builder = new BinaryFuseMap.Builder(n);
+        for (int i = 0; i < n; i++) {
+            builder.put("word" + i, i + 1);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void mapsAddedWordsToTheirValues() {
+
+        for (int n : new int[] {0, 1, 2, 3, 10, 1000, 100000}) {
+            BinaryFuseMap map = build(n);
+            for (int i = 0; i < n; i++) {
+                assertEquals(n + " " + i, i + 1, map.get("word" + i));
+            }
+            assertEquals(n, map.count());
+        }
+        assertEquals(0, build(0).get("word0"));
+    }
+
+    @Test
+    public void duplicatesKeepTheSmallestValue() {
+
+        BinaryFuseMap.Builder builder = new BinaryFuseMap.Builder(10);
+        for (int i = 0; i < 1000; i++) {
+            builder.put("word" + (i % 100), 1000 - i);
+        }
+        BinaryFuseMap map = builder.build();
+
+        assertEquals(100, map.count());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(100 - i, map.get("word" + i));
+        }
+    }
+
+    @Test
+    public void missesAreMostlyZero() {
+
+        BinaryFuseMap map = build(100000);
+        MurmurHash3 hasher = new MurmurHash3();
+        int lookups = 100000;
+        int nonZero = 0;
+        for (int i = 0; i < lookups; i++) {
+            String miss = "miss" + i;
+            for (int j = 0; j < miss.length(); j++) {
+                hasher.put(miss.charAt(j));
+            }
+            hasher.finish();
+            nonZero += map.getHash(hasher.h1(), hasher.h2()) == 0 ? 0 : 1;
+            hasher.reset();
+        }
+        // 1 in 256 expected
+        assertTrue("" + nonZero, nonZero < 2 * lookups / 256);
+    }
+
+    @Test
+    public void valuesFitIn24Bits() {
+
+        BinaryFuseMap.Builder builder = new BinaryFuseMap.Builder(10);
+        builder.put("max", BinaryFuseMap.MAX_VALUE);
+        assertEquals(BinaryFuseMap.MAX_VALUE, builder.build().get("max"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void largerValuesAreRejected() {
+        new BinaryFuseMap.Builder(10).put("word", BinaryFuseMap.MAX_VALUE + 1);
+    }
+
+    @Test
+    public void writtenMapsReadBackTheSame() throws Exception {
+
+        BinaryFuseMap map = build(5000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        map.write(out);
+        out.writeInt(42);
+        out.close();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        BinaryFuseMap read = BinaryFuseMap.read(buffer);
+        assertEquals(42, buffer.getInt());
+        assertEquals(map.count(), read.count());
+        assertEquals(map.bitSize(), read.bitSize());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i + 1, read.get("word" + i));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.skjegstad.utils.test;
+
+import com.skjegstad.utils.BlockedBloomFilter;
+import com.skjegstad.utils.BloomFilter;
+import com.skjegstad.utils.MurmurHash3;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author jlucier
+ */
+public class BlockedBloomFilterTest {
+
+    @Test
+    public void findsAddedWords() {
+
+        BlockedBloomFilter filter = new BlockedBloomFilter(17 * 1000, 1000);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("word" + i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.contains("word" + i));
+        }
+        assertEquals(1000, filter.count());
+        assertEquals(0, filter.bitSize() % BlockedBloomFilter.BLOCK_BITS);
+        assertTrue(filter.contains("mysunshine99", 2, 10) == filter.contains("sunshine"));
+    }
+
+    @Test
+    public void incrementalHashMatchesContains() {
+
+        BlockedBloomFilter filter = new BlockedBloomFilter(17 * 10, 10);
+        filter.add("dictionary");
+
+        MurmurHash3 hasher = new MurmurHash3();
+        String prefix = "dictionaryvalidator";
+        for (int i = 0; i < prefix.length(); i++) {
+            hasher.put(prefix.charAt(i));
+            hasher.finish();
+            assertEquals(filter.contains(prefix, 0, i + 1), filter.containsHash(hasher.h1(), hasher.h2()));
+        }
+        assertTrue(filter.contains("dictionary"));
+    }
+
+    @Test
+    public void falsePositiveRateMatchesEstimate() {
+
+        int n = 20000;
+        BlockedBloomFilter blocked = new BlockedBloomFilter(17L * n, n);
+        BloomFilter<String> standard = new BloomFilter<String>(17 * n, n);
+        for (int i = 0; i < n; i++) {
+            blocked.add("word" + i);
+            standard.add("word" + i);
+        }
+
+        int lookups = 500000;
+        int falsePositives = 0;
+        for (int i = 0; i < lookups; i++) {
+            if (blocked.contains("miss" + i)) {
+                falsePositives++;
+            }
+        }
+        double measured = (double) falsePositives / lookups;
+        double estimate = blocked.getFalsePositiveProbability();
+
+        assertEquals(estimate, measured, estimate * 0.3);
+        assertTrue(estimate > standard.getFalsePositiveProbability());
+        assertTrue(estimate < 3 * standard.getFalsePositiveProbability());
+    }
+}
@@ -0,0 +1,238 @@
+package com.skjegstad.utils.test;
+
+import com.skjegstad.utils.AtomicBitStore;
+import com.skjegstad.utils.BloomFilter;
+import com.skjegstad.utils.BloomFilterSnapshot;
+import com.skjegstad.utils.HashStrategies;
+import com.skjegstad.utils.MappedBitStore;
+import com.skjegstad.utils.MurmurHash3;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author jlucier
+ */
+public class BloomFilterTest {
+
+    private static final String[] WORDS = {"password", "dictionary", "validator", "sunshine", "monkey"};
+
+    @Test
+    public void murmurStrategyFindsAddedWords() {
+
+        BloomFilter<String> filter = new BloomFilter<String>(0.001, WORDS.length, HashStrategies.MURMUR3_128);
+        for (String word : WORDS) {
+            filter.add(word);
+        }
+
+        for (String word : WORDS) {
+            assertTrue(filter.contains(word));
+        }
+        assertFalse(filter.contains("xqzvwj"));
+    }
+
+    @Test
+    public void characterRangeMatchesWholeString() {
+
+        BloomFilter<String> filter = new BloomFilter<String>(0.001, WORDS.length);
+        filter.add("sunshine");
+
+        assertTrue(filter.contains("mysunshine99", 2, 10));
+        assertFalse(filter.contains("mysunshine99", 2, 9));
+    }
+
+    @Test
+    public void incrementalHashMatchesStrategy() {
+
+        BloomFilter<String> filter = new BloomFilter<String>(0.001, WORDS.length, HashStrategies.MURMUR3_128);
+        filter.add("dictionary");
+
+        MurmurHash3 hasher = new MurmurHash3();
+        String prefix = "dictionaryvalidator";
+        for (int i = 0; i < prefix.length(); i++) {
+            hasher.put(prefix.charAt(i));
+            hasher.finish();
+            assertEquals(i == 9, filter.containsHash(hasher.h1(), hasher.h2()));
+        }
+    }
+
+    @Test
+    public void legacyConstructorUsesMd5() {
+
+        BloomFilter<String> md5Filter = new BloomFilter<String>(1000, 10, HashStrategies.MD5);
+        md5Filter.add("password");
+
+        BloomFilter<String> restored = new BloomFilter<String>(md5Filter.size(), 10, md5Filter.count(), md5Filter.getBitSet());
+        assertSame(HashStrategies.MD5, restored.getHashStrategy());
+        assertTrue(restored.contains("password"));
+    }
+
+    @Test
+    public void serializationKeepsStrategy() throws Exception {
+
+        BloomFilter<String> filter = new BloomFilter<String>(1000, 10, HashStrategies.MURMUR3_128);
+        filter.add("password");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(filter);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        @SuppressWarnings("unchecked")
+        BloomFilter<String> restored = (BloomFilter<String>) in.readObject();
+        in.close();
+
+        assertEquals(filter, restored);
+        assertTrue(restored.contains("password"));
+    }
+
+    @Test
+    public void snapshotRoundTrip() throws Exception {
+
+        BloomFilter<String> filter = new BloomFilter<String>(0.001, WORDS.length);
+        for (String word : WORDS) {
+            filter.add(word);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        BloomFilterSnapshot.write(filter, out);
+        out.close();
+
+        BloomFilter<String> restored = BloomFilterSnapshot.read(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals(filter, restored);
+        assertEquals(filter.getK(), restored.getK());
+        assertEquals(filter.count(), restored.count());
+        for (String word : WORDS) {
+            assertTrue(restored.contains(word));
+        }
+    }
+
+    @Test
+    public void mappedStoreMatchesHeapFilter() throws Exception {
+
+        File file = File.createTempFile("bloom", ".bits");
+        file.deleteOnExit();
+        BloomFilter<String> heap = new BloomFilter<String>(0.001, WORDS.length);
+        BloomFilter<String> mapped = new BloomFilter<String>(MappedBitStore.create(file, heap.bitSize()),
+                WORDS.length, HashStrategies.DEFAULT);
+        for (String word : WORDS) {
+            heap.add(word);
+            mapped.add(word);
+        }
+
+        assertEquals(heap.getK(), mapped.getK());
+        for (long i = 0; i < heap.bitSize(); i++) {
+            assertEquals(heap.getBit((int) i), mapped.getBit((int) i));
+        }
+        assertFalse(mapped.contains("xqzvwj"));
+    }
+
+    @Test
+    public void snapshotOpensInPlace() throws Exception {
+
+        BloomFilter<String> filter = new BloomFilter<String>(0.001, WORDS.length);
+        for (String word : WORDS) {
+            filter.add(word);
+        }
+
+        File file = File.createTempFile("bloom", ".snapshot");
+        file.deleteOnExit();
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeInt(42); // something in front of the snapshot
+        BloomFilterSnapshot.write(filter, out);
+        out.close();
+
+        BloomFilter<String> opened = BloomFilterSnapshot.open(file, 4);
+        assertTrue(opened.getBitStore() instanceof MappedBitStore);
+        assertEquals(filter.bitSize(), opened.bitSize());
+        assertEquals(filter.count(), opened.count());
+        for (String word : WORDS) {
+            assertTrue(opened.contains(word));
+        }
+        assertFalse(opened.contains("xqzvwj"));
+    }
+
+    @Test
+    public void parallelAddMatchesSequentialAdd() {
+
+        List<String[]> batches = new ArrayList<String[]>();
+        for (int b = 0; b < 16; b++) {
+            String[] batch = new String[500];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = "word" + b + "-" + i;
+            }
+            batches.add(batch);
+        }
+
+        for (HashStrategies strategy : HashStrategies.values()) {
+            BloomFilter<String> sequential = new BloomFilter<String>(0.01, 8000, strategy);
+            BloomFilter<String> parallel = new BloomFilter<String>(0.01, 8000, strategy);
+            for (String[] batch : batches) {
+                for (String word : batch) {
+                    sequential.add(word);
+                }
+            }
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                parallel.addAllParallel(batches, pool);
+            } finally {
+                pool.shutdown();
+            }
+
+            assertEquals(sequential, parallel);
+            assertEquals(sequential.count(), parallel.count());
+        }
+    }
+
+    @Test
+    public void parallelAddSetsAtomicBitsDirectly() {
+
+        List<String[]> batches = new ArrayList<String[]>();
+        for (int b = 0; b < 16; b++) {
+            String[] batch = new String[500];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = "word" + b + "-" + i;
+            }
+            batches.add(batch);
+        }
+
+        BloomFilter<String> sequential = new BloomFilter<String>(new AtomicBitStore(80000), 8000, HashStrategies.MURMUR3_128);
+        AtomicBitStore bits = new AtomicBitStore(80000);
+        BloomFilter<String> parallel = new BloomFilter<String>(bits, 8000, HashStrategies.MURMUR3_128);
+        for (String[] batch : batches) {
+            for (String word : batch) {
+                sequential.add(word);
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.addAllParallel(batches, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertSame(bits, parallel.getBitStore());
+        for (long i = 0; i < bits.wordCount(); i++) {
+            assertEquals(sequential.getBitStore().getWord(i), bits.getWord(i));
+        }
+        assertEquals(sequential.count(), parallel.count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bitStoreConstructorRejectsNullStrategy() {
+        new BloomFilter<String>(new AtomicBitStore(1000), 100, null);
+    }
+}
@@ -0,0 +1,110 @@
+package com.skjegstad.utils.test;
+
+import com.skjegstad.utils.BloomFilter;
+import com.skjegstad.utils.ConcurrentBloomFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author jlucier
+ */
+public class ConcurrentBloomFilterTest {
+
+    @Test
+    public void concurrentAddsAreNotLost() throws Exception {
+
+        final int threads = 4;
+        final int perThread = 5000;
+        final ConcurrentBloomFilter<String> filter = new ConcurrentBloomFilter<String>(17L * threads * perThread, threads * perThread);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean done = new AtomicBoolean();
+
+        // A reader keeps looking up words while they are added
+        Thread reader = new Thread() {
+
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    filter.contains("word0-0");
+                }
+            }
+        };
+        reader.start();
+
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            Thread writer = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        filter.add("word" + thread + "-" + i);
+                    }
+                }
+            };
+            writer.start();
+            writers.add(writer);
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(threads * perThread, filter.count());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                assertTrue(filter.contains("word" + t + "-" + i));
+            }
+        }
+    }
+
+    @Test
+    public void parallelAddMatchesSequentialAdd() {
+
+        List<String[]> batches = new ArrayList<String[]>();
+        for (int b = 0; b < 8; b++) {
+            String[] batch = new String[500];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = "word" + b + "-" + i;
+            }
+            batches.add(batch);
+        }
+
+        BloomFilter<String> sequential = new BloomFilter<String>(17 * 4000, 4000);
+        ConcurrentBloomFilter<String> concurrent = new ConcurrentBloomFilter<String>(17 * 4000, 4000);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            concurrent.addAllParallel(batches, pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (String[] batch : batches) {
+            for (String word : batch) {
+                sequential.add(word);
+            }
+        }
+
+        assertEquals(4000, concurrent.count());
+        for (long i = 0; i < sequential.bitSize(); i++) {
+            assertEquals(sequential.getBitStore().get(i), concurrent.getBitStore().get(i));
+        }
+        assertEquals(sequential.getFalsePositiveProbability(), concurrent.getFalsePositiveProbability(), 1e-12);
+
+        concurrent.clear();
+        assertEquals(0, concurrent.count());
+        assertFalse(concurrent.contains("word0-0"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.skjegstad.utils.test;
+
+import com.skjegstad.utils.ScalableBloomFilter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author jlucier
+ */
+public class ScalableBloomFilterTest {
+
+    @Test
+    public void growsWithinTheErrorBound() {
+
+        ScalableBloomFilter<String> filter = new ScalableBloomFilter<String>(1000, 0.01, false);
+        long initialBits = filter.bitSize();
+        for (int i = 0; i < 20000; i++) {
+            filter.add("word" + i);
+        }
+
+        assertEquals(20000, filter.count());
+        assertTrue(filter.filterCount() > 1);
+        assertTrue(filter.capacity() >= 20000);
+        assertTrue(filter.bitSize() > 10 * initialBits);
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(filter.contains("word" + i));
+        }
+
+        int lookups = 200000;
+        int falsePositives = 0;
+        for (int i = 0; i < lookups; i++) {
+            if (filter.contains("miss" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(filter.getFalsePositiveProbability() < filter.getFalsePositiveProbabilityBound());
+        assertTrue((double) falsePositives / lookups < 0.01);
+    }
+
+    @Test
+    public void concurrentAddsGrowOnce() throws Exception {
+
+        final ScalableBloomFilter<String> filter = new ScalableBloomFilter<String>(100, 0.01, true);
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            Thread writer = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < 5000; i++) {
+                        filter.add("word" + thread + "-" + i);
+                    }
+                }
+            };
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(20000, filter.count());
+        for (int t = 0; t < 4; t++) {
+            for (int i = 0; i < 5000; i++) {
+                assertTrue(filter.contains("word" + t + "-" + i));
+            }
+        }
+        // 100 + 200 + ... + 12800 < 20000 <= 25500, so 8 filters, however the threads interleave
+        assertEquals(8, filter.filterCount());
+    }
+}